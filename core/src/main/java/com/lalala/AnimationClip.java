@@ -0,0 +1,99 @@
+package com.lalala;
+
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas.AtlasRegion;
+
+/**
+ * Immutable, shareable replacement for {@code Animation<TextureRegion>}.
+ * Frame indices are precomputed for every simulation tick of one cycle, so looking up a
+ * key frame is a table read instead of a division plus a play-mode switch.
+ * State times are expected to be whole multiples of the tick length, which is what the
+ * fixed-step simulation produces; they are rounded to the nearest tick.
+ * Frames are {@link AnimationFrame}s, which carry no texture; {@link AnimationLibrary} loads the clip's
+ * pixels when it is first drawn and may drop them again, using the package-private fields below.
+ */
+public class AnimationClip {
+    private final String name;
+    private final AnimationFrame[] frames;
+    private final float frameDuration;
+    private final boolean looping;
+    private final float ticksPerSecond;
+    private final int[] frameByTick;
+
+    // residency, owned by AnimationLibrary: texture and regions exist only while the clip is loaded
+    final String[] files;
+    final boolean halfHeight;
+    TextureAtlas texture;
+    AtlasRegion[] regions;
+    long textureBytes;
+    long lastUsedFrame = -1;
+    volatile boolean prefetchRequested;
+
+    AnimationClip(String name, String[] files, boolean halfHeight, int[] widths, int[] heights,
+                  float frameDuration, boolean looping, float ticksPerSecond) {
+        this.name = name;
+        this.files = files;
+        this.halfHeight = halfHeight;
+        this.frames = new AnimationFrame[files.length];
+        for (int i = 0; i < files.length; i++) {
+            frames[i] = new AnimationFrame(this, i, widths[i], heights[i]);
+        }
+        this.frameDuration = frameDuration;
+        this.looping = looping;
+        this.ticksPerSecond = ticksPerSecond;
+
+        // one full cycle; for non-looping clips this is also the first tick at which the clip counts as finished
+        int cycleTicks = Math.max(1, (int) Math.ceil(frames.length * frameDuration * ticksPerSecond - 1e-4));
+        frameByTick = new int[cycleTicks];
+        double tickDuration = 1.0 / ticksPerSecond;
+        for (int tick = 0; tick < cycleTicks; tick++) {
+            int index = (int) Math.floor(tick * tickDuration / frameDuration + 1e-6);
+            frameByTick[tick] = Math.min(index, frames.length - 1);
+        }
+    }
+
+    private int toTick(float stateTime) {
+        return (int) (stateTime * ticksPerSecond + 0.5f);
+    }
+
+    public int getKeyFrameIndex(float stateTime) {
+        int tick = toTick(stateTime);
+        if (looping) {
+            return frameByTick[tick % frameByTick.length];
+        }
+        return tick < frameByTick.length ? frameByTick[tick] : frames.length - 1;
+    }
+
+    public AnimationFrame getKeyFrame(float stateTime) {
+        return frames[getKeyFrameIndex(stateTime)];
+    }
+
+    public AnimationFrame getFrame(int index) {
+        return frames[index];
+    }
+
+    public AnimationFrame getLastKeyFrame() {
+        return frames[frames.length - 1];
+    }
+
+    public boolean isAnimationFinished(float stateTime) {
+        return !looping && toTick(stateTime) >= frameByTick.length;
+    }
+
+    public float getAnimationDuration() {
+        return frames.length * frameDuration;
+    }
+
+    public int getFrameCount() {
+        return frames.length;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /** Whether the clip's texture is in memory; only meaningful on the GL thread. */
+    public boolean isResident() {
+        return texture != null;
+    }
+}
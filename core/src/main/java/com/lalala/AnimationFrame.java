@@ -0,0 +1,19 @@
+package com.lalala;
+
+/**
+ * One frame of an {@link AnimationClip}, known without its pixels: which clip and frame it is, and the size of the
+ * untrimmed image, which is what hitboxes, culling and sprite placement go by. The simulation passes these around;
+ * only the GL thread turns one into a texture region, through {@link AnimationLibrary#region}.
+ */
+public final class AnimationFrame {
+    public final AnimationClip clip;
+    public final int index;
+    public final int originalWidth, originalHeight;
+
+    AnimationFrame(AnimationClip clip, int index, int originalWidth, int originalHeight) {
+        this.clip = clip;
+        this.index = index;
+        this.originalWidth = originalWidth;
+        this.originalHeight = originalHeight;
+    }
+}
@@ -0,0 +1,363 @@
+package com.lalala;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.PixmapPacker;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas.AtlasRegion;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas.TextureAtlasData;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.JsonReader;
+import com.badlogic.gdx.utils.JsonValue;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.badlogic.gdx.utils.StreamUtils;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+
+/**
+ * Every player and boss animation, keyed by name ("player/walk", "boss/dashLeft", ...).
+ * Clips are described in animations.json and shared by all entities, so spawning another
+ * boss costs no texture or animation memory.
+ * <p>
+ * Only frame sizes are read up front. A clip's texture is loaded the first time one of its frames
+ * is drawn, or earlier when {@link #prefetch} asks for it, and clips that have not been drawn lately
+ * are unloaded, least recently drawn first, while the loaded textures exceed the budget. Loading and
+ * unloading happen on the GL thread in {@link #region} and {@link #update}; the simulation only
+ * handles {@link AnimationFrame}s and may call {@link #prefetch} from any thread.
+ * <p>
+ * Textures come from {@code lwjgl3:packAnimations} when it has been run, one atlas per clip: frames
+ * trimmed to their content, premultiplied alpha. Each {@link AtlasRegion} keeps the untrimmed size and
+ * the offset of the trimmed part, and everything that sizes or draws a frame goes by those, so trimming
+ * changes nothing on screen. Without the packed atlases a clip's loose frame files are packed when it
+ * loads, untrimmed and straight alpha.
+ */
+public class AnimationLibrary implements Disposable {
+    /** Written by the packing tool, relative to the animation descriptor: {@code atlas/<clip name>.atlas}. */
+    public static final String PACKED_DIR = "atlas";
+    private static final int MAX_PAGE_SIZE = 2048;
+    private static final int PADDING = 2;
+    // prefetched clips loaded per frame at most, so a burst of boss decisions doesn't stall a single frame
+    private static final int PREFETCH_PER_FRAME = 2;
+
+    private final ObjectMap<String, AnimationClip> clips = new ObjectMap<>();
+    private final Array<AnimationClip> clipList = new Array<>();
+    private final FileHandle assets;
+    private final boolean premultipliedAlpha;
+
+    private long budgetBytes = Long.MAX_VALUE;
+    // texture bytes of every clip, measured once loaded and estimated from the frame sizes before that
+    private long totalBytes;
+    private long residentBytes;
+    private int residentCount;
+    private long frame;
+    private int loads, prefetches, evictions;
+
+    public AnimationLibrary(FileHandle descriptor, float ticksPerSecond) {
+        JsonValue root = new JsonReader().parse(descriptor);
+        assets = descriptor.parent();
+        premultipliedAlpha = assets.child(PACKED_DIR).exists();
+
+        for (JsonValue clip = root.child; clip != null; clip = clip.next) {
+            String[] files = frameFiles(clip);
+            boolean halfHeight = clip.getBoolean("halfHeight", false);
+            int[] widths = new int[files.length];
+            int[] heights = new int[files.length];
+            long bytes = premultipliedAlpha
+                ? readPackedSizes(clip.name, files, widths, heights)
+                : readLooseSizes(files, widths, heights);
+            if (halfHeight) {
+                for (int i = 0; i < heights.length; i++) {
+                    heights[i] /= 2;
+                }
+            }
+            AnimationClip animation = new AnimationClip(clip.name, files, halfHeight, widths, heights,
+                clip.getFloat("frameDuration", 0.1f), clip.getBoolean("loop", false), ticksPerSecond);
+            animation.textureBytes = bytes;
+            totalBytes += bytes;
+            clips.put(clip.name, animation);
+            clipList.add(animation);
+        }
+    }
+
+    private FileHandle packedAtlas(String clipName) {
+        return assets.child(PACKED_DIR + "/" + clipName + ".atlas");
+    }
+
+    /** Original frame sizes from the clip's atlas file, without loading its pages; returns the pages' texture bytes. */
+    private long readPackedSizes(String clipName, String[] files, int[] widths, int[] heights) {
+        FileHandle file = packedAtlas(clipName);
+        if (!file.exists()) {
+            throw new GdxRuntimeException(file.path() + " is missing; run lwjgl3:packAnimations again");
+        }
+        TextureAtlasData data = new TextureAtlasData(file, file.parent(), false);
+        for (int i = 0; i < files.length; i++) {
+            String name = regionName(files[i]);
+            TextureAtlasData.Region found = null;
+            for (TextureAtlasData.Region region : data.getRegions()) {
+                if (region.name.equals(name)) {
+                    found = region;
+                    break;
+                }
+            }
+            if (found == null) {
+                throw new GdxRuntimeException("Frame " + files[i] + " is missing from " + file.path() + "; run lwjgl3:packAnimations again");
+            }
+            widths[i] = found.originalWidth;
+            heights[i] = found.originalHeight;
+        }
+        long bytes = 0;
+        for (TextureAtlasData.Page page : data.getPages()) {
+            bytes += (long) page.width * (long) page.height * 4L;
+        }
+        return bytes;
+    }
+
+    /** Image sizes from the PNG headers of the loose frames; returns an estimate of their packed pages' bytes. */
+    private long readLooseSizes(String[] files, int[] widths, int[] heights) {
+        for (int i = 0; i < files.length; i++) {
+            FileHandle file = assets.child(files[i]);
+            DataInputStream in = new DataInputStream(file.read(64));
+            try {
+                // 8-byte signature, then the IHDR chunk: length, type, width, height
+                in.skipBytes(16);
+                widths[i] = in.readInt();
+                heights[i] = in.readInt();
+            } catch (IOException e) {
+                throw new GdxRuntimeException("Cannot read the size of " + file.path(), e);
+            } finally {
+                StreamUtils.closeQuietly(in);
+            }
+        }
+        int pageSize = loosePageSize(widths, heights);
+        return (long) pageSize * pageSize * 4L;
+    }
+
+    /** Smallest power-of-two page that should hold every frame of the clip, up to the maximum page size. */
+    private static int loosePageSize(int[] widths, int[] heights) {
+        long area = 0;
+        int largest = 1;
+        for (int i = 0; i < widths.length; i++) {
+            area += (long) (widths[i] + PADDING) * (heights[i] + PADDING);
+            largest = Math.max(largest, Math.max(widths[i], heights[i]) + PADDING);
+        }
+        // rows rarely pack perfectly; leave a quarter for the gaps
+        int side = Math.max(largest, (int) Math.ceil(Math.sqrt(area * 1.25)));
+        return Math.min(MAX_PAGE_SIZE, MathUtils.nextPowerOfTwo(side));
+    }
+
+    /**
+     * The texture region for {@code frame}, loading its clip first if it isn't in memory. GL thread only.
+     * A load here stalls the frame; {@link #prefetch} avoids that for clips that can be predicted.
+     */
+    public AtlasRegion region(AnimationFrame frame) {
+        AnimationClip clip = frame.clip;
+        if (clip.texture == null) {
+            load(clip);
+            loads++;
+        }
+        clip.lastUsedFrame = this.frame;
+        return clip.regions[frame.index];
+    }
+
+    /** Asks for {@code clip} to be loaded before it is drawn. Safe from any thread; the load happens in {@link #update}. */
+    public void prefetch(AnimationClip clip) {
+        clip.prefetchRequested = true;
+    }
+
+    /**
+     * Starts a frame: loads a few of the requested clips, then unloads least recently drawn clips while over
+     * budget. Clips drawn in the previous frame are kept even over budget, so the visible set never thrashes.
+     * GL thread only.
+     */
+    public void update() {
+        frame++;
+        int loadsLeft = PREFETCH_PER_FRAME;
+        for (int i = 0; i < clipList.size && loadsLeft > 0; i++) {
+            AnimationClip clip = clipList.get(i);
+            if (!clip.prefetchRequested) continue;
+            clip.prefetchRequested = false;
+            if (clip.texture == null) {
+                load(clip);
+                prefetches++;
+                loadsLeft--;
+            }
+            // counts as drawn, or it would be the first candidate for eviction
+            clip.lastUsedFrame = frame;
+        }
+
+        while (residentBytes > budgetBytes) {
+            AnimationClip oldest = null;
+            for (int i = 0; i < clipList.size; i++) {
+                AnimationClip clip = clipList.get(i);
+                if (clip.texture != null && clip.lastUsedFrame < frame - 1
+                    && (oldest == null || clip.lastUsedFrame < oldest.lastUsedFrame)) {
+                    oldest = clip;
+                }
+            }
+            if (oldest == null) break;
+            unload(oldest);
+            evictions++;
+        }
+    }
+
+    private void load(AnimationClip clip) {
+        TextureAtlas atlas = premultipliedAlpha ? new TextureAtlas(packedAtlas(clip.getName())) : packLooseFiles(clip);
+        AtlasRegion[] regions = new AtlasRegion[clip.files.length];
+        for (int i = 0; i < regions.length; i++) {
+            AtlasRegion region = atlas.findRegion(regionName(clip.files[i]));
+            if (region == null) {
+                throw new GdxRuntimeException("Frame " + clip.files[i] + " is missing; run lwjgl3:packAnimations again");
+            }
+            // effect sheets hold the slash in their upper half
+            regions[i] = clip.halfHeight ? upperHalf(region) : region;
+        }
+
+        long bytes = 0;
+        for (Texture texture : atlas.getTextures()) {
+            bytes += (long) texture.getWidth() * texture.getHeight() * 4L;
+        }
+        totalBytes += bytes - clip.textureBytes;
+        clip.textureBytes = bytes;
+        clip.texture = atlas;
+        clip.regions = regions;
+        residentBytes += bytes;
+        residentCount++;
+    }
+
+    private void unload(AnimationClip clip) {
+        clip.texture.dispose();
+        clip.texture = null;
+        clip.regions = null;
+        residentBytes -= clip.textureBytes;
+        residentCount--;
+    }
+
+    private TextureAtlas packLooseFiles(AnimationClip clip) {
+        int[] widths = new int[clip.getFrameCount()], heights = new int[clip.getFrameCount()];
+        for (int i = 0; i < widths.length; i++) {
+            AnimationFrame frame = clip.getFrame(i);
+            widths[i] = frame.originalWidth;
+            heights[i] = clip.halfHeight ? frame.originalHeight * 2 : frame.originalHeight;
+        }
+        int pageSize = loosePageSize(widths, heights);
+        PixmapPacker packer = new PixmapPacker(pageSize, pageSize, Pixmap.Format.RGBA8888, PADDING, false);
+        for (String file : clip.files) {
+            String name = regionName(file);
+            if (packer.getRect(name) != null) continue; // the same image twice in one clip
+            Pixmap pixmap = new Pixmap(assets.child(file));
+            packer.pack(name, pixmap);
+            pixmap.dispose();
+        }
+        TextureAtlas atlas = packer.generateTextureAtlas(Texture.TextureFilter.Nearest, Texture.TextureFilter.Nearest, false);
+        packer.dispose();
+        return atlas;
+    }
+
+    /**
+     * The upper half of the untrimmed frame, as a region trimmed the same way: only the packed rows
+     * that fall into that half are kept, and the offsets are measured against the half frame.
+     */
+    private static AtlasRegion upperHalf(AtlasRegion region) {
+        int halfHeight = region.originalHeight / 2;
+        // rows of the untrimmed frame, counted from its top, that the packed rectangle covers
+        int top = region.originalHeight - (int) region.offsetY - region.packedHeight;
+        int from = Math.max(top, 0);
+        int to = Math.max(from + 1, Math.min(top + region.packedHeight, halfHeight));
+
+        AtlasRegion half = new AtlasRegion(region.getTexture(), region.getRegionX(), region.getRegionY() + from - top,
+            region.packedWidth, to - from);
+        half.name = region.name;
+        half.offsetX = region.offsetX;
+        half.offsetY = halfHeight - to;
+        half.originalWidth = region.originalWidth;
+        half.originalHeight = halfHeight;
+        return half;
+    }
+
+    /** Frame files are packed under their path without the extension, which is also how the packing tool names them. */
+    public static String regionName(String file) {
+        int dot = file.lastIndexOf('.');
+        return dot < 0 ? file : file.substring(0, dot);
+    }
+
+    /** Every frame file the descriptor refers to, in clip order, with duplicates. */
+    public static String[] frameFiles(JsonValue clip) {
+        if (clip.has("file")) {
+            return new String[] { clip.getString("file") };
+        }
+        String path = clip.getString("path");
+        String suffix = clip.getString("suffix", ".png");
+        int first = clip.getInt("first");
+        int last = clip.getInt("last");
+        String[] files = new String[last - first + 1];
+        for (int i = first; i <= last; i++) {
+            files[i - first] = path + i + suffix;
+        }
+        return files;
+    }
+
+    public AnimationClip get(String name) {
+        AnimationClip clip = clips.get(name);
+        if (clip == null) {
+            throw new GdxRuntimeException("Unknown animation: " + name);
+        }
+        return clip;
+    }
+
+    /** Caps the texture memory kept for clips that are not on screen; {@link Long#MAX_VALUE} keeps everything once loaded. */
+    public void setBudgetBytes(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    /** Whether frames must be drawn with {@code GL_ONE, GL_ONE_MINUS_SRC_ALPHA} blending. */
+    public boolean isPremultipliedAlpha() {
+        return premultipliedAlpha;
+    }
+
+    /** Texture bytes of the clips in memory. */
+    public long getResidentBytes() {
+        return residentBytes;
+    }
+
+    /** Texture bytes if every clip were in memory at once; clips never loaded are estimated. */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public int getResidentCount() {
+        return residentCount;
+    }
+
+    public int getClipCount() {
+        return clipList.size;
+    }
+
+    /** Clips loaded while drawing, because nothing asked for them in advance; counts up from the start. */
+    public int getLoads() {
+        return loads;
+    }
+
+    /** Clips loaded ahead of time through {@link #prefetch}; counts up from the start. */
+    public int getPrefetches() {
+        return prefetches;
+    }
+
+    /** Clips unloaded to stay within the budget; counts up from the start. */
+    public int getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public void dispose() {
+        for (int i = 0; i < clipList.size; i++) {
+            if (clipList.get(i).texture != null) {
+                unload(clipList.get(i));
+            }
+        }
+    }
+}
@@ -1,25 +1,21 @@
 // Boss.java
 package com.lalala;
 
-import com.badlogic.gdx.Gdx;
-import com.badlogic.gdx.graphics.Texture;
-import com.badlogic.gdx.graphics.g2d.Animation;
-import com.badlogic.gdx.graphics.g2d.SpriteBatch;
-import com.badlogic.gdx.graphics.g2d.TextureRegion;
-import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
 import com.badlogic.gdx.math.Rectangle;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.physics.box2d.*;
-import com.badlogic.gdx.utils.Array;
-import java.util.Random;
+import com.badlogic.gdx.utils.Pool;
+import com.lalala.ai.BossBrain;
+import com.lalala.events.EventBus;
+import com.lalala.events.GameEvent;
 
-public class Boss {
+public class Boss implements Pool.Poolable {
     public static final short CATEGORY_PLAYER = 0x0001;
     public static final short CATEGORY_BOSS   = 0x0002;
     public static final short CATEGORY_GROUND = 0x0004;
 
     // State machine states
-    private enum State {
+    public enum State {
         IDLE,
         WALKING,
         JUMPING,
@@ -60,36 +56,51 @@ public class Boss {
     private Vector2 jumpDashVelocity = new Vector2();
 
     // Animations
-    private Animation<TextureRegion> dashLeftAnimation;
-    private Animation<TextureRegion> dashRightAnimation;
-    private Animation<TextureRegion> jumpLeftAnimation;
-    private Animation<TextureRegion> jumpRightAnimation;
-    private Animation<TextureRegion> walkLeftAnimation;
-    private Animation<TextureRegion> walkRightAnimation;
-    private Animation<TextureRegion> idleLeftAnimation;
-    private Animation<TextureRegion> idleRightAnimation;
-    private Animation<TextureRegion> landLeftAnimation;
-    private Animation<TextureRegion> landRightAnimation;
-    private Animation<TextureRegion> jumpDashLeftAnimation;
-    private Animation<TextureRegion> jumpDashRightAnimation;
-
-    private Animation<TextureRegion> currentAnimation;
-    private TextureRegion currentFrame;
-
-    private Random random = new Random();
-
-    public Boss(World world, float x, float y) {
+    private AnimationClip dashLeftAnimation;
+    private AnimationClip dashRightAnimation;
+    private AnimationClip jumpLeftAnimation;
+    private AnimationClip jumpRightAnimation;
+    private AnimationClip walkLeftAnimation;
+    private AnimationClip walkRightAnimation;
+    private AnimationClip idleLeftAnimation;
+    private AnimationClip idleRightAnimation;
+    private AnimationClip landLeftAnimation;
+    private AnimationClip landRightAnimation;
+    private AnimationClip jumpDashLeftAnimation;
+    private AnimationClip jumpDashRightAnimation;
+
+    private final AnimationLibrary animations;
+    private final EventBus events;
+    private AnimationClip currentAnimation;
+    private AnimationFrame currentFrame;
+
+    private final Vector2 playerPosition = new Vector2();
+    private float tickDelta = 1f / 60f;
+    private final BossBrain brain;
+
+    public Boss(World world, AnimationLibrary animations, EventBus events, float x, float y) {
+        this.animations = animations;
+        this.events = events;
         this.world = world;
         this.position = new Vector2(x, y);
 
-        // Load animations
-        idleLeftAnimation = loadAnimation("Boss/Idle", 1, 0.1f, Animation.PlayMode.LOOP);
-        idleRightAnimation = loadAnimation("Boss/IdleR", 1, 0.1f, Animation.PlayMode.LOOP);
-
-        TextureRegion firstFrame = idleLeftAnimation.getKeyFrame(0f);
+        idleLeftAnimation = animations.get("boss/idleLeft");
+        idleRightAnimation = animations.get("boss/idleRight");
+        dashLeftAnimation = animations.get("boss/dashLeft");
+        dashRightAnimation = animations.get("boss/dashRight");
+        jumpLeftAnimation = animations.get("boss/jumpLeft");
+        jumpRightAnimation = animations.get("boss/jumpRight");
+        walkLeftAnimation = animations.get("boss/walkLeft");
+        walkRightAnimation = animations.get("boss/walkRight");
+        landLeftAnimation = animations.get("boss/landLeft");
+        landRightAnimation = animations.get("boss/landRight");
+        jumpDashLeftAnimation = animations.get("boss/jumpDashLeft");
+        jumpDashRightAnimation = animations.get("boss/jumpDashRight");
+
+        AnimationFrame firstFrame = idleLeftAnimation.getKeyFrame(0f);
         float pixelsPerUnit = 100f;
-        this.width = firstFrame.getRegionWidth() / pixelsPerUnit;
-        this.height = firstFrame.getRegionHeight() / pixelsPerUnit;
+        this.width = firstFrame.originalWidth / pixelsPerUnit;
+        this.height = firstFrame.originalHeight / pixelsPerUnit;
 
         // Create physics body
         BodyDef bodyDef = new BodyDef();
@@ -111,33 +122,39 @@ public class Boss {
         body.createFixture(fixtureDef);
         shape.dispose();
 
-        // Load all animations
-        dashLeftAnimation = loadAnimation("Boss/Dash", 11, 0.05f, Animation.PlayMode.NORMAL);
-        dashRightAnimation = loadAnimation("Boss/DashR", 11, 0.05f, Animation.PlayMode.NORMAL);
-        jumpLeftAnimation = loadAnimation("Boss/Jump", 28, 0.05f, Animation.PlayMode.NORMAL);
-        jumpRightAnimation = loadAnimation("Boss/JumpR", 28, 0.05f, Animation.PlayMode.NORMAL);
-        walkLeftAnimation = loadAnimation("Boss/Walk", 10, 0.08f, Animation.PlayMode.LOOP);
-        walkRightAnimation = loadAnimation("Boss/WalkR", 10, 0.08f, Animation.PlayMode.LOOP);
-        landLeftAnimation = loadAnimation("Boss/Land", 5, 0.05f, Animation.PlayMode.NORMAL);
-        landRightAnimation = loadAnimation("Boss/LandR", 5, 0.05f, Animation.PlayMode.NORMAL);
-        jumpDashLeftAnimation = loadAnimation("Boss/JumpDash", 28, 0.05f, Animation.PlayMode.NORMAL);
-        jumpDashRightAnimation = loadAnimation("Boss/JumpDashR", 28, 0.05f, Animation.PlayMode.NORMAL);
-
         // Initialize with idle animation
         currentAnimation = idleRightAnimation;
         currentFrame = currentAnimation.getKeyFrame(0);
+
+        brain = new BossBrain(this, "ai/boss.tree");
     }
 
-    private Animation<TextureRegion> loadAnimation(String path, int count, float frameDuration, Animation.PlayMode playMode) {
-        Array<TextureRegion> frames = new Array<>();
-        for (int i = 0; i <= count; i++) {
-            String filename = path + "/" + i + ".png";
-            Texture tex = new Texture(Gdx.files.internal(filename));
-            frames.add(new TextureRegion(tex));
-        }
-        Animation<TextureRegion> anim = new Animation<>(frameDuration, frames.toArray(TextureRegion.class));
-        anim.setPlayMode(playMode);
-        return anim;
+    /** Puts a pooled boss back into the arena at full health. */
+    public void spawn(float x, float y) {
+        body.setTransform(x, y, 0f);
+        body.setLinearVelocity(0f, 0f);
+        body.setGravityScale(1);
+        body.setActive(true);
+        position.set(x, y);
+
+        health = (int) maxHealth;
+        alive = true;
+        hitCooldown = 0f;
+        setState(State.IDLE);
+        actionCD = jumpCD = dashCD = jumpFinalCD = 0;
+        stateTime = 0f;
+        facingRight = true;
+        isMovingWhileWalking = false;
+        hasJumpedForDash = false;
+        currentAnimation = idleRightAnimation;
+        currentFrame = currentAnimation.getKeyFrame(0);
+    }
+
+    /** Called when the boss is freed to its pool: the body stays in the world but stops simulating. */
+    @Override
+    public void reset() {
+        alive = false;
+        body.setActive(false);
     }
 
     private boolean isOnGround() {
@@ -157,12 +174,15 @@ public class Boss {
     public void update(Vector2 playerPos, float delta) {
         if (!alive) return;
 
+        playerPosition.set(playerPos);
+        tickDelta = delta;
+
         // Update hitbox
         Vector2 pos = body.getPosition();
         if (currentFrame != null) {
             float pixelsPerUnit = 100f;
-            float drawW = currentFrame.getRegionWidth() / pixelsPerUnit;
-            float drawH = currentFrame.getRegionHeight() / pixelsPerUnit;
+            float drawW = currentFrame.originalWidth / pixelsPerUnit;
+            float drawH = currentFrame.originalHeight / pixelsPerUnit;
             currentHitbox.set(pos.x - drawW / 2f, pos.y - 1f, drawW, drawH);
         }
 
@@ -200,11 +220,11 @@ public class Boss {
                     Vector2 vel = body.getLinearVelocity();
                     body.setLinearVelocity((facingRight ? 6f : -6f), vel.y);
                 }
-                currentFrame = currentAnimation.getKeyFrame(stateTime, true);
+                currentFrame = currentAnimation.getKeyFrame(stateTime);
 
                 //
                 if (actionCD == 0) {
-                    currentState = State.IDLE_WAITING;
+                    setState(State.IDLE_WAITING);
                     isMovingWhileWalking = false;
                     stateTime = 0f;
                 }
@@ -213,18 +233,14 @@ public class Boss {
 
             case IDLE:
             default:
-                // Choose next action if timer is up
-                if (actionCD == 0) {
-                    chooseNextAction(playerPos);
+                // Once the timer is up the brain picks the next action (see needsDecision);
+                // until it gets its time slice, keep the current animation going.
+                if (currentAnimation == walkLeftAnimation || currentAnimation == walkRightAnimation) {
+                    currentFrame = currentAnimation.getKeyFrame(stateTime);
                 } else {
-                    // Continue with current animation
-                    if (currentAnimation == walkLeftAnimation || currentAnimation == walkRightAnimation) {
-                        currentFrame = currentAnimation.getKeyFrame(stateTime, true);
-                    } else {
-                        // Default to idle animation
-                        currentAnimation = facingRight ? idleRightAnimation : idleLeftAnimation;
-                        currentFrame = currentAnimation.getKeyFrame(stateTime, true);
-                    }
+                    // Default to idle animation
+                    currentAnimation = facingRight ? idleRightAnimation : idleLeftAnimation;
+                    currentFrame = currentAnimation.getKeyFrame(stateTime);
                 }
                 break;
         }
@@ -237,7 +253,7 @@ public class Boss {
         currentFrame = currentAnimation.getKeyFrame(stateTime);
 
         if (currentAnimation.isAnimationFinished(stateTime)) {
-            currentState = State.IDLE_WAITING;
+            setState(State.IDLE_WAITING);
             body.setGravityScale(1);
             stateTime = 0f;
             body.setLinearVelocity(0, 0);
@@ -266,7 +282,7 @@ public class Boss {
             currentFrame = currentAnimation.getKeyFrame(stateTime);
 
             if (isOnGround() || currentAnimation.isAnimationFinished(stateTime)) {
-                currentState = State.IDLE_WAITING;
+                setState(State.IDLE_WAITING);
                 hasJumpedForDash = false;
                 stateTime = 0f;
                 body.setLinearVelocity(0, 0);
@@ -281,7 +297,7 @@ public class Boss {
         float vy = body.getLinearVelocity().y;
 
         if (vy == 0) {
-            currentState = State.IDLE_WAITING;
+            setState(State.IDLE_WAITING);
             stateTime = 0f;
         } else if (vy < 0) {
             // Landing phase
@@ -289,7 +305,7 @@ public class Boss {
             currentFrame = currentAnimation.getKeyFrame(stateTime);
 
             if (currentAnimation.isAnimationFinished(stateTime)) {
-                currentFrame = currentAnimation.getKeyFrames()[currentAnimation.getKeyFrames().length - 1];
+                currentFrame = currentAnimation.getLastKeyFrame();
             }
         } else {
             // Rising phase
@@ -300,84 +316,129 @@ public class Boss {
 
     private void updateIdleWaitingState() {
         currentAnimation = facingRight ? idleRightAnimation : idleLeftAnimation;
-        currentFrame = currentAnimation.getKeyFrame(stateTime, true);
+        currentFrame = currentAnimation.getKeyFrame(stateTime);
 
         if (stateTime >= 0.5f) {
-            currentState = State.IDLE;
+            setState(State.IDLE);
             stateTime = 0f;
         }
     }
 
-    private void chooseNextAction(Vector2 playerPos) {
-        int index = random.nextInt(3);
-        float distanceX = playerPos.x - position.x;
-        facingRight = distanceX >= 0;
+    /** True when the boss is idle with no action queued, i.e. its behavior tree should pick one. */
+    public boolean needsDecision() {
+        return alive && currentState == State.IDLE && actionCD == 0;
+    }
 
-        if (random.nextFloat() < 0.25f) { // 25% chance idle
-            currentState = State.IDLE_WAITING;
-            stateTime = 0f;
-            actionCD = 30;
-            return;
+    public float getDistanceToPlayer() {
+        return Math.abs(playerPosition.x - position.x);
+    }
+
+    public boolean isJumpReady() {
+        return jumpCD == 0;
+    }
+
+    public boolean isDashReady() {
+        return dashCD == 0;
+    }
+
+    public boolean isJumpDashReady() {
+        return jumpFinalCD == 0;
+    }
+
+    /** True while the boss idles out its last action; the brain decides once this ends. */
+    public boolean isWaitingForDecision() {
+        return alive && currentState == State.IDLE_WAITING;
+    }
+
+    /**
+     * Asks for the clips the brain may pick next, facing the way the boss will turn, so they can load
+     * during IDLE_WAITING instead of when the action starts. Actions still cooling down by then are left out.
+     */
+    public void prefetchNextActions() {
+        // the wait lasts half a second; cooldowns count down in ticks meanwhile
+        int waitTicks = (int) (0.5f / tickDelta);
+        boolean right = playerPosition.x - position.x >= 0;
+        animations.prefetch(right ? walkRightAnimation : walkLeftAnimation);
+        if (jumpCD <= waitTicks) {
+            animations.prefetch(right ? jumpRightAnimation : jumpLeftAnimation);
+            animations.prefetch(right ? landRightAnimation : landLeftAnimation);
         }
+        if (dashCD <= waitTicks) {
+            animations.prefetch(right ? dashRightAnimation : dashLeftAnimation);
+        }
+        if (jumpFinalCD <= waitTicks) {
+            animations.prefetch(right ? jumpDashRightAnimation : jumpDashLeftAnimation);
+        }
+    }
+
+    private void facePlayer() {
+        facingRight = playerPosition.x - position.x >= 0;
+    }
+
+    public void startIdle(int ticks) {
+        facePlayer();
+        setState(State.IDLE_WAITING);
+        stateTime = 0f;
+        actionCD = ticks;
+    }
 
-        if (Math.abs(distanceX) < 3f) {
+    public void startWalk(boolean moving, int ticks) {
+        facePlayer();
+        if (moving) {
             // Move away from player when player is close
             Vector2 vel = body.getLinearVelocity();
             body.setLinearVelocity((facingRight ? 6f : -6f), vel.y);
-            isMovingWhileWalking = true;
+        }
+        isMovingWhileWalking = moving;
 
-            currentState = State.WALKING;
-            Animation<TextureRegion> newAnimation = facingRight ? walkRightAnimation : walkLeftAnimation;
-            if (currentAnimation != newAnimation) {
-                currentAnimation = newAnimation;
-                stateTime = 0f;
-            }
-            actionCD = 120;
-        } else if (index == 0 && jumpCD == 0) {
-            // Jump
-            currentState = State.JUMPING;
-            stateTime = 0f;
-            Vector2 vel = body.getLinearVelocity();
-            body.setLinearVelocity(facingRight ? 7 : -7, 10f);
-            jumpCD = 60;
-            actionCD = 50;
-        } else if (index == 1 && dashCD == 0) {
-            // Dash
-            currentState = State.DASHING;
-            stateTime = 0f;
-            body.setLinearVelocity((facingRight ? 15f : -15f), 0f);
-            body.setGravityScale(0);
-            dashCD = (int)(dashLeftAnimation.getAnimationDuration() / Gdx.graphics.getDeltaTime());
-            actionCD = 500;
-        } else if (index == 2 && jumpFinalCD == 0) {
-            // Jump dash
-            currentState = State.JUMP_DASHING;
-            hasJumpedForDash = false;
+        setState(State.WALKING);
+        AnimationClip newAnimation = facingRight ? walkRightAnimation : walkLeftAnimation;
+        if (currentAnimation != newAnimation) {
+            currentAnimation = newAnimation;
             stateTime = 0f;
-            jumpFinalCD = 100;
-            actionCD = 500;
-        } else {
-            // Just play walking animation without moving (matches original behavior)
-            currentState = State.WALKING;
-            isMovingWhileWalking = false;
-            Animation<TextureRegion> newAnimation = facingRight ? walkRightAnimation : walkLeftAnimation;
-            if (currentAnimation != newAnimation) {
-                currentAnimation = newAnimation;
-                stateTime = 0f;
-            }
-            actionCD = 30;
         }
+        actionCD = ticks;
     }
 
-    public void draw(SpriteBatch batch) {
-        if (!alive || currentFrame == null) return;
+    public void startJump(int ticks, int cooldown) {
+        facePlayer();
+        setState(State.JUMPING);
+        stateTime = 0f;
+        body.setLinearVelocity(facingRight ? 7 : -7, 10f);
+        jumpCD = cooldown;
+        actionCD = ticks;
+    }
 
-        if (hitCooldown > 0 && ((int)(hitCooldown * 10) % 2 == 0)) {
-            batch.setColor(1f, 0.3f, 0.3f, 1f); // blinking red
-        }
+    public void startDash(int ticks) {
+        facePlayer();
+        setState(State.DASHING);
+        stateTime = 0f;
+        body.setLinearVelocity((facingRight ? 15f : -15f), 0f);
+        body.setGravityScale(0);
+        dashCD = (int)(dashLeftAnimation.getAnimationDuration() / tickDelta);
+        actionCD = ticks;
+    }
 
-        batch.draw(currentFrame, position.x - width / 2f, position.y - height / 2f, width, height);
-        batch.setColor(1f, 1f, 1f, 1f);
+    public void startJumpDash(int ticks, int cooldown) {
+        facePlayer();
+        setState(State.JUMP_DASHING);
+        hasJumpedForDash = false;
+        stateTime = 0f;
+        jumpFinalCD = cooldown;
+        actionCD = ticks;
+    }
+
+    public void writeRenderState(RenderState.BossView view) {
+        view.alive = alive;
+        view.x = position.x;
+        view.y = position.y;
+        view.width = width;
+        view.height = height;
+        view.frame = currentFrame;
+        view.blinking = hitCooldown > 0 && ((int)(hitCooldown * 10) % 2 == 0);
+        view.hitbox.set(currentHitbox);
+        view.healthRatio = health / maxHealth;
+        view.state = currentState;
     }
 
     public void tryHit(Rectangle hitbox) {
@@ -385,7 +446,11 @@ public class Boss {
         if (hitbox.overlaps(currentHitbox)) {
             health--;
             hitCooldown = HIT_INTERVAL;
-            if (health <= 0) alive = false;
+            events.publish(GameEvent.Type.BOSS_HIT, position.x, position.y, health);
+            if (health <= 0) {
+                alive = false;
+                events.publish(GameEvent.Type.BOSS_DIED, position.x, position.y, 0);
+            }
         }
     }
 
@@ -393,29 +458,38 @@ public class Boss {
         world.destroyBody(body);
     }
 
-    public Vector2 getPosition() {
-        return position;
+    /** Parks the body while the level under it is streamed out, and wakes it again once the ground is back. */
+    public void setFrozen(boolean frozen) {
+        if (body.isActive() == frozen) {
+            body.setActive(!frozen);
+        }
     }
 
-    public boolean isAlive() {
-        return alive;
+    /** Moves to {@code state}, telling the event bus if it is a different one. */
+    private void setState(State state) {
+        if (state == currentState) return;
+        currentState = state;
+        events.publish(GameEvent.Type.BOSS_STATE, position.x, position.y, health, state);
     }
 
-    public void drawHealthBar(ShapeRenderer shapeRenderer) {
-        if (!alive) return;
+    State getState() {
+        return currentState;
+    }
 
-        float barWidth = width;
-        float barHeight = 0.1f;
-        float x = position.x - barWidth / 2f;
-        float y = position.y + height / 2f + 0.1f; // pos of health bar
+    int getHealth() {
+        return health;
+    }
 
-        float healthRatio = health / maxHealth;
+    public Vector2 getPosition() {
+        return position;
+    }
 
-        shapeRenderer.setColor(0.3f, 0.3f, 0.3f, 1);
-        shapeRenderer.rect(x, y, barWidth, barHeight);
+    public boolean isAlive() {
+        return alive;
+    }
 
-        shapeRenderer.setColor(1, 0, 0, 1);
-        shapeRenderer.rect(x, y, barWidth * healthRatio, barHeight);
+    public BossBrain getBrain() {
+        return brain;
     }
 
     public Rectangle getCurrentHitbox() {
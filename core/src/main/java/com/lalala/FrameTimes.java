@@ -0,0 +1,74 @@
+package com.lalala;
+
+import com.badlogic.gdx.utils.FloatArray;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/** Frame times collected over a stretch of play, summarized as percentiles. */
+public class FrameTimes {
+    private final FloatArray times = new FloatArray(1024);
+    private float duration;
+
+    /** @param delta frame time in seconds */
+    public void add(float delta) {
+        times.add(delta);
+        duration += delta;
+    }
+
+    public int size() {
+        return times.size;
+    }
+
+    /** Sum of the recorded frame times, in seconds. */
+    public float getDuration() {
+        return duration;
+    }
+
+    public float get(int index) {
+        return times.get(index);
+    }
+
+    /** The frame time below which {@code percent} of the frames fall, in seconds. */
+    public float percentile(float percent) {
+        if (times.size == 0) return 0f;
+        float[] sorted = times.toArray();
+        Arrays.sort(sorted);
+        int index = Math.min(sorted.length - 1, (int) Math.ceil(percent / 100f * sorted.length) - 1);
+        return sorted[Math.max(0, index)];
+    }
+
+    /** Frames that took longer than {@code seconds}. */
+    public int countOver(float seconds) {
+        int count = 0;
+        for (int i = 0; i < times.size; i++) {
+            if (times.get(i) > seconds) count++;
+        }
+        return count;
+    }
+
+    public float max() {
+        float max = 0f;
+        for (int i = 0; i < times.size; i++) {
+            max = Math.max(max, times.get(i));
+        }
+        return max;
+    }
+
+    public float average() {
+        return times.size == 0 ? 0f : duration / times.size;
+    }
+
+    public String summary() {
+        if (times.size == 0) return "no frames";
+        return String.format(Locale.ROOT,
+            "frames=%d avg=%.2fms p50=%.2fms p95=%.2fms p99=%.2fms max=%.2fms over33ms=%d",
+            times.size, average() * 1000f, percentile(50f) * 1000f, percentile(95f) * 1000f,
+            percentile(99f) * 1000f, max() * 1000f, countOver(1f / 30f));
+    }
+
+    public void clear() {
+        times.clear();
+        duration = 0f;
+    }
+}
@@ -0,0 +1,78 @@
+package com.lalala;
+
+import com.lalala.capture.CaptureWriter;
+
+/** Launch-time settings shared by the screens. Filled in by the platform launcher. */
+public class GameConfig {
+    /** Runs the simulation of frame N+1 on a worker thread while frame N is drawn. */
+    public boolean pipelinedSimulation = true;
+    /** Logs frame time, physics time and draw calls once per second. */
+    public boolean profile = false;
+    /**
+     * When above zero, starts the stress arena instead of the normal fight: the boss count doubles
+     * every few seconds up to this number, the player cannot be hurt and killed bosses respawn.
+     */
+    public int arenaBossCount = 0;
+    /** Quits after this many rendered frames; used by scripted launches such as the CDS training run. */
+    public int exitAfterFrames = 0;
+    /** Starting lighting quality; F cycles through the settings while playing. */
+    public Lighting.Quality lightingQuality = Lighting.Quality.MEDIUM;
+    /**
+     * Animation textures kept in memory, in MiB. Clips load when first needed; past this, the ones drawn
+     * least recently are unloaded. Clips on screen stay even when they alone exceed it.
+     */
+    public int textureBudgetMb = 32;
+    /** Plays a throwaway fight behind a loading screen first, so the real one starts with compiled code. */
+    public boolean warmUp = true;
+    /**
+     * Log levels, as a comma-separated list of a level for every category and {@code category=level} overrides,
+     * e.g. {@code info,boss=debug}. Categories are player, boss, physics, persistence, network and capture.
+     */
+    public String logLevels = "info";
+    /** The log file, relative to the assets folder. It rotates at 1 MiB and keeps three old files. */
+    public String logFile = "logs/game.log";
+    /** Tiled map the fight takes place in, relative to the assets folder. */
+    public String levelFile = "levels/arena.tmx";
+    /** When set, the fight's input is saved to this file when it ends, for replaying as a timedemo. */
+    public String recordFile;
+    /**
+     * When set, replays this recorded fight instead of reading input, one tick per frame and as fast as the renderer
+     * goes, then quits. Relative to the assets folder; the recording also picks the level.
+     */
+    public String timedemoFile;
+    /** Where the timedemo writes its per-frame numbers; the percentiles go next to it. */
+    public String timedemoCsv = "timedemo.csv";
+
+    /** When above zero, hosts a versus fight on this UDP port instead of fighting the bosses. */
+    public int versusHostPort = 0;
+    /** When set, joins the versus fight hosted at this {@code host:port}. */
+    public String versusJoin;
+    /** Delay added to every packet this side sends, in milliseconds, to try versus play on one machine. */
+    public int netLatencyMs = 0;
+    /** Up to this many milliseconds of random delay on top of {@link #netLatencyMs}. */
+    public int netJitterMs = 0;
+    /** Share of the packets this side sends that are dropped on purpose, in percent. */
+    public float netLossPercent = 0f;
+
+    /** When above zero, broadcasts the fight to spectators connecting to this TCP port. */
+    public int spectatorPort = 0;
+
+    /** When set, F9 starts and stops recording the screen in this format. A timedemo records from its first frame. */
+    public CaptureWriter.Format captureFormat;
+    /** Frames per second kept while recording the screen; timedemo frames count as 1/60 s each. */
+    public int captureFps = 30;
+    /** Where screen recordings go, relative to the assets folder. */
+    public String captureDir = "captures";
+
+    public boolean isArenaMode() {
+        return arenaBossCount > 0;
+    }
+
+    public boolean isTimedemo() {
+        return timedemoFile != null;
+    }
+
+    public boolean isVersus() {
+        return versusHostPort > 0 || versusJoin != null;
+    }
+}
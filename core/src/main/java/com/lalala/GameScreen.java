@@ -6,35 +6,95 @@ import com.badlogic.gdx.Screen;
 import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.graphics.OrthographicCamera;
 import com.badlogic.gdx.graphics.Texture;
-import com.badlogic.gdx.graphics.g2d.BitmapFont;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.maps.tiled.TmxMapLoader;
+import com.badlogic.gdx.maps.tiled.renderers.OrthogonalTiledMapRenderer;
+import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Rectangle;
-import com.badlogic.gdx.math.Vector2;
-import com.badlogic.gdx.physics.box2d.*;
+import com.badlogic.gdx.physics.box2d.Box2DDebugRenderer;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.TimeUtils;
 import com.badlogic.gdx.utils.viewport.FitViewport;
-
-import static com.lalala.Boss.*;
-
-public class GameScreen implements Screen, ContactListener {
+import com.badlogic.gdx.controllers.Controllers;
+import com.lalala.events.EventBus;
+import com.lalala.events.EventLog;
+import com.lalala.events.EventThread;
+import com.lalala.events.GameEvent;
+import com.lalala.input.ControllerInput;
+import com.lalala.input.InputQueue;
+import com.lalala.input.InputRecording;
+import com.lalala.input.KeyboardInput;
+import com.lalala.net.RollbackSession;
+import com.lalala.net.UdpLink;
+
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class GameScreen implements Screen {
+    private static final float MAX_FRAME_TIME = 0.25f;
+    private static final long STEP_NANOS = (long) (Simulation.STEP * 1_000_000_000L);
+    // how quickly the camera closes the gap to the player, per second; higher is snappier
+    private static final float CAMERA_STIFFNESS = 6f;
+    private static final float OPENING_SECONDS = 10f;
+    // how long the screen flashes red after the player is hit, in seconds
+    private static final float HIT_FLASH_TIME = 0.25f;
 
     private final MainGame game;
 
-    private World world;
+    private Simulation simulation;
+    private AnimationLibrary animations;
     private Box2DDebugRenderer debugRenderer;
     private OrthographicCamera camera;
     private SpriteBatch batch;
     private FitViewport viewport;
     private ShapeRenderer shapeRenderer;
-    private Player player;
-    private Boss boss;
-
-    private boolean left, right, jump, dash, attack, downAttack;
+    private Profiler profiler;
+    private Lighting lighting;
+    private Level level;
+    private TiledMap map;
+    private OrthogonalTiledMapRenderer mapRenderer;
+    // the part of the world the camera sees this frame; everything outside it is skipped
+    private final Rectangle viewBounds = new Rectangle();
+    private long lightingNanos;
+
+    // key and pad events go from the GL thread to whichever thread ticks the simulation
+    private final InputQueue inputQueue = new InputQueue(256);
+    private final ControllerInput controllerInput = new ControllerInput(inputQueue);
     private boolean paused = false;
-    private float elapsedTime = 0f;  // 用于记录游戏时间
+    private float accumulator = 0f;
+    // frame times of the fight's opening seconds, where JIT compilation shows up as stutter
+    private final FrameTimes openingFrames = new FrameTimes();
+    private boolean openingReported;
+    private boolean firstFrame = true;
+    // a timedemo replays playback instead of reading devices; a normal fight may save its input to recording
+    private InputRecording playback, recording;
+    private int tick;
+    private volatile boolean playbackFinished;
+    private boolean playbackReported;
+
+    // simulation writes renderStates[1 - front] while the GL thread draws renderStates[front]
+    private final RenderState[] renderStates = { new RenderState(), new RenderState() };
+    private int front = 0;
+    private ExecutorService simulationThread;
+    private Future<?> pendingSimulation;
 
     private Texture background;
 
+    // fight events: the hit flash reacts on the GL thread, the log on a thread of its own
+    private EventBus.Subscription screenEvents;
+    private EventThread eventLog;
+    private float hitFlash;
+
+    // this fight's path, stored with the time if it's won, and the best stored one for this level drawn alongside
+    private final GhostRecorder ghostRecorder = new GhostRecorder();
+    private GhostReplay ghost;
+    // a versus fight ticks through the rollback session instead of reading the input queue itself
+    private RollbackSession versus;
 
     public GameScreen(MainGame game) {
         this.game = game;
@@ -42,158 +102,447 @@ public class GameScreen implements Screen, ContactListener {
 
     @Override
     public void show() {
-        world = new World(new Vector2(0, -25f), true);
-        world.setContactListener(this);
-
         debugRenderer = new Box2DDebugRenderer();
         camera = new OrthographicCamera();
-        viewport = new FitViewport(16, 9, camera);
+        viewport = new FitViewport(Simulation.WORLD_WIDTH, Simulation.WORLD_HEIGHT, camera);
         batch = new SpriteBatch();
         shapeRenderer = new ShapeRenderer();
 
-        player = new Player(world, 8, 5);
-        boss = new Boss(world, 1, 5);
+        animations = game.getAnimations();
+        level = Level.load(Gdx.files.internal(game.getConfig().levelFile));
+        Gdx.app.log("Level", level.getName() + ": " + level.getColumns() + "x" + level.getRows() + " tiles, "
+            + level.getSolidTileCount() + " solid");
+        // the boss brains draw from this generator, so a replay that seeds it the same way makes the same choices
+        playback = game.getPlayback();
+        if (playback != null) {
+            MathUtils.random.setSeed(playback.getSeed());
+        } else if (game.getConfig().recordFile != null && !game.getConfig().isVersus()) {
+            recording = new InputRecording(TimeUtils.millis(), game.getConfig().levelFile);
+            MathUtils.random.setSeed(recording.getSeed());
+        }
+        simulation = new Simulation(game.getConfig(), animations, level);
+        if (game.getConfig().isVersus()) {
+            startVersus();
+        }
+        screenEvents = simulation.getEvents().subscribe(this::onEvent);
+        eventLog = new EventThread("event log", simulation.getEvents().subscribe(new EventLog()));
+        if (game.getStateObserver() != null) {
+            game.getStateObserver().fightStarted(simulation.getEvents());
+        }
+        lighting = new Lighting(simulation.getWorld(), game.getConfig().lightingQuality);
         background = new Texture(Gdx.files.internal("background.png"));
+        map = new TmxMapLoader().load(game.getConfig().levelFile);
+        // the renderer only walks the cells inside the view, so its cost follows the screen, not the map
+        mapRenderer = new OrthogonalTiledMapRenderer(map,
+            level.getTileSize() / map.getProperties().get("tilewidth", Integer.class), batch);
 
-        createBounds(0.5f);
-    }
+        if (game.getConfig().profile || game.getConfig().isArenaMode()) {
+            profiler = new Profiler();
+        }
 
-    private void input() {
-        left = Gdx.input.isKeyPressed(Input.Keys.A);
-        right = Gdx.input.isKeyPressed(Input.Keys.D);
-        jump = Gdx.input.isKeyJustPressed(Input.Keys.W) || Gdx.input.isKeyJustPressed(Input.Keys.K);
-        dash = Gdx.input.isKeyJustPressed(Input.Keys.L);
-        attack = Gdx.input.isKeyJustPressed(Input.Keys.J);
-        downAttack = attack && Gdx.input.isKeyPressed(Input.Keys.S);
-        if (Gdx.input.isKeyJustPressed(Input.Keys.P)) {
-            paused = !paused;
+        simulation.writeRenderState(renderStates[0]);
+        simulation.writeRenderState(renderStates[1]);
+        camera.position.set(renderStates[0].player.x, renderStates[0].player.y, 0f);
+        if (game.getConfig().pipelinedSimulation) {
+            simulationThread = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "simulation");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        if (playback == null) {
+            Gdx.input.setInputProcessor(new KeyboardInput(inputQueue));
+            Controllers.addListener(controllerInput);
+            if (versus == null) loadGhost();
         }
     }
 
-    private void logic(float delta) {
-        player.update(left, right, jump, dash, attack, downAttack, delta);
+    private void startVersus() {
+        GameConfig config = game.getConfig();
+        boolean joining = config.versusJoin != null;
+        UdpLink link = joining
+            ? UdpLink.join(config.versusJoin, config.netLatencyMs, config.netJitterMs, config.netLossPercent)
+            : UdpLink.host(config.versusHostPort, config.netLatencyMs, config.netJitterMs, config.netLossPercent);
+        versus = new RollbackSession(simulation, link, joining ? 1 : 0);
+        Gdx.app.log("Versus", (joining ? "joining " + config.versusJoin : "hosting on port " + link.getLocalPort())
+            + ", " + config.netLatencyMs + "+" + config.netJitterMs + " ms added, " + config.netLossPercent + "% dropped");
+    }
 
-        if (boss != null) {
-            boss.update(player.getPosition(), delta);
-            boss.tryHit(player.getCurrentHitbox());
-            player.tryHit(boss.getCurrentHitbox());
+    private void loadGhost() {
+        byte[] best = new Leaderboard().bestGhost(game.getConfig().levelFile);
+        if (best == null) return;
+        try {
+            ghost = new GhostReplay(best, animations);
+            Gdx.app.log("Ghost", "racing the best run on " + level.getName() + ", " + best.length + " bytes");
+        } catch (RuntimeException e) {
+            Gdx.app.error("Ghost", "can't read the stored ghost", e);
+        }
+    }
 
-            if (!boss.isAlive()) {
-                boss.dispose();
-                boss = null;
-                game.setScreen(new WinScreen(elapsedTime));  // 传递时间到 WinScreen
-                return;
+    /**
+     * Advances the world by whole fixed ticks and snapshots the result. May run on the simulation thread.
+     * The ticks run back to back but stand for the last few steps before {@code frameNanos}, so each one
+     * only sees the input events stamped before its own moment.
+     */
+    private void simulate(float delta, long frameNanos, RenderState out) {
+        accumulator += Math.min(delta, MAX_FRAME_TIME);
+        long tickNanos = frameNanos - (long) (accumulator / Simulation.STEP - 1) * STEP_NANOS;
+        while (accumulator >= Simulation.STEP && out.outcome == RenderState.Outcome.NONE) {
+            if (versus != null) {
+                boolean ticked = versus.advance(inputQueue, tickNanos);
+                out.outcome = versus.getOutcome();
+                if (!ticked) {
+                    // waiting for the other side; the time spent waiting isn't made up afterwards
+                    accumulator = Math.min(accumulator, Simulation.STEP);
+                    break;
+                }
+            } else {
+                if (playback != null) {
+                    playback.replay(simulation.getInput(), tick);
+                } else {
+                    inputQueue.drainTo(simulation.getInput(), tickNanos, recording, tick);
+                }
+                out.outcome = simulation.tick();
+                if (playback == null) {
+                    ghostRecorder.sample(simulation.getPlayer());
+                }
             }
-
+            if (recording != null) {
+                recording.endTick(tick);
+            }
+            tick++;
+            accumulator -= Simulation.STEP;
+            tickNanos += STEP_NANOS;
         }
-
-        if (player.isDead()) {
-            game.setScreen(new LostScreen());
-            return;
+        if (playback != null && tick >= playback.getLength()) {
+            playbackFinished = true;
         }
+        simulation.writeRenderState(out);
+        if (versus != null) {
+            // the simulation's inputs carry tick times in versus, so the latency comes from the session's devices
+            versus.drainLatency(out.inputActions, out.inputLatencyNanos, out.inputLatencyMaxNanos);
+        }
+    }
 
-        world.step(delta, 6, 2);
+    /** Eases the camera towards the player, keeps it inside the level and records what it sees. */
+    private void followPlayer(RenderState state, float delta) {
+        float halfWidth = viewport.getWorldWidth() * camera.zoom / 2f;
+        float halfHeight = viewport.getWorldHeight() * camera.zoom / 2f;
+        float follow = 1f - (float) Math.exp(-CAMERA_STIFFNESS * Math.min(delta, MAX_FRAME_TIME));
+        float x = camera.position.x + (state.player.x - camera.position.x) * follow;
+        float y = camera.position.y + (state.player.y - camera.position.y) * follow;
+        // a level smaller than the view stays centered instead
+        x = level.getWidth() > halfWidth * 2f ? MathUtils.clamp(x, halfWidth, level.getWidth() - halfWidth) : level.getWidth() / 2f;
+        y = level.getHeight() > halfHeight * 2f ? MathUtils.clamp(y, halfHeight, level.getHeight() - halfHeight) : level.getHeight() / 2f;
+        camera.position.set(x, y, 0f);
+        camera.update();
+        viewBounds.set(x - halfWidth, y - halfHeight, halfWidth * 2f, halfHeight * 2f);
     }
 
-    private void draw() {
+    private void draw(RenderState state) {
         Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
         viewport.apply();
 
-        camera.update();
         batch.setProjectionMatrix(camera.combined);
         batch.begin();
-        batch.draw(background, 0, 0, viewport.getWorldWidth(), viewport.getWorldHeight());
-        player.draw(batch);
-        if (boss != null) {
-            boss.draw(batch);
-        }
+        drawBackground();
+        batch.end();
+
+        mapRenderer.setView(camera);
+        mapRenderer.render();
 
+        // prefetched clips load here, before anything is drawn, and clips long off screen are dropped
+        animations.update();
+        if (animations.isPremultipliedAlpha()) {
+            batch.setBlendFunction(GL20.GL_ONE, GL20.GL_ONE_MINUS_SRC_ALPHA);
+        }
+        batch.begin();
+        if (ghost != null) {
+            ghost.advanceTo(state.tick);
+            if (ghost.isVisible(viewBounds)) {
+                ghost.draw(batch, animations);
+            }
+        }
+        if (state.player.isVisible(viewBounds)) {
+            state.player.draw(batch, animations);
+        }
+        if (state.hasOpponent && state.opponent.isVisible(viewBounds)) {
+            state.opponent.draw(batch, animations);
+        }
+        for (int i = 0; i < state.bossCount; i++) {
+            RenderState.BossView boss = state.bosses.get(i);
+            if (boss.isVisible(viewBounds)) {
+                boss.draw(batch, animations);
+            }
+        }
         batch.end();
+        batch.setBlendFunction(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
+
+        long lightingStart = TimeUtils.nanoTime();
+        lighting.render();
+        lightingNanos += TimeUtils.nanoTime() - lightingStart;
 
         shapeRenderer.setProjectionMatrix(camera.combined);
         shapeRenderer.begin(ShapeRenderer.ShapeType.Line);
-        player.drawHitbox(shapeRenderer);
-        if (boss != null) {
-            boss.drawHealthBar(shapeRenderer);
+        for (int i = 0; i < state.bossCount; i++) {
+            RenderState.BossView boss = state.bosses.get(i);
+            if (boss.isVisible(viewBounds)) {
+                boss.drawHealthBar(shapeRenderer);
+                // hitbox for debug
+                boss.drawHitbox(shapeRenderer);
+            }
         }
-        player.drawHealthBar(shapeRenderer);
-
-        // hitbox for debug
-        shapeRenderer.setColor(1f, 1f, 0f, 1f);
-        if (boss != null) {
-            Rectangle bossBox = boss.getCurrentHitbox();
-            shapeRenderer.rect(bossBox.x, bossBox.y, bossBox.width, bossBox.height);
+        for (int i = 0; i < state.blockCount; i++) {
+            RenderState.BlockView block = state.blocks.get(i);
+            if (block.isVisible(viewBounds)) {
+                block.draw(shapeRenderer);
+            }
+        }
+        if (state.player.isVisible(viewBounds)) {
+            state.player.drawHitbox(shapeRenderer);
+            state.player.drawHealthBar(shapeRenderer);
+            shapeRenderer.setColor(0, 1, 0, 1);
+            shapeRenderer.rect(state.player.x - 0.5f, state.player.y - 0.5f, 1f, 1f);
+        }
+        if (state.hasOpponent && state.opponent.isVisible(viewBounds)) {
+            state.opponent.drawHitbox(shapeRenderer);
+            state.opponent.drawHealthBar(shapeRenderer);
         }
-        Vector2 pos = player.getBody().getPosition();
-        shapeRenderer.setColor(0, 1, 0, 1);
-        shapeRenderer.rect(pos.x - 0.5f, pos.y - 0.5f, 1f, 1f);
 
         shapeRenderer.end();
 
-        debugRenderer.render(world, camera.combined);
+        // the debug renderer reads the live world, which the simulation thread may be stepping
+        if (simulationThread == null) {
+            debugRenderer.render(simulation.getWorld(), camera.combined);
+        }
+
+        if (hitFlash > 0f) {
+            Gdx.gl.glEnable(GL20.GL_BLEND);
+            shapeRenderer.begin(ShapeRenderer.ShapeType.Filled);
+            shapeRenderer.setColor(1f, 0f, 0f, 0.3f * hitFlash / HIT_FLASH_TIME);
+            shapeRenderer.rect(viewBounds.x, viewBounds.y, viewBounds.width, viewBounds.height);
+            shapeRenderer.end();
+            Gdx.gl.glDisable(GL20.GL_BLEND);
+        }
     }
 
     @Override
     public void render(float delta) {
-        input();
+        long frameStart = TimeUtils.nanoTime();
+        // a timedemo shows every tick exactly once, however long the frame took, so each run draws the same frames
+        final float stepDelta = playback != null ? Simulation.STEP : delta;
+        if (playback == null
+            && (controllerInput.consumePauseRequest() | Gdx.input.isKeyJustPressed(Input.Keys.P)) && versus == null) {
+            paused = !paused;
+        }
+
+        RenderState state;
+        if (simulationThread != null) {
+            if (pendingSimulation != null) {
+                awaitSimulation();
+                front = 1 - front;
+            }
+            state = renderStates[front];
+            // the world is idle until the next step is submitted, which is the window for casting light rays
+            prepareFrame(state, stepDelta);
+            if (!paused && state.outcome == RenderState.Outcome.NONE) {
+                RenderState back = renderStates[1 - front];
+                pendingSimulation = simulationThread.submit(() -> simulate(stepDelta, frameStart, back));
+            } else if (paused) {
+                dropPausedInput();
+            }
+        } else {
+            state = renderStates[front];
+            if (!paused) {
+                simulate(stepDelta, frameStart, state);
+            } else {
+                dropPausedInput();
+            }
+            prepareFrame(state, stepDelta);
+        }
+
+        if (playback != null && (playbackFinished || state.outcome != RenderState.Outcome.NONE)) {
+            finishPlayback(state);
+            return;
+        }
+        // after the next step was submitted, so whatever the observer costs overlaps with it
+        if (game.getStateObserver() != null) {
+            game.getStateObserver().observe(state);
+        }
+        screenEvents.poll();
+        // the outcome, not FIGHT_WON or FIGHT_LOST, ends the fight: the bus may drop events, the render state can't
+        if (state.outcome != RenderState.Outcome.NONE) {
+            showOutcome(state);
+            return;
+        }
+        hitFlash = Math.max(0f, hitFlash - stepDelta);
 
+        draw(state);
         if (!paused) {
-            logic(delta);
-            elapsedTime += delta;
+            recordOpening(stepDelta);
         }
 
-        draw();
+        if (profiler != null) {
+            profiler.lighting(lighting.getQuality(), lightingNanos, lighting.getActiveLights());
+            profiler.animations(animations);
+            profiler.frame(stepDelta, TimeUtils.nanoTime() - frameStart, state);
+        }
     }
 
+    /** Effects for the simulation's events, on the GL thread after the ticks that raised them. */
+    private void onEvent(GameEvent event) {
+        switch (event.type) {
+            case PLAYER_HIT:
+                hitFlash = HIT_FLASH_TIME;
+                break;
+            default:
+                break;
+        }
+    }
 
-    private void createBounds(float margin) {
-        float worldWidth = viewport.getWorldWidth();
-        float worldHeight = viewport.getWorldHeight();
+    /** Leaves for the win or lose screen; a timedemo never gets here, it stops on its own instead. */
+    private void showOutcome(RenderState state) {
+        if (state.outcome == RenderState.Outcome.LOST) {
+            game.setScreen(new LostScreen());
+        } else if (versus != null) {
+            // a versus win isn't a time for the leaderboard
+            game.setScreen(new WinScreen(state.elapsedTime, null, null));
+        } else {
+            game.setScreen(new WinScreen(state.elapsedTime, ghostRecorder, game.getConfig().levelFile));  // 传递时间到 WinScreen
+        }
+    }
 
-        float left = margin;
-        float right = worldWidth - margin;
-        float bottom = margin;
-        float top = worldHeight - margin;
+    /**
+     * Logs the frame times of the first {@link #OPENING_SECONDS} of the fight once, to compare launches with and
+     * without the warm-up. The first frame is left out: its delta covers loading, not play.
+     */
+    private void recordOpening(float delta) {
+        if (openingReported) return;
+        if (firstFrame) {
+            firstFrame = false;
+            return;
+        }
+        openingFrames.add(delta);
+        if (openingFrames.getDuration() >= OPENING_SECONDS) {
+            Gdx.app.log("Opening", "first " + (int) OPENING_SECONDS + " s, warm-up "
+                + (game.getConfig().warmUp && WarmUp.isUseful() ? "on" : "off") + ": " + openingFrames.summary());
+            openingReported = true;
+        }
+    }
 
-        BodyDef bodyDef = new BodyDef();
-        bodyDef.type = BodyDef.BodyType.StaticBody;
-        Body bounds = world.createBody(bodyDef);
+    /** Ends a timedemo once the recording runs out or the fight is decided; the launcher's wrapper writes the numbers. */
+    private void finishPlayback(RenderState state) {
+        if (playbackReported) return;
+        playbackReported = true;
+        Gdx.app.log("Timedemo", String.format(Locale.ROOT, "replayed %.2f s, outcome %s, player at %.2f,%.2f, %d bosses left",
+            state.elapsedTime, state.outcome, state.player.x, state.player.y, state.bossCount));
+        Gdx.app.exit();
+    }
 
-        EdgeShape edge = new EdgeShape();
-        FixtureDef fixtureDef = new FixtureDef();
-        fixtureDef.shape = edge;
-        fixtureDef.friction = 0.8f;
-        fixtureDef.filter.categoryBits = CATEGORY_GROUND;
-        fixtureDef.filter.maskBits = CATEGORY_PLAYER | CATEGORY_BOSS;
+    /** Moves the camera and lays out this frame's lights. Must run while the simulation thread is idle. */
+    private void prepareFrame(RenderState state, float delta) {
+        if (Gdx.input.isKeyJustPressed(Input.Keys.F)) {
+            Lighting.Quality quality = lighting.getQuality().next();
+            lighting.dispose();
+            lighting = new Lighting(simulation.getWorld(), quality);
+            lighting.resize(viewport);
+            Gdx.app.log("Lighting", "quality " + quality);
+        }
+        followPlayer(state, delta);
+        long lightingStart = TimeUtils.nanoTime();
+        lighting.update(state, camera, viewBounds);
+        lightingNanos = TimeUtils.nanoTime() - lightingStart;
+    }
 
-        edge.set(new Vector2(left, bottom), new Vector2(right, bottom));
-        bounds.createFixture(fixtureDef);
-        edge.set(new Vector2(left, top), new Vector2(right, top));
-        bounds.createFixture(fixtureDef);
-        edge.set(new Vector2(left, bottom), new Vector2(left, top));
-        bounds.createFixture(fixtureDef);
-        edge.set(new Vector2(right, bottom), new Vector2(right, top));
-        bounds.createFixture(fixtureDef);
+    /**
+     * Keeps held keys up to date while paused but forgets presses, so nothing fires on resume.
+     * Only called with no simulation in flight, so the GL thread may act as the queue's consumer.
+     */
+    private void dropPausedInput() {
+        inputQueue.drainTo(simulation.getInput(), Long.MAX_VALUE);
+        simulation.getInput().clearPresses();
+    }
 
-        edge.dispose();
+    private void awaitSimulation() {
+        if (pendingSimulation == null) return;
+        try {
+            pendingSimulation.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new GdxRuntimeException("Simulation step failed", e.getCause());
+        } finally {
+            pendingSimulation = null;
+        }
+    }
+
+    private void stopSimulationThread() {
+        if (simulationThread == null) return;
+        awaitSimulation();
+        simulationThread.shutdown();
+        simulationThread = null;
     }
 
-    @Override public void resize(int width, int height) { viewport.update(width, height, true); }
+    /**
+     * The background image covers one screen; larger levels repeat it in screen-sized chunks and
+     * only the chunks overlapping the view are drawn.
+     */
+    private void drawBackground() {
+        float chunkWidth = Simulation.WORLD_WIDTH;
+        float chunkHeight = Simulation.WORLD_HEIGHT;
+        int firstColumn = Math.max(0, (int) (viewBounds.x / chunkWidth));
+        int firstRow = Math.max(0, (int) (viewBounds.y / chunkHeight));
+        int lastColumn = (int) Math.min((viewBounds.x + viewBounds.width) / chunkWidth, (level.getWidth() - 0.001f) / chunkWidth);
+        int lastRow = (int) Math.min((viewBounds.y + viewBounds.height) / chunkHeight, (level.getHeight() - 0.001f) / chunkHeight);
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                batch.draw(background, column * chunkWidth, row * chunkHeight, chunkWidth, chunkHeight);
+            }
+        }
+    }
+
+    // the camera position is owned by followPlayer, so resizing must not recenter it
+    @Override public void resize(int width, int height) {
+        viewport.update(width, height);
+        lighting.resize(viewport);
+    }
     @Override public void pause() {}
     @Override public void resume() {}
-    @Override public void hide() {}
+    @Override public void hide() {
+        Gdx.input.setInputProcessor(null);
+        Controllers.removeListener(controllerInput);
+        stopSimulationThread();
+        if (game.getStateObserver() != null) {
+            game.getStateObserver().fightEnded();
+        }
+        if (versus != null) {
+            versus.dispose();
+            versus = null;
+        }
+        if (eventLog != null) {
+            eventLog.dispose();
+            eventLog = null;
+        }
+        if (recording != null) {
+            recording.write(Gdx.files.local(game.getConfig().recordFile));
+            Gdx.app.log("Input", "recorded " + recording.getEventCount() + " events over " + recording.getLength()
+                + " ticks to " + game.getConfig().recordFile);
+            recording = null;
+        }
+    }
     @Override public void dispose() {
+        stopSimulationThread();
         batch.dispose();
-        player.dispose();
-        world.dispose();
+        simulation.dispose();
         debugRenderer.dispose();
         shapeRenderer.dispose();
         background.dispose();
+        mapRenderer.dispose();
+        lighting.dispose();
+        map.dispose();
+        if (profiler != null) {
+            profiler.dispose();
+        }
 
     }
-
-    @Override public void beginContact(Contact contact) { player.beginContact(contact); }
-    @Override public void endContact(Contact contact) { player.endContact(contact); }
-    @Override public void preSolve(Contact contact, Manifold manifold) {}
-    @Override public void postSolve(Contact contact, ContactImpulse impulse) {}
 }
@@ -0,0 +1,132 @@
+package com.lalala;
+
+import com.badlogic.gdx.utils.ByteArray;
+import com.badlogic.gdx.utils.ObjectIntMap;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Records the player's path through a fight, one sample per tick, into the compact form {@link GhostReplay} plays
+ * back as the ghost of the best run.
+ * <p>
+ * Positions are kept in hundredths of a world unit, and each tick stores how the per-tick movement changed rather
+ * than where the player is. The movement is only corrected when the predicted position drifts more than
+ * {@link #TOLERANCE} from the real one, so walking, falling and standing produce runs of ticks with nothing to store.
+ * Each tick, or run of unchanged ticks, is a varint tag: the run length shifted left by 4, or, for a tick that
+ * changed, a set of flags followed by what changed.
+ * <ul>
+ * <li>{@link #DX}, {@link #DY}: the change in movement per tick, as a zigzag varint.</li>
+ * <li>{@link #SPRITE}: a new sprite: a varint of the clip's index in the name table, shifted left once with the
+ * facing in the low bit, then a varint frame index.</li>
+ * <li>{@link #NEXT_FRAME}: the next frame of the same clip.</li>
+ * </ul>
+ * A run of one minute takes a few KiB. The stored form is a version byte, the clip name table and then the ticks.
+ */
+public class GhostRecorder {
+    static final int VERSION = 1;
+    static final int DX = 1, DY = 2, SPRITE = 4, NEXT_FRAME = 8;
+    static final int FLAG_BITS = 4;
+    /** Positions are stored in these fractions of a world unit. */
+    static final float UNITS = 100f;
+    // how far the replayed position may drift from the real one, in stored units, before the movement is corrected
+    private static final int TOLERANCE = 1;
+
+    private final ByteArray ticks = new ByteArray(16 * 1024);
+    private final ObjectIntMap<String> clipIds = new ObjectIntMap<>();
+    private final ByteArray names = new ByteArray(256);
+    private int x, y, dx, dy;
+    private int clipId = -1, frameIndex = -1;
+    private boolean facingRight;
+    private int run;
+    private int samples;
+
+    /** Records where the player is after the tick that just ran. Call on the thread that ticks, once per tick. */
+    public void sample(Player player) {
+        int flags = 0;
+        int ddx = 0, ddy = 0;
+        int targetX = Math.round(player.getPosition().x * UNITS);
+        int targetY = Math.round(player.getPosition().y * UNITS);
+        if (Math.abs(x + dx - targetX) > TOLERANCE) {
+            ddx = targetX - x - dx;
+            flags |= DX;
+        }
+        if (Math.abs(y + dy - targetY) > TOLERANCE) {
+            ddy = targetY - y - dy;
+            flags |= DY;
+        }
+        dx += ddx;
+        dy += ddy;
+        x += dx;
+        y += dy;
+
+        AnimationFrame frame = player.getCurrentFrame();
+        int newClipId = frame == null ? clipId : clipId(frame.clip.getName());
+        int newFrameIndex = frame == null ? frameIndex : frame.index;
+        boolean newFacingRight = player.isFacingRight();
+        if (newClipId != clipId || newFacingRight != facingRight || newFrameIndex != frameIndex) {
+            flags |= newClipId == clipId && newFacingRight == facingRight && newFrameIndex == frameIndex + 1 ? NEXT_FRAME : SPRITE;
+            clipId = newClipId;
+            frameIndex = newFrameIndex;
+            facingRight = newFacingRight;
+        }
+
+        samples++;
+        if (flags == 0) {
+            run++;
+            return;
+        }
+        flushRun();
+        writeVarint(ticks, flags);
+        if ((flags & DX) != 0) writeVarint(ticks, zigzag(ddx));
+        if ((flags & DY) != 0) writeVarint(ticks, zigzag(ddy));
+        if ((flags & SPRITE) != 0) {
+            writeVarint(ticks, clipId << 1 | (facingRight ? 1 : 0));
+            writeVarint(ticks, frameIndex);
+        }
+    }
+
+    private int clipId(String name) {
+        int id = clipIds.get(name, -1);
+        if (id < 0) {
+            id = clipIds.size;
+            clipIds.put(name, id);
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            writeVarint(names, bytes.length);
+            names.addAll(bytes);
+        }
+        return id;
+    }
+
+    private void flushRun() {
+        if (run == 0) return;
+        writeVarint(ticks, run << FLAG_BITS);
+        run = 0;
+    }
+
+    public int getSamples() {
+        return samples;
+    }
+
+    /** The recording so far, ready to store. Only call once the thread that samples has stopped. */
+    public byte[] finish() {
+        flushRun();
+        ByteArray out = new ByteArray(names.size + ticks.size + 8);
+        out.add((byte) VERSION);
+        writeVarint(out, clipIds.size);
+        out.addAll(names);
+        out.addAll(ticks);
+        return out.toArray();
+    }
+
+    static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    static void writeVarint(ByteArray out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.add((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.add((byte) value);
+    }
+}
@@ -0,0 +1,154 @@
+package com.lalala;
+
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Plays back a run stored by {@link GhostRecorder} as a translucent ghost of the player. The ticks are decoded one
+ * at a time as the fight reaches them, straight out of the stored bytes into a handful of fields, so following the
+ * ghost allocates nothing on the render thread. Clip names are resolved once, up front; a clip that no longer exists
+ * leaves the ghost invisible while it would be shown. The constructor walks the whole tick stream once, so a
+ * truncated or corrupt ghost is rejected when it is loaded rather than failing in the middle of a frame.
+ */
+public class GhostReplay {
+    private static final float ALPHA = 0.35f;
+
+    private final byte[] data;
+    private final AnimationClip[] clips;
+    private final int start;
+    private int position;
+    private int samples;
+    private int run;
+    private int x, y, dx, dy;
+    private AnimationClip clip;
+    private int frameIndex;
+    private boolean facingRight;
+
+    public GhostReplay(byte[] data, AnimationLibrary animations) {
+        this.data = data;
+        if (data.length == 0 || data[0] != GhostRecorder.VERSION) {
+            throw new GdxRuntimeException("Unknown ghost format " + (data.length == 0 ? "(empty)" : String.valueOf(data[0])));
+        }
+        position = 1;
+        int clipCount = readVarint();
+        // every name takes at least its length byte
+        if (clipCount < 0 || clipCount > data.length - position) throw corrupt();
+        clips = new AnimationClip[clipCount];
+        for (int i = 0; i < clips.length; i++) {
+            int length = readVarint();
+            if (length < 0 || length > data.length - position) throw corrupt();
+            String name = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            try {
+                clips[i] = animations.get(name);
+            } catch (GdxRuntimeException e) {
+                clips[i] = null;
+            }
+        }
+        start = position;
+        while (position < data.length) {
+            step();
+            // the ticks of a run read nothing, so there is nothing to check in them
+            run = 0;
+        }
+        rewind();
+    }
+
+    /** Decodes up to the sample taken after tick {@code ticks}; the ghost stays at its last sample once the run ends. */
+    public void advanceTo(int ticks) {
+        if (ticks < samples) rewind();
+        while (samples < ticks && (run > 0 || position < data.length)) {
+            step();
+        }
+    }
+
+    private void rewind() {
+        position = start;
+        samples = run = 0;
+        x = y = dx = dy = 0;
+        clip = null;
+        frameIndex = 0;
+        facingRight = false;
+    }
+
+    private void step() {
+        if (run == 0) {
+            int tag = readVarint();
+            int flags = tag & ((1 << GhostRecorder.FLAG_BITS) - 1);
+            if (flags == 0) {
+                run = tag >>> GhostRecorder.FLAG_BITS;
+                if (run == 0) throw corrupt();
+            } else {
+                if ((flags & GhostRecorder.DX) != 0) dx += unzigzag(readVarint());
+                if ((flags & GhostRecorder.DY) != 0) dy += unzigzag(readVarint());
+                if ((flags & GhostRecorder.SPRITE) != 0) {
+                    int sprite = readVarint();
+                    if (sprite >>> 1 >= clips.length) throw corrupt();
+                    clip = clips[sprite >>> 1];
+                    facingRight = (sprite & 1) != 0;
+                    frameIndex = readVarint();
+                    if (frameIndex < 0) throw corrupt();
+                } else if ((flags & GhostRecorder.NEXT_FRAME) != 0) {
+                    frameIndex++;
+                }
+                // a tick that changed something counts as a run of one
+                run = 1;
+            }
+        }
+        x += dx;
+        y += dy;
+        run--;
+        samples++;
+    }
+
+    private int readVarint() {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            if (position == data.length || shift > 28) throw corrupt();
+            byte b = data[position++];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+    }
+
+    private GdxRuntimeException corrupt() {
+        return new GdxRuntimeException("Ghost data is cut short or corrupt at byte " + position + " of " + data.length);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    float getX() {
+        return x / GhostRecorder.UNITS;
+    }
+
+    float getY() {
+        return y / GhostRecorder.UNITS;
+    }
+
+    public boolean isVisible(Rectangle view) {
+        if (samples == 0 || clip == null) return false;
+        float px = x / GhostRecorder.UNITS, py = y / GhostRecorder.UNITS;
+        return RenderState.overlaps(view, px - 1f, py - 0.5f, 2f, 2f);
+    }
+
+    /** Draws the ghost where the player would be, with the sprite placed as {@link RenderState.PlayerView} places it. */
+    public void draw(SpriteBatch batch, AnimationLibrary animations) {
+        if (samples == 0 || clip == null || frameIndex >= clip.getFrameCount()) return;
+        AnimationFrame frame = clip.getFrame(frameIndex);
+        float pixelsPerUnit = 100f;
+        float drawW = frame.originalWidth / pixelsPerUnit;
+        float drawH = frame.originalHeight / pixelsPerUnit;
+        float px = x / GhostRecorder.UNITS, py = y / GhostRecorder.UNITS;
+        // premultiplied textures fade by scaling every channel, straight ones by alpha alone
+        float tint = animations.isPremultipliedAlpha() ? ALPHA : 1f;
+        batch.setColor(0.6f * tint, 0.8f * tint, tint, ALPHA);
+        RenderState.drawFrame(batch, animations.region(frame), px - drawW / 2f, py - 0.5f, drawW, drawH,
+            facingRight ? -1f : 1f);
+        batch.setColor(1f, 1f, 1f, 1f);
+    }
+}
@@ -0,0 +1,36 @@
+package com.lalala;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+
+import java.lang.reflect.Proxy;
+
+/**
+ * A GL20 that accepts every call and answers with zero, false or null.
+ * Installing it lets textures, atlases and the whole simulation load without a window or GPU,
+ * e.g. under the headless backend.
+ */
+public final class HeadlessGL {
+    private HeadlessGL() {
+    }
+
+    public static void install() {
+        GL20 gl = (GL20) Proxy.newProxyInstance(GL20.class.getClassLoader(), new Class<?>[] { GL20.class },
+            (proxy, method, args) -> defaultValue(method.getReturnType()));
+        Gdx.gl = gl;
+        Gdx.gl20 = gl;
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) return false;
+        if (type == int.class) return 0;
+        if (type == long.class) return 0L;
+        if (type == float.class) return 0f;
+        if (type == double.class) return 0d;
+        if (type == short.class) return (short) 0;
+        if (type == byte.class) return (byte) 0;
+        if (type == char.class) return (char) 0;
+        if (type == String.class) return "";
+        return null;
+    }
+}
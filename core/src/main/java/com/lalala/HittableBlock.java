@@ -1,9 +1,7 @@
 // HittableBlock.java
 package com.lalala;
 
-import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
 import com.badlogic.gdx.math.Rectangle;
-import com.badlogic.gdx.math.Vector2;
 
 public class HittableBlock {
     private Rectangle bounds;
@@ -31,13 +29,9 @@ public class HittableBlock {
         }
     }
 
-    public void draw(ShapeRenderer renderer) {
-        if (isHit) {
-            renderer.setColor(1, 0, 0, 1); // 红色
-        } else {
-            renderer.setColor(0, 1, 0, 1); // 绿色
-        }
-        renderer.rect(bounds.x, bounds.y, bounds.width, bounds.height);
+    public void writeRenderState(RenderState.BlockView view) {
+        view.bounds.set(bounds);
+        view.hit = isHit;
     }
 
 }
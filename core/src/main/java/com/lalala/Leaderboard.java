@@ -0,0 +1,94 @@
+package com.lalala;
+
+import com.lalala.log.Log;
+import com.lalala.log.LogCategory;
+import com.lalala.log.LogLevel;
+import com.lalala.log.LogRecord;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The win times kept in {@code game_data.db}, each with the level it was won on and the ghost of the run.
+ * Rows saved before ghosts existed have neither and only count for the times.
+ */
+public class Leaderboard {
+    private static final String URL = "jdbc:sqlite:game_data.db";
+
+    private Connection connect() throws SQLException {
+        Connection conn = DriverManager.getConnection(URL);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS win_times (id INTEGER PRIMARY KEY AUTOINCREMENT, time REAL)");
+            boolean hasLevel = false, hasGhost = false;
+            try (ResultSet rs = stmt.executeQuery("PRAGMA table_info(win_times)")) {
+                while (rs.next()) {
+                    String column = rs.getString("name");
+                    hasLevel |= column.equals("level");
+                    hasGhost |= column.equals("ghost");
+                }
+            }
+            if (!hasLevel) stmt.execute("ALTER TABLE win_times ADD COLUMN level TEXT");
+            if (!hasGhost) stmt.execute("ALTER TABLE win_times ADD COLUMN ghost BLOB");
+        } catch (SQLException e) {
+            conn.close();
+            throw e;
+        }
+        return conn;
+    }
+
+    /** Saves a win; {@code ghost} may be null. */
+    public void save(float time, String level, byte[] ghost) {
+        try (Connection conn = connect();
+             PreparedStatement pstmt = conn.prepareStatement("INSERT INTO win_times (time, level, ghost) VALUES (?, ?, ?)")) {
+            pstmt.setDouble(1, time);
+            pstmt.setString(2, level);
+            pstmt.setBytes(3, ghost);
+            pstmt.executeUpdate();
+            LogRecord record = Log.begin(LogCategory.PERSISTENCE, LogLevel.INFO);
+            if (record != null) {
+                record.append("saved win time ").append(time, 2).append(" s, ghost ")
+                    .append(ghost == null ? 0 : ghost.length).append(" bytes").commit();
+            }
+        } catch (Exception e) {
+            Log.error(LogCategory.PERSISTENCE, "can't save the win time", e);
+        }
+    }
+
+    /** The {@code count} best times over all levels, fastest first. */
+    public List<Float> topTimes(int count) {
+        List<Float> times = new ArrayList<>();
+        try (Connection conn = connect();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT time FROM win_times ORDER BY time ASC LIMIT ?")) {
+            pstmt.setInt(1, count);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    times.add(rs.getFloat("time"));
+                }
+            }
+        } catch (Exception e) {
+            Log.error(LogCategory.PERSISTENCE, "can't load the best times", e);
+        }
+        return times;
+    }
+
+    /** The ghost of the fastest win on {@code level} that has one, or null. */
+    public byte[] bestGhost(String level) {
+        try (Connection conn = connect();
+             PreparedStatement pstmt = conn.prepareStatement(
+                 "SELECT ghost FROM win_times WHERE level = ? AND ghost IS NOT NULL ORDER BY time ASC LIMIT 1")) {
+            pstmt.setString(1, level);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getBytes("ghost") : null;
+            }
+        } catch (Exception e) {
+            Log.error(LogCategory.PERSISTENCE, "can't load the best ghost", e);
+            return null;
+        }
+    }
+}
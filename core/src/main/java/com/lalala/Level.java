@@ -0,0 +1,312 @@
+package com.lalala;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.XmlReader;
+
+import java.util.Arrays;
+
+/**
+ * An arena read from a Tiled TMX file: the "solid" tile layer, and the "objects" layer holding the
+ * player and boss spawn points (point objects named {@code player} and {@code boss}) and hittable
+ * blocks (rectangles of type or class {@code block}). The map property {@code tileSize} gives the
+ * size of one tile in world units.
+ * <p>
+ * Only the XML is read, never the tileset images, so the simulation can load levels without a GL context.
+ * Collision is built per chunk by {@link #buildChunk}, which merges the solid tiles of a chunk into a few
+ * chain shapes, so the broadphase sees a handful of fixtures however many tiles the map has.
+ */
+public class Level {
+    private final String name;
+    private final int columns, rows;
+    private final float tileSize;
+    // row 0 is the bottom row, unlike Tiled where it is the top one
+    private final boolean[] solid;
+
+    private final Vector2 playerSpawn = new Vector2();
+    private final Array<Vector2> bossSpawns = new Array<>();
+    private final Array<Rectangle> blocks = new Array<>();
+
+    private Level(String name, int columns, int rows, float tileSize) {
+        this.name = name;
+        this.columns = columns;
+        this.rows = rows;
+        this.tileSize = tileSize;
+        this.solid = new boolean[columns * rows];
+    }
+
+    public static Level load(FileHandle file) {
+        XmlReader.Element map = new XmlReader().parse(file);
+        int columns = map.getIntAttribute("width");
+        int rows = map.getIntAttribute("height");
+        int tileWidth = map.getIntAttribute("tilewidth");
+        int tileHeight = map.getIntAttribute("tileheight");
+
+        float tileSize = 1f;
+        XmlReader.Element properties = map.getChildByName("properties");
+        if (properties != null) {
+            for (XmlReader.Element property : properties.getChildrenByName("property")) {
+                if ("tileSize".equals(property.getAttribute("name"))) {
+                    tileSize = Float.parseFloat(property.getAttribute("value"));
+                }
+            }
+        }
+
+        Level level = new Level(file.name(), columns, rows, tileSize);
+        for (XmlReader.Element layer : map.getChildrenByName("layer")) {
+            if ("solid".equals(layer.getAttribute("name"))) {
+                level.readSolidLayer(layer);
+            }
+        }
+        for (XmlReader.Element group : map.getChildrenByName("objectgroup")) {
+            if ("objects".equals(group.getAttribute("name"))) {
+                level.readObjects(group, tileSize / tileWidth, tileSize / tileHeight);
+            }
+        }
+        return level;
+    }
+
+    private void readSolidLayer(XmlReader.Element layer) {
+        XmlReader.Element data = layer.getChildByName("data");
+        if (!"csv".equals(data.getAttribute("encoding", null))) {
+            throw new GdxRuntimeException(name + ": the solid layer must be saved with CSV encoding");
+        }
+        String[] gids = data.getText().trim().split("\\s*,\\s*");
+        if (gids.length != columns * rows) {
+            throw new GdxRuntimeException(name + ": expected " + columns * rows + " tiles, found " + gids.length);
+        }
+        for (int i = 0; i < gids.length; i++) {
+            int column = i % columns;
+            int row = rows - 1 - i / columns;
+            solid[row * columns + column] = !gids[i].equals("0");
+        }
+    }
+
+    private void readObjects(XmlReader.Element group, float scaleX, float scaleY) {
+        float mapHeight = rows * tileSize;
+        for (XmlReader.Element object : group.getChildrenByName("object")) {
+            float x = object.getFloatAttribute("x") * scaleX;
+            float width = object.getFloatAttribute("width", 0f) * scaleX;
+            float height = object.getFloatAttribute("height", 0f) * scaleY;
+            // Tiled measures y down from the top edge to the object's top edge
+            float y = mapHeight - object.getFloatAttribute("y") * scaleY - height;
+
+            String type = object.getAttribute("type", object.getAttribute("class", ""));
+            String objectName = object.getAttribute("name", "");
+            if ("block".equals(type)) {
+                blocks.add(new Rectangle(x, y, width, height));
+            } else if ("player".equals(objectName)) {
+                playerSpawn.set(x, y);
+            } else if ("boss".equals(objectName)) {
+                bossSpawns.add(new Vector2(x, y));
+            }
+        }
+    }
+
+    /**
+     * Traces the collision for the {@code chunkTiles} x {@code chunkTiles} block of cells at chunk
+     * ({@code chunkX}, {@code chunkY}). Reads only immutable level data, so it may run on any thread.
+     * <p>
+     * Every solid cell side facing an empty cell (or the map edge) is an edge directed with the solid cell
+     * on its left, so following edges head to tail goes around each solid region. Each chunk keeps the edges
+     * of its own cells: an outline that stays inside the chunk closes into a loop, and one that crosses the
+     * chunk border becomes an open chain whose ghost vertices point into the neighbouring chunk, so bodies
+     * slide across the seam without catching. Corners where the direction doesn't change are dropped.
+     */
+    public LevelChunk buildChunk(int chunkX, int chunkY, int chunkTiles) {
+        int column0 = chunkX * chunkTiles, row0 = chunkY * chunkTiles;
+        int width = Math.min(chunkTiles, columns - column0);
+        int height = Math.min(chunkTiles, rows - row0);
+        LevelChunk chunk = new LevelChunk(chunkX, chunkY);
+
+        int stride = width + 1;
+        int corners = stride * (height + 1);
+        // at most two edges leave a corner, when two solid cells touch only diagonally
+        int[] out1 = new int[corners];
+        int[] out2 = new int[corners];
+        int[] incoming = new int[corners];
+        Arrays.fill(out1, -1);
+        Arrays.fill(out2, -1);
+
+        for (int row = 0; row < height; row++) {
+            for (int column = 0; column < width; column++) {
+                int c = column0 + column, r = row0 + row;
+                if (!isSolid(c, r)) continue;
+                int bottomLeft = row * stride + column;
+                int bottomRight = bottomLeft + 1;
+                int topLeft = bottomLeft + stride;
+                int topRight = topLeft + 1;
+                if (!isSolid(c, r - 1)) addEdge(out1, out2, incoming, bottomLeft, bottomRight);
+                if (!isSolid(c + 1, r)) addEdge(out1, out2, incoming, bottomRight, topRight);
+                if (!isSolid(c, r + 1)) addEdge(out1, out2, incoming, topRight, topLeft);
+                if (!isSolid(c - 1, r)) addEdge(out1, out2, incoming, topLeft, bottomLeft);
+            }
+        }
+
+        FloatArray vertices = new FloatArray();
+        // open chains first: they start where an edge leaves a corner whose incoming edge lies in another chunk
+        for (int start = 0; start < corners; start++) {
+            while (outDegree(out1, out2, start) > incoming[start]) {
+                vertices.clear();
+                addCorner(vertices, column0, row0, stride, start);
+                int from = start;
+                int previousDx = 0, previousDy = 0;
+                while (out1[from] >= 0) {
+                    int to = takeEdge(out1, out2, from);
+                    incoming[to]--;
+                    int dx = to % stride - from % stride;
+                    int dy = to / stride - from / stride;
+                    if (from != start && (dx != previousDx || dy != previousDy)) {
+                        addCorner(vertices, column0, row0, stride, from);
+                    }
+                    previousDx = dx;
+                    previousDy = dy;
+                    from = to;
+                }
+                addCorner(vertices, column0, row0, stride, from);
+                chunk.chains.add(vertices.toArray());
+                ghostVertex(chunk.ghosts, column0 + start % stride, row0 + start / stride, column0, row0, width, height, true);
+                ghostVertex(chunk.ghosts, column0 + from % stride, row0 + from / stride, column0, row0, width, height, false);
+            }
+        }
+
+        // whatever is left closes on itself
+        for (int start = 0; start < corners; start++) {
+            while (out1[start] >= 0) {
+                vertices.clear();
+                addCorner(vertices, column0, row0, stride, start);
+                int from = takeEdge(out1, out2, start);
+                int firstDx = from % stride - start % stride, firstDy = from / stride - start / stride;
+                int previousDx = firstDx, previousDy = firstDy;
+                while (from != start) {
+                    int to = takeEdge(out1, out2, from);
+                    int dx = to % stride - from % stride;
+                    int dy = to / stride - from / stride;
+                    if (dx != previousDx || dy != previousDy) {
+                        addCorner(vertices, column0, row0, stride, from);
+                    }
+                    previousDx = dx;
+                    previousDy = dy;
+                    from = to;
+                }
+                // the start corner is only a turn if the loop doesn't come back in the direction it left
+                if (previousDx == firstDx && previousDy == firstDy) {
+                    vertices.removeRange(0, 1);
+                }
+                chunk.loops.add(vertices.toArray());
+            }
+        }
+
+        float left = column0 * tileSize, bottom = row0 * tileSize;
+        float right = left + width * tileSize, top = bottom + height * tileSize;
+        for (Rectangle block : blocks) {
+            float x = block.x + block.width / 2f, y = block.y + block.height / 2f;
+            if (x >= left && x < right && y >= bottom && y < top) {
+                chunk.blocks.add(block);
+            }
+        }
+        return chunk;
+    }
+
+    private void addCorner(FloatArray vertices, int column0, int row0, int stride, int corner) {
+        vertices.add((column0 + corner % stride) * tileSize, (row0 + corner / stride) * tileSize);
+    }
+
+    /**
+     * Adds the far end of the boundary edge that enters ({@code before}) or leaves corner (x, y) from a
+     * cell outside the chunk. The four candidates are the four sides of the cells around the corner.
+     */
+    private void ghostVertex(FloatArray ghosts, int x, int y, int column0, int row0, int width, int height, boolean before) {
+        int[] candidates = before
+            // cell column, cell row, far corner x, far corner y
+            ? new int[] { x - 1, y, x - 1, y,   x - 1, y - 1, x, y - 1,   x, y - 1, x + 1, y,   x, y, x, y + 1 }
+            : new int[] { x, y, x + 1, y,   x - 1, y, x, y + 1,   x - 1, y - 1, x - 1, y,   x, y - 1, x, y - 1 };
+        // for each candidate, the cell across the side that must be empty for the side to be a boundary edge
+        int[] across = before
+            ? new int[] { x - 1, y - 1,   x, y - 1,   x, y,   x - 1, y }
+            : new int[] { x, y - 1,   x, y,   x - 1, y,   x - 1, y - 1 };
+        for (int i = 0; i < 4; i++) {
+            int c = candidates[i * 4], r = candidates[i * 4 + 1];
+            boolean outside = c < column0 || c >= column0 + width || r < row0 || r >= row0 + height;
+            if (outside && isSolid(c, r) && !isSolid(across[i * 2], across[i * 2 + 1])) {
+                ghosts.add(candidates[i * 4 + 2] * tileSize, candidates[i * 4 + 3] * tileSize);
+                return;
+            }
+        }
+        // unreachable for a consistent outline; fall back to the corner itself
+        ghosts.add(x * tileSize, y * tileSize);
+    }
+
+    private static void addEdge(int[] out1, int[] out2, int[] incoming, int from, int to) {
+        if (out1[from] < 0) {
+            out1[from] = to;
+        } else {
+            out2[from] = to;
+        }
+        incoming[to]++;
+    }
+
+    private static int outDegree(int[] out1, int[] out2, int corner) {
+        return (out1[corner] >= 0 ? 1 : 0) + (out2[corner] >= 0 ? 1 : 0);
+    }
+
+    private static int takeEdge(int[] out1, int[] out2, int from) {
+        int to = out1[from];
+        out1[from] = out2[from];
+        out2[from] = -1;
+        return to;
+    }
+
+    private boolean isSolid(int column, int row) {
+        return column >= 0 && column < columns && row >= 0 && row < rows && solid[row * columns + column];
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /** Size of one tile in world units. */
+    public float getTileSize() {
+        return tileSize;
+    }
+
+    public float getWidth() {
+        return columns * tileSize;
+    }
+
+    public float getHeight() {
+        return rows * tileSize;
+    }
+
+    public Vector2 getPlayerSpawn() {
+        return playerSpawn;
+    }
+
+    public Array<Vector2> getBossSpawns() {
+        return bossSpawns;
+    }
+
+    public Array<Rectangle> getBlocks() {
+        return blocks;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getSolidTileCount() {
+        int count = 0;
+        for (boolean tile : solid) {
+            if (tile) count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,70 @@
+package com.lalala;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.physics.box2d.BodyDef;
+import com.badlogic.gdx.physics.box2d.ChainShape;
+import com.badlogic.gdx.physics.box2d.FixtureDef;
+import com.badlogic.gdx.physics.box2d.World;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.FloatArray;
+
+import static com.lalala.Boss.*;
+
+/**
+ * Collision outlines and blocks for one chunk of a {@link Level}, in world units. Built off the
+ * simulation thread by {@link Level#buildChunk}; only {@link #createBody} touches the Box2D world.
+ */
+public class LevelChunk {
+    public final int chunkX, chunkY;
+    /** Outlines that close inside the chunk. */
+    final Array<float[]> loops = new Array<>();
+    /** Outlines cut by the chunk border, with four ghost coordinates per chain (before x, y, after x, y). */
+    final Array<float[]> chains = new Array<>();
+    final FloatArray ghosts = new FloatArray();
+    final Array<Rectangle> blocks = new Array<>();
+
+    LevelChunk(int chunkX, int chunkY) {
+        this.chunkX = chunkX;
+        this.chunkY = chunkY;
+    }
+
+    /** Creates one static body holding every outline of the chunk, or returns null if the chunk has none. */
+    public Body createBody(World world) {
+        if (loops.size == 0 && chains.size == 0) return null;
+
+        BodyDef bodyDef = new BodyDef();
+        bodyDef.type = BodyDef.BodyType.StaticBody;
+        Body body = world.createBody(bodyDef);
+
+        FixtureDef fixtureDef = new FixtureDef();
+        fixtureDef.friction = 0.8f;
+        fixtureDef.filter.categoryBits = CATEGORY_GROUND;
+        fixtureDef.filter.maskBits = CATEGORY_PLAYER | CATEGORY_BOSS;
+        for (float[] loop : loops) {
+            ChainShape chain = new ChainShape();
+            chain.createLoop(loop);
+            fixtureDef.shape = chain;
+            body.createFixture(fixtureDef);
+            chain.dispose();
+        }
+        for (int i = 0; i < chains.size; i++) {
+            ChainShape chain = new ChainShape();
+            chain.createChain(chains.get(i));
+            chain.setPrevVertex(ghosts.get(i * 4), ghosts.get(i * 4 + 1));
+            chain.setNextVertex(ghosts.get(i * 4 + 2), ghosts.get(i * 4 + 3));
+            fixtureDef.shape = chain;
+            body.createFixture(fixtureDef);
+            chain.dispose();
+        }
+        return body;
+    }
+
+    public Array<Rectangle> getBlocks() {
+        return blocks;
+    }
+
+    public int getFixtureCount() {
+        return loops.size + chains.size;
+    }
+}
@@ -0,0 +1,184 @@
+package com.lalala;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.physics.box2d.World;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntMap;
+import com.lalala.log.Log;
+import com.lalala.log.LogCategory;
+import com.lalala.log.LogLevel;
+import com.lalala.log.LogRecord;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Keeps only the level chunks near the player in the Box2D world. Chunks within the load radius are
+ * traced on a background thread and turned into bodies on the simulation thread once ready; chunks
+ * beyond the larger unload radius have their body and blocks removed again. The gap between the two
+ * radii stops a player standing on a chunk border from loading and unloading every tick.
+ * <p>
+ * Body count and Box2D memory therefore depend on the radii, not on the level size. The level's tile
+ * grid itself stays loaded (one byte per tile), and so does its tileset, which all chunks share.
+ */
+public class LevelStreamer implements Disposable {
+    private final Level level;
+    private final World world;
+    private final int chunkTiles;
+    private final float chunkSize;
+    private final int chunksX, chunksY;
+    private final float loadRadius, unloadRadius;
+
+    private final ExecutorService loader;
+    private final IntMap<Future<LevelChunk>> pending = new IntMap<>();
+    private final IntMap<LoadedChunk> loaded = new IntMap<>();
+    /** Blocks of every loaded chunk; the simulation updates these. */
+    private final Array<HittableBlock> blocks = new Array<>();
+
+    private static class LoadedChunk {
+        Body body;
+        final Array<HittableBlock> blocks = new Array<>();
+    }
+
+    public LevelStreamer(Level level, World world, int chunkTiles, float loadRadius, float unloadRadius) {
+        this.level = level;
+        this.world = world;
+        this.chunkTiles = chunkTiles;
+        this.chunkSize = chunkTiles * level.getTileSize();
+        this.chunksX = (level.getColumns() + chunkTiles - 1) / chunkTiles;
+        this.chunksY = (level.getRows() + chunkTiles - 1) / chunkTiles;
+        this.loadRadius = loadRadius;
+        this.unloadRadius = unloadRadius;
+        loader = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "level-streaming");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /** Loads everything around {@code center} before returning, so the first tick has ground to stand on. */
+    public void loadAround(Vector2 center) {
+        update(center);
+        for (IntMap.Entry<Future<LevelChunk>> entry : pending.entries()) {
+            await(entry.value);
+        }
+        update(center);
+    }
+
+    /** Requests chunks that came into range, attaches finished ones and drops those left behind. Call once per tick. */
+    public void update(Vector2 center) {
+        int firstX = Math.max(0, (int) Math.floor((center.x - loadRadius) / chunkSize));
+        int lastX = Math.min(chunksX - 1, (int) Math.floor((center.x + loadRadius) / chunkSize));
+        int firstY = Math.max(0, (int) Math.floor((center.y - loadRadius) / chunkSize));
+        int lastY = Math.min(chunksY - 1, (int) Math.floor((center.y + loadRadius) / chunkSize));
+        for (int y = firstY; y <= lastY; y++) {
+            for (int x = firstX; x <= lastX; x++) {
+                int key = y * chunksX + x;
+                if (loaded.containsKey(key) || pending.containsKey(key)) continue;
+                int chunkX = x, chunkY = y;
+                pending.put(key, loader.submit(() -> level.buildChunk(chunkX, chunkY, chunkTiles)));
+            }
+        }
+
+        IntMap.Entries<Future<LevelChunk>> ready = pending.entries();
+        while (ready.hasNext()) {
+            IntMap.Entry<Future<LevelChunk>> entry = ready.next();
+            if (!entry.value.isDone()) continue;
+            int key = entry.key;
+            LevelChunk chunk = await(entry.value);
+            ready.remove();
+            // it may have gone out of range while it was being built
+            if (distance(chunk.chunkX, chunk.chunkY, center) <= unloadRadius) {
+                attach(key, chunk);
+            }
+        }
+
+        IntMap.Entries<LoadedChunk> entries = loaded.entries();
+        while (entries.hasNext()) {
+            IntMap.Entry<LoadedChunk> entry = entries.next();
+            if (distance(entry.key % chunksX, entry.key / chunksX, center) > unloadRadius) {
+                detach(entry.value);
+                entries.remove();
+                LogRecord record = Log.begin(LogCategory.PHYSICS, LogLevel.DEBUG);
+                if (record != null) {
+                    record.append("chunk ").append(entry.key % chunksX).append(',').append(entry.key / chunksX)
+                        .append(" detached").commit();
+                }
+            }
+        }
+    }
+
+    private void attach(int key, LevelChunk chunk) {
+        LoadedChunk loadedChunk = new LoadedChunk();
+        loadedChunk.body = chunk.createBody(world);
+        for (Rectangle bounds : chunk.getBlocks()) {
+            HittableBlock block = new HittableBlock(bounds.x + bounds.width / 2f, bounds.y + bounds.height / 2f,
+                bounds.width, bounds.height);
+            loadedChunk.blocks.add(block);
+            blocks.add(block);
+        }
+        loaded.put(key, loadedChunk);
+        LogRecord record = Log.begin(LogCategory.PHYSICS, LogLevel.DEBUG);
+        if (record != null) {
+            record.append("chunk ").append(chunk.chunkX).append(',').append(chunk.chunkY).append(" attached, ")
+                .append(loadedChunk.blocks.size).append(" blocks, ").append(loaded.size).append(" loaded").commit();
+        }
+    }
+
+    private void detach(LoadedChunk chunk) {
+        if (chunk.body != null) {
+            world.destroyBody(chunk.body);
+        }
+        for (HittableBlock block : chunk.blocks) {
+            blocks.removeValue(block, true);
+        }
+    }
+
+    /** Distance from {@code center} to the nearest point of the chunk, measured along the larger axis. */
+    private float distance(int chunkX, int chunkY, Vector2 center) {
+        float left = chunkX * chunkSize, bottom = chunkY * chunkSize;
+        float dx = Math.max(0f, Math.max(left - center.x, center.x - (left + chunkSize)));
+        float dy = Math.max(0f, Math.max(bottom - center.y, center.y - (bottom + chunkSize)));
+        return Math.max(dx, dy);
+    }
+
+    private static LevelChunk await(Future<LevelChunk> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GdxRuntimeException("Interrupted while loading a level chunk", e);
+        } catch (ExecutionException e) {
+            throw new GdxRuntimeException("Could not build a level chunk", e.getCause());
+        }
+    }
+
+    /** Whether the ground under (x, y) is currently in the world; outside the level counts as not loaded. */
+    public boolean isLoaded(float x, float y) {
+        if (x < 0f || y < 0f || x >= level.getWidth() || y >= level.getHeight()) return false;
+        return loaded.containsKey((int) (y / chunkSize) * chunksX + (int) (x / chunkSize));
+    }
+
+    public Array<HittableBlock> getBlocks() {
+        return blocks;
+    }
+
+    public int getLoadedCount() {
+        return loaded.size;
+    }
+
+    public int getChunkCount() {
+        return chunksX * chunksY;
+    }
+
+    @Override
+    public void dispose() {
+        loader.shutdownNow();
+    }
+}
@@ -0,0 +1,183 @@
+package com.lalala;
+
+import box2dLight.Light;
+import box2dLight.PointLight;
+import box2dLight.RayHandler;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.physics.box2d.World;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.viewport.Viewport;
+
+import static com.lalala.Boss.*;
+
+/**
+ * box2dlights on top of the arena: a red aura around each boss, a flash where the player's slash lands
+ * and a short trail of lights behind a dash. Lights are placed from the {@link RenderState} being drawn.
+ * <p>
+ * {@link #update} casts shadow rays against the live {@link World}, so GameScreen only calls it while no
+ * simulation step is running. Lights whose owner is off screen are switched off before that, and the
+ * ray handler's own culling skips anything else outside the camera.
+ */
+public class Lighting implements Disposable {
+    /** Fidelity against frame time; {@link #OFF} skips the light pass entirely. */
+    public enum Quality {
+        OFF(0, 0f, 0, false),
+        LOW(24, 0.25f, 0, false),
+        MEDIUM(64, 0.5f, 1, true),
+        HIGH(128, 1f, 2, true);
+
+        /** Shadow rays cast per light. */
+        public final int rays;
+        /** Light map resolution relative to the screen. */
+        public final float lightMapScale;
+        /** Blur passes over the light map. */
+        public final int blurPasses;
+        /** Without shadows lights shine through walls but need no ray casts. */
+        public final boolean shadows;
+
+        Quality(int rays, float lightMapScale, int blurPasses, boolean shadows) {
+            this.rays = rays;
+            this.lightMapScale = lightMapScale;
+            this.blurPasses = blurPasses;
+            this.shadows = shadows;
+        }
+
+        public Quality next() {
+            Quality[] values = values();
+            return values[(ordinal() + 1) % values.length];
+        }
+    }
+
+    // at most this many visible bosses get an aura; the rest go without
+    private static final int MAX_BOSS_LIGHTS = 32;
+    private static final int TRAIL_LENGTH = 3;
+
+    private static final Color AURA_COLOR = new Color(1f, 0.15f, 0.1f, 0.8f);
+    private static final Color FLASH_COLOR = new Color(1f, 0.95f, 0.7f, 1f);
+    private static final Color TRAIL_COLOR = new Color(0.4f, 0.7f, 1f, 0.7f);
+
+    private final Quality quality;
+    private final RayHandler rayHandler;
+    private final Array<PointLight> auras = new Array<>();
+    private PointLight flash;
+    private final PointLight[] trail = new PointLight[TRAIL_LENGTH];
+    // recent player positions while dashing, newest first
+    private final float[] trailX = new float[TRAIL_LENGTH], trailY = new float[TRAIL_LENGTH];
+    private int trailSamples;
+    private int activeLights;
+
+    public Lighting(World world, Quality quality) {
+        this.quality = quality;
+        if (quality == Quality.OFF) {
+            rayHandler = null;
+            return;
+        }
+        // lights filter like the player against the level's fixtures, and ignore player and boss bodies,
+        // so only walls and floors cast shadows
+        Light.setGlobalContactFilter(CATEGORY_PLAYER, (short) 0, CATEGORY_GROUND);
+        rayHandler = new RayHandler(world);
+        rayHandler.setAmbientLight(0.55f);
+        rayHandler.setShadows(quality.shadows);
+        rayHandler.setBlur(quality.blurPasses > 0);
+        rayHandler.setBlurNum(Math.max(1, quality.blurPasses));
+        rayHandler.setCulling(true);
+
+        flash = createLight(FLASH_COLOR, 2.5f);
+        for (int i = 0; i < TRAIL_LENGTH; i++) {
+            trail[i] = createLight(TRAIL_COLOR, 2f - i * 0.5f);
+        }
+    }
+
+    private PointLight createLight(Color color, float distance) {
+        PointLight light = new PointLight(rayHandler, quality.rays, color, distance, 0f, 0f);
+        light.setXray(!quality.shadows);
+        light.setActive(false);
+        return light;
+    }
+
+    /** Matches the light map to the visible part of the screen. */
+    public void resize(Viewport viewport) {
+        if (rayHandler == null) return;
+        rayHandler.useCustomViewport(viewport.getScreenX(), viewport.getScreenY(),
+            viewport.getScreenWidth(), viewport.getScreenHeight());
+        rayHandler.resizeFBO(Math.max(1, (int) (viewport.getScreenWidth() * quality.lightMapScale)),
+            Math.max(1, (int) (viewport.getScreenHeight() * quality.lightMapScale)));
+    }
+
+    /** Places the lights for {@code state} and casts their rays. The world must not be stepping meanwhile. */
+    public void update(RenderState state, OrthographicCamera camera, Rectangle view) {
+        if (rayHandler == null) return;
+        activeLights = 0;
+
+        int auraCount = 0;
+        for (int i = 0; i < state.bossCount && auraCount < MAX_BOSS_LIGHTS; i++) {
+            RenderState.BossView boss = state.bosses.get(i);
+            if (!boss.isVisible(view)) continue;
+            if (auras.size <= auraCount) {
+                auras.add(createLight(AURA_COLOR, 3f));
+            }
+            place(auras.get(auraCount++), boss.x, boss.y);
+        }
+        for (int i = auraCount; i < auras.size; i++) {
+            auras.get(i).setActive(false);
+        }
+
+        RenderState.PlayerView player = state.player;
+        if (player.attackEffect != null && player.hitbox.overlaps(view)) {
+            place(flash, player.hitbox.x + player.hitbox.width / 2f, player.hitbox.y + player.hitbox.height / 2f);
+        } else {
+            flash.setActive(false);
+        }
+
+        if (player.dashEffect != null) {
+            System.arraycopy(trailX, 0, trailX, 1, TRAIL_LENGTH - 1);
+            System.arraycopy(trailY, 0, trailY, 1, TRAIL_LENGTH - 1);
+            trailX[0] = player.x;
+            trailY[0] = player.y;
+            trailSamples = Math.min(trailSamples + 1, TRAIL_LENGTH);
+        } else {
+            trailSamples = 0;
+        }
+        for (int i = 0; i < TRAIL_LENGTH; i++) {
+            if (i < trailSamples && player.isVisible(view)) {
+                place(trail[i], trailX[i], trailY[i]);
+            } else {
+                trail[i].setActive(false);
+            }
+        }
+
+        rayHandler.setCombinedMatrix(camera);
+        rayHandler.update();
+    }
+
+    private void place(PointLight light, float x, float y) {
+        light.setPosition(x, y);
+        light.setActive(true);
+        activeLights++;
+    }
+
+    /** Blends the light map over what has been drawn so far. */
+    public void render() {
+        if (rayHandler == null) return;
+        rayHandler.render();
+    }
+
+    public Quality getQuality() {
+        return quality;
+    }
+
+    /** Lights switched on for the current frame. */
+    public int getActiveLights() {
+        return activeLights;
+    }
+
+    @Override
+    public void dispose() {
+        if (rayHandler != null) {
+            rayHandler.dispose();
+        }
+    }
+}
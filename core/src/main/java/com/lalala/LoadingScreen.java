@@ -0,0 +1,127 @@
+package com.lalala;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Screen;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
+import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
+import com.badlogic.gdx.utils.Align;
+import com.badlogic.gdx.utils.ScreenUtils;
+
+import java.util.Locale;
+
+/**
+ * Shown before the fight while {@link WarmUp} plays a throwaway one, so the first seconds of the real fight
+ * run compiled code instead of stuttering through the interpreter. Each frame spends a slice on simulation
+ * ticks, then draws the throwaway fight several times into an off-screen buffer to warm the sprite and shape
+ * drawing code too, and shows a progress bar.
+ */
+public class LoadingScreen implements Screen {
+    // simulation time per frame; leaves room for the draw passes within a 60 Hz frame
+    private static final long SLICE_NANOS = 10_000_000L;
+    // the fight draws a handful of sprites per frame; repeat them so the draw path gets as many calls as the ticks
+    private static final int DRAW_PASSES = 20;
+
+    private final MainGame game;
+    private WarmUp warmUp;
+    private SpriteBatch batch;
+    private ShapeRenderer shapeRenderer;
+    private BitmapFont font;
+    private FrameBuffer offscreen;
+    private final OrthographicCamera worldCamera = new OrthographicCamera();
+    private final OrthographicCamera screenCamera = new OrthographicCamera();
+
+    public LoadingScreen(MainGame game) {
+        this.game = game;
+    }
+
+    @Override
+    public void show() {
+        warmUp = new WarmUp(game.getConfig(), game.getAnimations());
+        batch = new SpriteBatch();
+        shapeRenderer = new ShapeRenderer();
+        font = new BitmapFont();
+        offscreen = new FrameBuffer(Pixmap.Format.RGBA8888, 256, 144, false);
+        worldCamera.setToOrtho(false, Simulation.WORLD_WIDTH, Simulation.WORLD_HEIGHT);
+        screenCamera.setToOrtho(false, Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
+    }
+
+    @Override
+    public void render(float delta) {
+        boolean done = warmUp.run(SLICE_NANOS);
+        drawOffscreen(warmUp.getState());
+
+        ScreenUtils.clear(0f, 0f, 0f, 1f);
+        float width = screenCamera.viewportWidth, height = screenCamera.viewportHeight;
+        shapeRenderer.setProjectionMatrix(screenCamera.combined);
+        shapeRenderer.begin(ShapeRenderer.ShapeType.Filled);
+        shapeRenderer.setColor(0.3f, 0.3f, 0.3f, 1f);
+        shapeRenderer.rect(width * 0.25f, height * 0.45f, width * 0.5f, 8f);
+        shapeRenderer.setColor(1f, 1f, 1f, 1f);
+        shapeRenderer.rect(width * 0.25f, height * 0.45f, width * 0.5f * warmUp.getProgress(), 8f);
+        shapeRenderer.end();
+        batch.setProjectionMatrix(screenCamera.combined);
+        batch.begin();
+        font.draw(batch, "Loading...", 0f, height * 0.45f + 40f, width, Align.center, false);
+        batch.end();
+
+        if (done) {
+            Gdx.app.log("WarmUp", String.format(Locale.ROOT, "%d ticks over %d fights in %d ms, JIT time so far %d ms",
+                warmUp.getTicks(), warmUp.getFights() + 1, warmUp.getElapsedNanos() / 1_000_000L, warmUp.getCompileMillis()));
+            game.setScreen(new GameScreen(game));
+            dispose();
+        }
+    }
+
+    private void drawOffscreen(RenderState state) {
+        AnimationLibrary animations = game.getAnimations();
+        worldCamera.position.set(state.player.x, state.player.y, 0f);
+        worldCamera.update();
+        offscreen.begin();
+        ScreenUtils.clear(0f, 0f, 0f, 0f);
+        animations.update();
+        if (animations.isPremultipliedAlpha()) {
+            batch.setBlendFunction(GL20.GL_ONE, GL20.GL_ONE_MINUS_SRC_ALPHA);
+        }
+        for (int pass = 0; pass < DRAW_PASSES; pass++) {
+            batch.setProjectionMatrix(worldCamera.combined);
+            batch.begin();
+            state.player.draw(batch, animations);
+            for (int i = 0; i < state.bossCount; i++) {
+                state.bosses.get(i).draw(batch, animations);
+            }
+            batch.end();
+            shapeRenderer.setProjectionMatrix(worldCamera.combined);
+            shapeRenderer.begin(ShapeRenderer.ShapeType.Filled);
+            state.player.drawHealthBar(shapeRenderer);
+            for (int i = 0; i < state.bossCount; i++) {
+                state.bosses.get(i).drawHealthBar(shapeRenderer);
+            }
+            shapeRenderer.end();
+        }
+        offscreen.end();
+        batch.setBlendFunction(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
+    }
+
+    @Override
+    public void resize(int width, int height) {
+        screenCamera.setToOrtho(false, width, height);
+    }
+
+    @Override public void pause() {}
+    @Override public void resume() {}
+    @Override public void hide() {}
+
+    @Override
+    public void dispose() {
+        warmUp.dispose();
+        batch.dispose();
+        shapeRenderer.dispose();
+        font.dispose();
+        offscreen.dispose();
+    }
+}
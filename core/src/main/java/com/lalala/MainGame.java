@@ -1,11 +1,92 @@
 package com.lalala;
 
 import com.badlogic.gdx.Game;
+import com.badlogic.gdx.Gdx;
+import com.lalala.input.InputRecording;
+import com.lalala.log.Log;
+
+import java.lang.management.ManagementFactory;
 
 public class MainGame extends Game {
+    private static final long LOG_FILE_BYTES = 1L << 20;
+    private static final int LOG_FILES_KEPT = 3;
+
+    private final GameConfig config;
+    private AnimationLibrary animations;
+    private InputRecording playback;
+    private StateObserver stateObserver;
+    private long framesRendered = 0;
+
+    public MainGame() {
+        this(new GameConfig());
+    }
+
+    public MainGame(GameConfig config) {
+        this.config = config;
+    }
+
     @Override
     public void create() {
-        setScreen(new GameScreen(this));
+        Gdx.app.log("Startup", "create() reached " + millisSinceJvmStart() + " ms after JVM start");
+        Log.configure(config.logLevels);
+        Log.start(Gdx.files.local(config.logFile).file(), LOG_FILE_BYTES, LOG_FILES_KEPT);
+        if (config.isTimedemo()) {
+            playback = InputRecording.read(Gdx.files.internal(config.timedemoFile));
+            config.levelFile = playback.getLevelFile();
+            Gdx.app.log("Timedemo", config.timedemoFile + ": " + playback.getLength() + " ticks, "
+                + playback.getEventCount() + " input events on " + config.levelFile);
+        }
+        animations = new AnimationLibrary(Gdx.files.internal("animations.json"), 1f / Simulation.STEP);
+        animations.setBudgetBytes((long) config.textureBudgetMb << 20);
+        Gdx.app.log("Animations", animations.getClipCount() + " clips, " + (animations.getTotalBytes() >> 10)
+            + " KiB of textures in all, at most " + config.textureBudgetMb + " MiB kept off screen");
+        setScreen(config.warmUp && WarmUp.isUseful() ? new LoadingScreen(this) : new GameScreen(this));
+    }
+
+    @Override
+    public void render() {
+        super.render();
+        framesRendered++;
+        if (framesRendered == 1) {
+            Gdx.app.log("Startup", "first frame rendered " + millisSinceJvmStart() + " ms after JVM start");
+        }
+        if (config.exitAfterFrames > 0 && framesRendered >= config.exitAfterFrames) {
+            Gdx.app.exit();
+        }
+    }
+
+    private static long millisSinceJvmStart() {
+        return System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
     }
-}
 
+    public GameConfig getConfig() {
+        return config;
+    }
+
+    /** The recorded fight a timedemo replays, or null when playing normally. */
+    public InputRecording getPlayback() {
+        return playback;
+    }
+
+    /** Set before the game starts; the fight screens report to it. */
+    public void setStateObserver(StateObserver stateObserver) {
+        this.stateObserver = stateObserver;
+    }
+
+    /** What watches the fights from outside the game, or null. */
+    public StateObserver getStateObserver() {
+        return stateObserver;
+    }
+
+    /** Shared by every screen for the whole run, so clips loaded once stay loaded across fights. */
+    public AnimationLibrary getAnimations() {
+        return animations;
+    }
+
+    @Override
+    public void dispose() {
+        super.dispose();
+        animations.dispose();
+        Log.stop();
+    }
+}
@@ -1,27 +1,28 @@
 // Player.java
 package com.lalala;
 
-import com.badlogic.gdx.Gdx;
-import com.badlogic.gdx.graphics.Texture;
-import com.badlogic.gdx.graphics.g2d.Animation;
-import com.badlogic.gdx.graphics.g2d.SpriteBatch;
-import com.badlogic.gdx.graphics.g2d.TextureRegion;
-import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
 import com.badlogic.gdx.math.Rectangle;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.physics.box2d.*;
 import com.badlogic.gdx.utils.Array;
+import com.lalala.events.EventBus;
+import com.lalala.events.GameEvent;
+import com.lalala.input.PlayerInput;
+
+import java.nio.ByteBuffer;
+
+import static com.lalala.input.InputAction.*;
 
 public class Player {
     private final World world;
     private final Body body;
 
-    private Animation<TextureRegion> idleAnimation, walkAnimation, jumpUpAnimation, jumpLoopAnimation, landAnimation;
-    private Animation<TextureRegion> doubleJumpAnimation, dashAnimation, dashEffectAnimation;
-    private Animation<TextureRegion> attack1Animation, attack2Animation, attackDownAnimation;
+    private final AnimationClip idleAnimation, walkAnimation, jumpUpAnimation, jumpLoopAnimation, landAnimation;
+    private final AnimationClip doubleJumpAnimation, dashAnimation, dashEffectAnimation;
+    private final AnimationClip attack1Animation, attack2Animation, attackDownAnimation;
 
     private float stateTime = 0f;
-    private TextureRegion currentFrame;
+    private AnimationFrame currentFrame;
 
     private boolean grounded = false;
     private boolean canDoubleJump = true;
@@ -47,22 +48,33 @@ public class Player {
     private float attackTimer = 0f;
     //private final float attackCooldown = 0.5f;
 
-    private TextureRegion attackEffect1;
-    private TextureRegion attackEffect2;
-    private TextureRegion attackEffectDown;
+    private AnimationFrame attackEffect1;
+    private AnimationFrame attackEffect2;
+    private AnimationFrame attackEffectDown;
     private boolean showAttackEffect = false;
     private float attackEffectTimer = 0f;
     private final float attackEffectDuration = 0.12f;
 
     private Rectangle currentHitbox = new Rectangle();
+    private final Rectangle bodyBox = new Rectangle();
+    private final EventBus events;
 
     private final float moveSpeed = 5f;
     private final float jumpVelocity = 10f;
     private final float dashSpeed = 15f;
     private final float dashDuration = 0.2f;
 
-    public Player(World world, float x, float y) {
+    // how long a press waits to be acted on, in seconds: a jump just before landing, a dash or an
+    // attack pressed while the current move is still playing
+    private final float jumpBuffer = 0.12f;
+    private final float dashBuffer = 0.12f;
+    private final float attackBuffer = 0.25f;
+    // a second attack this soon after the first chains into the combo
+    private final float comboWindow = 0.3f;
+
+    public Player(World world, AnimationLibrary animations, EventBus events, float x, float y) {
         this.world = world;
+        this.events = events;
 
         BodyDef bodyDef = new BodyDef();
         bodyDef.type = BodyDef.BodyType.DynamicBody;
@@ -88,36 +100,23 @@ public class Player {
         sensor.setUserData("foot");
         footShape.dispose();
 
-        idleAnimation = loadAnimation("Idle/Idle_", 1, 0.1f, Animation.PlayMode.LOOP);
-        walkAnimation = loadAnimation("Walk/Walk_", 8, 0.08f, Animation.PlayMode.LOOP);
-        jumpUpAnimation = loadAnimation("Jump/上升/Jump_", 9, 0.08f, Animation.PlayMode.LOOP);
-        jumpLoopAnimation = loadAnimation("Jump/空中循环/JumpLoop_", 3, 0.12f, Animation.PlayMode.LOOP);
-        landAnimation = loadAnimation("Jump/落地/Land_", 3, 0.05f, Animation.PlayMode.NORMAL);
-        doubleJumpAnimation = loadAnimation("DoubleJump/DoubleJump_", 4, 0.06f, Animation.PlayMode.NORMAL);
-        dashAnimation = loadAnimation("Dash/Dash_", 4, 0.05f, Animation.PlayMode.NORMAL);
-        dashEffectAnimation = loadAnimation("DashEffect/dash_effect_02000", 5, 0.03f, Animation.PlayMode.NORMAL);
-        attack1Animation = loadAnimation("Attack/1/Attack_", 5, 0.06f, Animation.PlayMode.NORMAL);
-        attack2Animation = loadAnimation("Attack/2/AttackTwice_", 5, 0.06f, Animation.PlayMode.NORMAL);
-        attackDownAnimation = loadAnimation("Down/AttackBottom_", 5, 0.06f, Animation.PlayMode.NORMAL);
-
-        Texture fullTex1 = new Texture("Attack/1/lr1.png");
-        Texture fullTex2 = new Texture("Attack/2/lr2.png");
-        Texture fullTex3 = new Texture("Down/down.png");
-        attackEffect1 = new TextureRegion(fullTex1, 0, 0, fullTex1.getWidth(), fullTex1.getHeight() / 2);
-        attackEffect2 = new TextureRegion(fullTex2, 0, 0, fullTex2.getWidth(), fullTex2.getHeight() / 2);
-        attackEffectDown = new TextureRegion(fullTex3, 0, 0, fullTex3.getWidth(), fullTex3.getHeight() / 2);
+        idleAnimation = animations.get("player/idle");
+        walkAnimation = animations.get("player/walk");
+        jumpUpAnimation = animations.get("player/jumpUp");
+        jumpLoopAnimation = animations.get("player/jumpLoop");
+        landAnimation = animations.get("player/land");
+        doubleJumpAnimation = animations.get("player/doubleJump");
+        dashAnimation = animations.get("player/dash");
+        dashEffectAnimation = animations.get("player/dashEffect");
+        attack1Animation = animations.get("player/attack1");
+        attack2Animation = animations.get("player/attack2");
+        attackDownAnimation = animations.get("player/attackDown");
+
+        attackEffect1 = animations.get("player/attackEffect1").getKeyFrame(0f);
+        attackEffect2 = animations.get("player/attackEffect2").getKeyFrame(0f);
+        attackEffectDown = animations.get("player/attackEffectDown").getKeyFrame(0f);
     }
 
-    private Animation<TextureRegion> loadAnimation(String basePrefix, int count, float frameDuration, Animation.PlayMode mode) {
-        Array<TextureRegion> frames = new Array<>();
-        for (int i = 1; i <= count; i++) {
-            Texture tex = new Texture(basePrefix + i + ".PNG");
-            frames.add(new TextureRegion(tex));
-        }
-        Animation<TextureRegion> anim = new Animation<>(frameDuration, frames);
-        anim.setPlayMode(mode);
-        return anim;
-    }
     public boolean isInAir() {
         return !grounded;
     }
@@ -131,14 +130,17 @@ public class Player {
         }
     }
 
-    public void update(boolean moveLeft, boolean moveRight, boolean jumpPressed, boolean dashPressed, boolean attackPressed, boolean downAttackPressed, float delta) {
+    public void update(PlayerInput input, float delta) {
         Vector2 velocity = body.getLinearVelocity();
+        boolean moveLeft = input.isHeld(LEFT);
+        boolean moveRight = input.isHeld(RIGHT);
         stateTime += delta;
         if (hitCooldown > 0) hitCooldown -= delta;
 
 
-        if (downAttackPressed) {
+        if (input.isBuffered(ATTACK, attackBuffer) && input.isHeld(DOWN) && !isAttacking && isInAir()) {
             triggerDownAttack();
+            input.consume(ATTACK);
         }
 
         if (playingDashEffect) {
@@ -158,16 +160,28 @@ public class Player {
 
         currentHitbox.set(0, 0, 0, 0); // clear hitbox in default
 
-        if (attackPressed) {
+        if (showAttackEffect) {
+            attackEffectTimer += delta;
+            if (attackEffectTimer > attackEffectDuration) {
+                showAttackEffect = false;
+            } else {
+                updateCurrentHitbox(getAttackEffect(), attackCombo, body.getPosition());
+            }
+        }
+
+        // a press that fits neither case stays buffered and starts the next attack once this one ends
+        if (input.isBuffered(ATTACK, attackBuffer)) {
             if (!isAttacking) {
                 isAttacking = true;
                 attackCombo = 1;
                 attackTimer = 0f;
                 stateTime = 0f;
-            } else if (attackCombo == 1 && attackTimer < 0.3f) {
+                input.consume(ATTACK);
+            } else if (attackCombo == 1 && attackTimer < comboWindow) {
                 attackCombo = 2;
                 attackTimer = 0f;
                 stateTime = 0f;
+                input.consume(ATTACK);
             }
         }
 
@@ -227,23 +241,26 @@ public class Player {
                 body.setLinearVelocity(0, velocity.y);
             }
 
-            if (jumpPressed) {
+            if (input.isBuffered(JUMP, jumpBuffer)) {
                 if (grounded) {
                     body.setLinearVelocity(body.getLinearVelocity().x, jumpVelocity);
                     grounded = false;
                     canDoubleJump = true;
                     playingLand = false;
                     justDoubleJumped = false;
+                    input.consume(JUMP);
                 } else if (canDoubleJump) {
                     body.setLinearVelocity(body.getLinearVelocity().x, jumpVelocity);
                     canDoubleJump = false;
                     justDoubleJumped = true;
                     stateTime = 0f;
+                    input.consume(JUMP);
                 }
             }
         }
 
-        if (dashPressed && !isDashing) {
+        if (!isDashing && input.isBuffered(DASH, dashBuffer)) {
+            input.consume(DASH);
             isDashing = true;
             dashTimer = dashDuration;
             body.setLinearVelocity(facingDirection * dashSpeed, 0);
@@ -297,8 +314,9 @@ public class Player {
         Fixture a = contact.getFixtureA();
         Fixture b = contact.getFixtureB();
 
-        boolean aIsFoot = "foot".equals(a.getUserData());
-        boolean bIsFoot = "foot".equals(b.getUserData());
+        // only this player's foot; in a versus fight the other player's contacts come through here too
+        boolean aIsFoot = isOwnFoot(a);
+        boolean bIsFoot = isOwnFoot(b);
 
         if (aIsFoot || bIsFoot) {
             if (begin) {
@@ -310,92 +328,213 @@ public class Player {
         }
     }
 
-    public void draw(SpriteBatch batch) {
-        if (playingDashEffect) {
-            TextureRegion effect = dashEffectAnimation.getKeyFrame(dashEffectTime);
-            if (effect.isFlipX() != (facingDirection == 1)) {
-                effect.flip(true, false);
-            }
-            Vector2 pos = body.getPosition();
-            float w = effect.getRegionWidth() / 150f;
-            float h = effect.getRegionHeight() / 150f;
-            float x = pos.x;
-            float y = pos.y;
-            batch.draw(effect, x - w / 2f, y - h / 2f, w / 2f, h / 2f, w, h, 1f, 1f, 0f);
+    private boolean isOwnFoot(Fixture fixture) {
+        return fixture.getBody() == body && "foot".equals(fixture.getUserData());
+    }
+
+    /**
+     * Everything {@link #update} and the hit checks depend on, including the body's motion, so a rollback can put
+     * the player back to an earlier tick. Preallocate these; saving and restoring don't allocate.
+     */
+    public static class Snapshot {
+        /** Size of what {@link #write} writes. */
+        static final int BYTES = 15 * 4 + 4 + 1 + 1 + 2;
+
+        float x, y, velocityX, velocityY, gravityScale;
+        float stateTime;
+        AnimationFrame currentFrame;
+        boolean grounded, canDoubleJump, justDoubleJumped;
+        boolean isDashing;
+        float dashTimer;
+        int facingDirection;
+        int health;
+        float hitCooldown;
+        boolean playingLand, justLanded;
+        boolean playingDashEffect;
+        float dashEffectTime;
+        boolean isAttacking;
+        int attackCombo;
+        float attackTimer;
+        boolean showAttackEffect;
+        float attackEffectTimer;
+        float hitboxX, hitboxY, hitboxWidth, hitboxHeight;
+
+        /**
+         * Sums up the state for comparing two machines, bit for bit: two states that differ anywhere {@link #update}
+         * looks at sum up differently, however small the difference. The frame shown is left out; it only draws.
+         */
+        int checksum() {
+            int hash = Float.floatToIntBits(x);
+            hash = 31 * hash + Float.floatToIntBits(y);
+            hash = 31 * hash + Float.floatToIntBits(velocityX);
+            hash = 31 * hash + Float.floatToIntBits(velocityY);
+            hash = 31 * hash + Float.floatToIntBits(gravityScale);
+            hash = 31 * hash + Float.floatToIntBits(stateTime);
+            hash = 31 * hash + Float.floatToIntBits(dashTimer);
+            hash = 31 * hash + Float.floatToIntBits(hitCooldown);
+            hash = 31 * hash + Float.floatToIntBits(dashEffectTime);
+            hash = 31 * hash + Float.floatToIntBits(attackTimer);
+            hash = 31 * hash + Float.floatToIntBits(attackEffectTimer);
+            hash = 31 * hash + Float.floatToIntBits(hitboxX);
+            hash = 31 * hash + Float.floatToIntBits(hitboxY);
+            hash = 31 * hash + Float.floatToIntBits(hitboxWidth);
+            hash = 31 * hash + Float.floatToIntBits(hitboxHeight);
+            hash = 31 * hash + health;
+            hash = 31 * hash + facingDirection;
+            hash = 31 * hash + attackCombo;
+            hash = 31 * hash + flags();
+            return hash;
         }
 
-        if (showAttackEffect) {
-            attackEffectTimer += Gdx.graphics.getDeltaTime();
-            if (attackEffectTimer > attackEffectDuration) {
-                showAttackEffect = false;
-            } else {
-                TextureRegion effect;
-                if (attackCombo == -1) {
-                    effect = attackEffectDown;
-                } else if (attackCombo == 1) {
-                    effect = attackEffect1;
-                } else {
-                    effect = attackEffect2;
-                }
+        /** Writes everything {@link #checksum()} covers, so the other machine can take this state over. */
+        void write(ByteBuffer out) {
+            out.putFloat(x).putFloat(y).putFloat(velocityX).putFloat(velocityY).putFloat(gravityScale);
+            out.putFloat(stateTime).putFloat(dashTimer).putFloat(hitCooldown).putFloat(dashEffectTime);
+            out.putFloat(attackTimer).putFloat(attackEffectTimer);
+            out.putFloat(hitboxX).putFloat(hitboxY).putFloat(hitboxWidth).putFloat(hitboxHeight);
+            out.putInt(health).put((byte) facingDirection).put((byte) attackCombo).putShort((short) flags());
+        }
 
-                if (effect != null) {
-                    Vector2 pos = body.getPosition();
-                    float w = effect.getRegionWidth() / 80f;
-                    float h = effect.getRegionHeight() / 80f;
-                    float x = pos.x;
-                    float y = pos.y;
+        /** Reads what {@link #write} wrote; the frame shown stays as it was until the next update picks one. */
+        void read(ByteBuffer in) {
+            x = in.getFloat();
+            y = in.getFloat();
+            velocityX = in.getFloat();
+            velocityY = in.getFloat();
+            gravityScale = in.getFloat();
+            stateTime = in.getFloat();
+            dashTimer = in.getFloat();
+            hitCooldown = in.getFloat();
+            dashEffectTime = in.getFloat();
+            attackTimer = in.getFloat();
+            attackEffectTimer = in.getFloat();
+            hitboxX = in.getFloat();
+            hitboxY = in.getFloat();
+            hitboxWidth = in.getFloat();
+            hitboxHeight = in.getFloat();
+            health = in.getInt();
+            facingDirection = in.get();
+            attackCombo = in.get();
+            int flags = in.getShort();
+            grounded = (flags & 1) != 0;
+            canDoubleJump = (flags & 1 << 1) != 0;
+            justDoubleJumped = (flags & 1 << 2) != 0;
+            isDashing = (flags & 1 << 3) != 0;
+            playingLand = (flags & 1 << 4) != 0;
+            justLanded = (flags & 1 << 5) != 0;
+            playingDashEffect = (flags & 1 << 6) != 0;
+            isAttacking = (flags & 1 << 7) != 0;
+            showAttackEffect = (flags & 1 << 8) != 0;
+        }
 
-                    if (attackCombo == -1) {
-                        y -= h * 0.5f;
-                    } else {
-                        float offsetX = (facingDirection == 1) ? w * 0.3f : -w * 0.3f;
-                        x += offsetX;
-                        if (effect.isFlipX() != (facingDirection == 1)) {
-                            effect.flip(true, false);
-                        }
-                    }
+        private int flags() {
+            return (grounded ? 1 : 0) | (canDoubleJump ? 1 << 1 : 0) | (justDoubleJumped ? 1 << 2 : 0)
+                | (isDashing ? 1 << 3 : 0) | (playingLand ? 1 << 4 : 0) | (justLanded ? 1 << 5 : 0)
+                | (playingDashEffect ? 1 << 6 : 0) | (isAttacking ? 1 << 7 : 0) | (showAttackEffect ? 1 << 8 : 0);
+        }
+    }
 
-                    batch.draw(effect, x - w / 2f, y - h / 2f, w / 2f, h / 2f, w, h, 1f, 1f, 0f);
+    public void save(Snapshot out) {
+        Vector2 pos = body.getPosition();
+        Vector2 velocity = body.getLinearVelocity();
+        out.x = pos.x;
+        out.y = pos.y;
+        out.velocityX = velocity.x;
+        out.velocityY = velocity.y;
+        out.gravityScale = body.getGravityScale();
+        out.stateTime = stateTime;
+        out.currentFrame = currentFrame;
+        out.grounded = grounded;
+        out.canDoubleJump = canDoubleJump;
+        out.justDoubleJumped = justDoubleJumped;
+        out.isDashing = isDashing;
+        out.dashTimer = dashTimer;
+        out.facingDirection = facingDirection;
+        out.health = health;
+        out.hitCooldown = hitCooldown;
+        out.playingLand = playingLand;
+        out.justLanded = justLanded;
+        out.playingDashEffect = playingDashEffect;
+        out.dashEffectTime = dashEffectTime;
+        out.isAttacking = isAttacking;
+        out.attackCombo = attackCombo;
+        out.attackTimer = attackTimer;
+        out.showAttackEffect = showAttackEffect;
+        out.attackEffectTimer = attackEffectTimer;
+        out.hitboxX = currentHitbox.x;
+        out.hitboxY = currentHitbox.y;
+        out.hitboxWidth = currentHitbox.width;
+        out.hitboxHeight = currentHitbox.height;
+    }
 
-                    // set hitbox
-                    currentHitbox.set(x - w / 2f, y - h / 2f, w, h);
-                }
+    /**
+     * Puts the player back to {@code in}. The ground contact count is not restored but recounted from the contacts
+     * Box2D holds right now: the next step reports contacts beginning and ending relative to those, so the count
+     * comes out right, while {@code grounded} keeps the saved value until then.
+     */
+    public void restore(Snapshot in) {
+        body.setTransform(in.x, in.y, 0f);
+        body.setLinearVelocity(in.velocityX, in.velocityY);
+        body.setGravityScale(in.gravityScale);
+        body.setAwake(true);
+        stateTime = in.stateTime;
+        currentFrame = in.currentFrame;
+        grounded = in.grounded;
+        canDoubleJump = in.canDoubleJump;
+        justDoubleJumped = in.justDoubleJumped;
+        isDashing = in.isDashing;
+        dashTimer = in.dashTimer;
+        facingDirection = in.facingDirection;
+        health = in.health;
+        hitCooldown = in.hitCooldown;
+        playingLand = in.playingLand;
+        justLanded = in.justLanded;
+        playingDashEffect = in.playingDashEffect;
+        dashEffectTime = in.dashEffectTime;
+        isAttacking = in.isAttacking;
+        attackCombo = in.attackCombo;
+        attackTimer = in.attackTimer;
+        showAttackEffect = in.showAttackEffect;
+        attackEffectTimer = in.attackEffectTimer;
+        currentHitbox.set(in.hitboxX, in.hitboxY, in.hitboxWidth, in.hitboxHeight);
+
+        groundContactCount = 0;
+        Array<Contact> contacts = world.getContactList();
+        for (int i = 0; i < contacts.size; i++) {
+            Contact contact = contacts.get(i);
+            if (contact.isTouching() && (isOwnFoot(contact.getFixtureA()) || isOwnFoot(contact.getFixtureB()))) {
+                groundContactCount++;
             }
         }
+    }
 
+    public void writeRenderState(RenderState.PlayerView view) {
         Vector2 pos = body.getPosition();
-        if (currentFrame != null) {
-            float pixelsPerUnit = 100f;
-            float texW = currentFrame.getRegionWidth();
-            float texH = currentFrame.getRegionHeight();
-            float drawW = texW / pixelsPerUnit;
-            float drawH = texH / pixelsPerUnit;
-            if (currentFrame.isFlipX() != (facingDirection == 1)) {
-                currentFrame.flip(true, false);
-            }
-            float drawX = pos.x - drawW / 2f;
-            float drawY = pos.y - 0.5f;
-            if (hitCooldown > 0) {
-                // blinking
-                if ((int)(hitCooldown * 10) % 2 == 0) {
-                    batch.setColor(1f, 0.3f, 0.3f, 1f);
-                }
-            }
-            batch.draw(currentFrame, drawX, drawY, drawW, drawH);
-            batch.setColor(1f, 1f, 1f, 1f);
+        view.x = pos.x;
+        view.y = pos.y;
+        view.frame = currentFrame;
+        // source frames face left, so mirror them around their center when facing right
+        view.flipX = (facingDirection == 1) ? -1f : 1f;
+        view.blinking = hitCooldown > 0 && (int)(hitCooldown * 10) % 2 == 0;
+        view.dashEffect = playingDashEffect ? dashEffectAnimation.getKeyFrame(dashEffectTime) : null;
+        view.attackEffect = showAttackEffect ? getAttackEffect() : null;
+        view.attackEffectFlipX = (attackCombo == -1) ? 1f : view.flipX;
+        view.hitbox.set(currentHitbox);
+        view.healthRatio = (float) health / maxHealth;
+    }
 
+    private AnimationFrame getAttackEffect() {
+        if (attackCombo == -1) {
+            return attackEffectDown;
+        } else if (attackCombo == 1) {
+            return attackEffect1;
         }
+        return attackEffect2;
     }
 
-    public void drawHitbox(ShapeRenderer renderer) {
-        if (!showAttackEffect) return;
-
-        renderer.setColor(1, 0, 0, 1);
-        renderer.rect(currentHitbox.x, currentHitbox.y, currentHitbox.width, currentHitbox.height);
-    }
-    private void updateCurrentHitbox(TextureRegion effect, int combo, Vector2 pos) {
-        float w = effect.getRegionWidth() / 80f;
-        float h = effect.getRegionHeight() / 80f;
+    private void updateCurrentHitbox(AnimationFrame effect, int combo, Vector2 pos) {
+        float w = effect.originalWidth / 80f;
+        float h = effect.originalHeight / 80f;
         float x = pos.x;
         float y = pos.y;
 
@@ -411,19 +550,6 @@ public class Player {
 
 
 
-    public void dispose() {
-        for (TextureRegion region : idleAnimation.getKeyFrames()) region.getTexture().dispose();
-        for (TextureRegion region : walkAnimation.getKeyFrames()) region.getTexture().dispose();
-        for (TextureRegion region : jumpUpAnimation.getKeyFrames()) region.getTexture().dispose();
-        for (TextureRegion region : jumpLoopAnimation.getKeyFrames()) region.getTexture().dispose();
-        for (TextureRegion region : landAnimation.getKeyFrames()) region.getTexture().dispose();
-        for (TextureRegion region : doubleJumpAnimation.getKeyFrames()) region.getTexture().dispose();
-        for (TextureRegion region : dashAnimation.getKeyFrames()) region.getTexture().dispose();
-        for (TextureRegion region : dashEffectAnimation.getKeyFrames()) region.getTexture().dispose();
-        for (TextureRegion region : attack1Animation.getKeyFrames()) region.getTexture().dispose();
-        for (TextureRegion region : attack2Animation.getKeyFrames()) region.getTexture().dispose();
-    }
-
     public Body getBody() {
         return body;
     }
@@ -433,38 +559,39 @@ public class Player {
     public Vector2 getPosition() {
         return body.getPosition();
     }
-    public void drawHealthBar(ShapeRenderer renderer) {
-        Vector2 pos = body.getPosition();
-        float barWidth = 1f;
-        float barHeight = 0.1f;
-        float x = pos.x - barWidth / 2f;
-        float y = pos.y + 0.7f;
-
-        float ratio = (float) health / maxHealth;
-
-        renderer.setColor(0.3f, 0.3f, 0.3f, 1f);
-        renderer.rect(x, y, barWidth, barHeight);
-
-        renderer.setColor(0.1f, 1f, 0.2f, 1f);
-        renderer.rect(x, y, barWidth * ratio, barHeight);
-    }
     public void tryHit(Rectangle bossHitbox) {
         if (hitCooldown > 0 || isDashing) return; // during dash, player is invincible.
 
 
         Vector2 pos = body.getPosition();
-        Rectangle playerBodyBox = new Rectangle(pos.x - 0.5f, pos.y - 0.5f, 1f, 1f);
+        bodyBox.set(pos.x - 0.5f, pos.y - 0.5f, 1f, 1f);
 
-        if (bossHitbox.overlaps(playerBodyBox)) {
+        if (bossHitbox.overlaps(bodyBox)) {
             health--;
             hitCooldown = HIT_INTERVAL;
-            System.out.println("Player hit! HP: " + health);
+            events.publish(GameEvent.Type.PLAYER_HIT, pos.x, pos.y, health);
             if (health <= 0) {
-                //dead!
+                events.publish(GameEvent.Type.PLAYER_DIED, pos.x, pos.y, 0);
             }
         }
     }
 
+    int getHealth() {
+        return health;
+    }
+
+    AnimationFrame getCurrentFrame() {
+        return currentFrame;
+    }
+
+    boolean isFacingRight() {
+        return facingDirection == 1;
+    }
+
+    public boolean isDashing() {
+        return isDashing;
+    }
+
     public boolean isDead() {
         return health <= 0;
     }
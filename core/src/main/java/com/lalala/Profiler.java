@@ -0,0 +1,111 @@
+package com.lalala;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.profiling.GLProfiler;
+import com.lalala.input.PlayerInput;
+
+import java.util.Locale;
+
+/** Aggregates per-frame timings and GL counters and logs a summary once per second. */
+public class Profiler {
+    private static final float REPORT_INTERVAL = 1f;
+
+    private final GLProfiler glProfiler;
+
+    private float reportTimer;
+    private int frames;
+    private float frameTimeTotal, frameTimeMax;
+    private long cpuNanosTotal, physicsNanosTotal;
+    private final int[] inputActions = new int[PlayerInput.MAX_DEVICES];
+    private final long[] inputLatencyTotal = new long[PlayerInput.MAX_DEVICES];
+    private final long[] inputLatencyMax = new long[PlayerInput.MAX_DEVICES];
+    private final StringBuilder line = new StringBuilder();
+    private int drawCallsTotal, textureBindingsTotal;
+    private long lightingNanosTotal;
+    private int lightsTotal;
+    private Lighting.Quality lightingQuality = Lighting.Quality.OFF;
+    private AnimationLibrary animations;
+    // animation counters at the previous report
+    private int loadsReported, prefetchesReported, evictionsReported;
+
+    public Profiler() {
+        glProfiler = new GLProfiler(Gdx.graphics);
+        glProfiler.enable();
+    }
+
+    /** Records the CPU time of this frame's light pass (ray casts and light map) and how many lights it drew. */
+    public void lighting(Lighting.Quality quality, long nanos, int activeLights) {
+        lightingQuality = quality;
+        lightingNanosTotal += nanos;
+        lightsTotal += activeLights;
+    }
+
+    /** Reports the animation texture memory and cache traffic of {@code library} with the next summary. */
+    public void animations(AnimationLibrary library) {
+        animations = library;
+    }
+
+    /**
+     * @param delta    time since the previous frame, in seconds
+     * @param cpuNanos time the GL thread spent in render() this frame
+     * @param state    the snapshot drawn this frame, carrying physics time and input latency for its ticks
+     */
+    public void frame(float delta, long cpuNanos, RenderState state) {
+        frames++;
+        frameTimeTotal += delta;
+        frameTimeMax = Math.max(frameTimeMax, delta);
+        cpuNanosTotal += cpuNanos;
+        physicsNanosTotal += state.physicsNanos;
+        for (int d = 0; d < PlayerInput.MAX_DEVICES; d++) {
+            inputActions[d] += state.inputActions[d];
+            inputLatencyTotal[d] += state.inputLatencyNanos[d];
+            inputLatencyMax[d] = Math.max(inputLatencyMax[d], state.inputLatencyMaxNanos[d]);
+        }
+        drawCallsTotal += glProfiler.getDrawCalls();
+        textureBindingsTotal += glProfiler.getTextureBindings();
+        glProfiler.reset();
+
+        reportTimer += delta;
+        if (reportTimer < REPORT_INTERVAL) return;
+
+        line.setLength(0);
+        line.append(String.format(Locale.ROOT,
+            "bosses=%d chunks=%d bodies=%d fps=%d frame avg=%.2fms max=%.2fms cpu=%.2fms physics=%.2fms drawCalls=%d textureBinds=%d",
+            state.bossCount, state.loadedChunks, state.bodyCount, frames, frameTimeTotal * 1000f / frames, frameTimeMax * 1000f,
+            cpuNanosTotal / 1e6f / frames, physicsNanosTotal / 1e6f / frames,
+            drawCallsTotal / frames, textureBindingsTotal / frames));
+        line.append(String.format(Locale.ROOT, " lighting=%s lights=%d light=%.2fms",
+            lightingQuality, lightsTotal / frames, lightingNanosTotal / 1e6f / frames));
+        if (animations != null) {
+            line.append(String.format(Locale.ROOT, " textures=%d/%dKiB clips=%d/%d loads=%d prefetched=%d evicted=%d",
+                animations.getResidentBytes() >> 10, animations.getTotalBytes() >> 10, animations.getResidentCount(),
+                animations.getClipCount(), animations.getLoads() - loadsReported,
+                animations.getPrefetches() - prefetchesReported, animations.getEvictions() - evictionsReported));
+            loadsReported = animations.getLoads();
+            prefetchesReported = animations.getPrefetches();
+            evictionsReported = animations.getEvictions();
+        }
+        // input latency per device that pressed anything: the keyboard, then pads by slot
+        for (int d = 0; d < PlayerInput.MAX_DEVICES; d++) {
+            if (inputActions[d] == 0) continue;
+            line.append(String.format(Locale.ROOT, " input[%s] n=%d avg=%.2fms max=%.2fms",
+                d == PlayerInput.KEYBOARD ? "keys" : "pad" + d, inputActions[d],
+                inputLatencyTotal[d] / 1e6f / inputActions[d], inputLatencyMax[d] / 1e6f));
+            inputActions[d] = 0;
+            inputLatencyTotal[d] = inputLatencyMax[d] = 0L;
+        }
+        Gdx.app.log("Profiler", line.toString());
+
+        reportTimer = 0f;
+        frames = 0;
+        frameTimeTotal = frameTimeMax = 0f;
+        cpuNanosTotal = physicsNanosTotal = 0L;
+        drawCallsTotal = textureBindingsTotal = 0;
+        lightingNanosTotal = 0L;
+        lightsTotal = 0;
+    }
+
+    public void dispose() {
+        glProfiler.disable();
+    }
+}
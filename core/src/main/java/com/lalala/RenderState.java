@@ -0,0 +1,210 @@
+package com.lalala;
+
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas.AtlasRegion;
+import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Array;
+import com.lalala.input.PlayerInput;
+
+/**
+ * Everything the GL thread needs to draw one frame, copied out of the simulation.
+ * GameScreen keeps two of these: the simulation writes the back one while the front one is drawn.
+ */
+public class RenderState {
+    public enum Outcome { NONE, WON, LOST }
+
+    public final PlayerView player = new PlayerView();
+    /** The other player of a versus fight; only drawn when {@link #hasOpponent} is set. */
+    public final PlayerView opponent = new PlayerView();
+    public boolean hasOpponent;
+    public final Array<BossView> bosses = new Array<>();
+    public int bossCount;
+    public final Array<BlockView> blocks = new Array<>();
+    public int blockCount;
+    public float elapsedTime;
+    /** Ticks the simulation has run. */
+    public int tick;
+    public Outcome outcome = Outcome.NONE;
+    /** Time spent in World.step since the previous snapshot. */
+    public long physicsNanos;
+    /** Level chunks currently in the world, and the Box2D body count including them. */
+    public int loadedChunks, bodyCount;
+    /** Per input device: presses acted on since the previous snapshot, with their summed and worst wait from event to tick. */
+    public final int[] inputActions = new int[PlayerInput.MAX_DEVICES];
+    public final long[] inputLatencyNanos = new long[PlayerInput.MAX_DEVICES];
+    public final long[] inputLatencyMaxNanos = new long[PlayerInput.MAX_DEVICES];
+
+    /** Returns the view for boss {@code index}, growing the preallocated list when needed. */
+    public BossView bossView(int index) {
+        while (bosses.size <= index) {
+            bosses.add(new BossView());
+        }
+        return bosses.get(index);
+    }
+
+    /** Returns the view for block {@code index}, growing the preallocated list when needed. */
+    public BlockView blockView(int index) {
+        while (blocks.size <= index) {
+            blocks.add(new BlockView());
+        }
+        return blocks.get(index);
+    }
+
+    static boolean overlaps(Rectangle view, float x, float y, float width, float height) {
+        return x < view.x + view.width && x + width > view.x && y < view.y + view.height && y + height > view.y;
+    }
+
+    /**
+     * Draws {@code frame} as if it still had its transparent border: (x, y, width, height) is where the
+     * untrimmed frame goes, and only the trimmed part is drawn, at its offset. Flipping mirrors around
+     * the untrimmed frame's center, as before trimming.
+     */
+    static void drawFrame(SpriteBatch batch, AtlasRegion frame, float x, float y, float width, float height, float flipX) {
+        float scaleX = width / frame.originalWidth, scaleY = height / frame.originalHeight;
+        float drawX = x + frame.offsetX * scaleX, drawY = y + frame.offsetY * scaleY;
+        batch.draw(frame, drawX, drawY, x + width / 2f - drawX, y + height / 2f - drawY,
+            frame.packedWidth * scaleX, frame.packedHeight * scaleY, flipX, 1f, 0f);
+    }
+
+    public static class PlayerView {
+        public float x, y;
+        public AnimationFrame frame;
+        public float flipX = 1f;
+        public boolean blinking;
+        public AnimationFrame dashEffect;
+        public AnimationFrame attackEffect;
+        public float attackEffectFlipX = 1f;
+        public final Rectangle hitbox = new Rectangle();
+        public float healthRatio;
+
+        public void draw(SpriteBatch batch, AnimationLibrary animations) {
+            if (dashEffect != null) {
+                float w = dashEffect.originalWidth / 150f;
+                float h = dashEffect.originalHeight / 150f;
+                drawFrame(batch, animations.region(dashEffect), x - w / 2f, y - h / 2f, w, h, flipX);
+            }
+
+            if (attackEffect != null) {
+                // the hitbox computed in update() is exactly where the slash is drawn
+                drawFrame(batch, animations.region(attackEffect), hitbox.x, hitbox.y, hitbox.width, hitbox.height, attackEffectFlipX);
+            }
+
+            if (frame != null) {
+                float pixelsPerUnit = 100f;
+                float drawW = frame.originalWidth / pixelsPerUnit;
+                float drawH = frame.originalHeight / pixelsPerUnit;
+                float drawX = x - drawW / 2f;
+                float drawY = y - 0.5f;
+                if (blinking) {
+                    batch.setColor(1f, 0.3f, 0.3f, 1f);
+                }
+                drawFrame(batch, animations.region(frame), drawX, drawY, drawW, drawH, flipX);
+                batch.setColor(1f, 1f, 1f, 1f);
+            }
+        }
+
+        /** Whether anything this view draws (sprite, effects, health bar) can touch {@code view}. */
+        public boolean isVisible(Rectangle view) {
+            float halfW = 0.5f, bottom = y - 0.5f, top = y + 0.8f;
+            if (frame != null) {
+                halfW = Math.max(halfW, frame.originalWidth / 200f);
+                top = Math.max(top, bottom + frame.originalHeight / 100f);
+            }
+            if (dashEffect != null) {
+                halfW = Math.max(halfW, dashEffect.originalWidth / 300f);
+                bottom = Math.min(bottom, y - dashEffect.originalHeight / 300f);
+                top = Math.max(top, y + dashEffect.originalHeight / 300f);
+            }
+            return overlaps(view, x - halfW, bottom, halfW * 2f, top - bottom)
+                || (attackEffect != null && hitbox.overlaps(view));
+        }
+
+        public void drawHitbox(ShapeRenderer renderer) {
+            if (attackEffect == null) return;
+
+            renderer.setColor(1, 0, 0, 1);
+            renderer.rect(hitbox.x, hitbox.y, hitbox.width, hitbox.height);
+        }
+
+        public void drawHealthBar(ShapeRenderer renderer) {
+            float barWidth = 1f;
+            float barHeight = 0.1f;
+            float barX = x - barWidth / 2f;
+            float barY = y + 0.7f;
+
+            renderer.setColor(0.3f, 0.3f, 0.3f, 1f);
+            renderer.rect(barX, barY, barWidth, barHeight);
+
+            renderer.setColor(0.1f, 1f, 0.2f, 1f);
+            renderer.rect(barX, barY, barWidth * healthRatio, barHeight);
+        }
+    }
+
+    public static class BossView {
+        public boolean alive;
+        public float x, y, width, height;
+        public AnimationFrame frame;
+        public boolean blinking;
+        public final Rectangle hitbox = new Rectangle();
+        public float healthRatio;
+        public Boss.State state;
+
+        public void draw(SpriteBatch batch, AnimationLibrary animations) {
+            if (!alive || frame == null) return;
+
+            if (blinking) {
+                batch.setColor(1f, 0.3f, 0.3f, 1f); // blinking red
+            }
+
+            drawFrame(batch, animations.region(frame), x - width / 2f, y - height / 2f, width, height, 1f);
+            batch.setColor(1f, 1f, 1f, 1f);
+        }
+
+        /** Whether the sprite, its health bar or its attack hitbox can touch {@code view}. */
+        public boolean isVisible(Rectangle view) {
+            if (!alive) return false;
+            return overlaps(view, x - width / 2f, y - height / 2f, width, height + 0.2f) || hitbox.overlaps(view);
+        }
+
+        public void drawHealthBar(ShapeRenderer shapeRenderer) {
+            if (!alive) return;
+
+            float barWidth = width;
+            float barHeight = 0.1f;
+            float barX = x - barWidth / 2f;
+            float barY = y + height / 2f + 0.1f; // pos of health bar
+
+            shapeRenderer.setColor(0.3f, 0.3f, 0.3f, 1);
+            shapeRenderer.rect(barX, barY, barWidth, barHeight);
+
+            shapeRenderer.setColor(1, 0, 0, 1);
+            shapeRenderer.rect(barX, barY, barWidth * healthRatio, barHeight);
+        }
+
+        public void drawHitbox(ShapeRenderer shapeRenderer) {
+            if (!alive) return;
+
+            shapeRenderer.setColor(1f, 1f, 0f, 1f);
+            shapeRenderer.rect(hitbox.x, hitbox.y, hitbox.width, hitbox.height);
+        }
+    }
+
+    public static class BlockView {
+        public final Rectangle bounds = new Rectangle();
+        public boolean hit;
+
+        public boolean isVisible(Rectangle view) {
+            return bounds.overlaps(view);
+        }
+
+        public void draw(ShapeRenderer renderer) {
+            if (hit) {
+                renderer.setColor(1, 0, 0, 1); // 红色
+            } else {
+                renderer.setColor(0, 1, 0, 1); // 绿色
+            }
+            renderer.rect(bounds.x, bounds.y, bounds.width, bounds.height);
+        }
+    }
+}
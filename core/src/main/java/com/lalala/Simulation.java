@@ -0,0 +1,361 @@
+package com.lalala;
+
+import com.badlogic.gdx.ai.sched.LoadBalancingScheduler;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.*;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.Pool;
+import com.badlogic.gdx.utils.TimeUtils;
+import com.lalala.events.EventBus;
+import com.lalala.events.GameEvent;
+import com.lalala.input.PlayerInput;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The fight itself: the Box2D world, the player, the bosses and their brains, advanced in fixed ticks.
+ * Nothing in here touches the graphics module, so it can run on the simulation thread or without a window.
+ * <p>
+ * A versus fight has a second player, the opponent, in place of the bosses. Both sides of a versus fight run the
+ * same simulation from the same inputs, and it can be saved and restored for rolling back to an earlier tick.
+ */
+public class Simulation implements ContactListener, Disposable {
+    public static final float STEP = 1f / 60f;
+    // size of the visible area in world units; the level itself may be larger
+    public static final float WORLD_WIDTH = 16f;
+    public static final float WORLD_HEIGHT = 9f;
+    // how long all AI brains together may think per tick; brains that don't fit wait for a later tick
+    private static final long AI_BUDGET_NANOS = 1_000_000L;
+    // level collision is streamed in squares of this many tiles, loaded within the first radius of the
+    // player and dropped beyond the second, both in world units
+    private static final int CHUNK_TILES = 32;
+    private static final float CHUNK_LOAD_RADIUS = 12f;
+    private static final float CHUNK_UNLOAD_RADIUS = 20f;
+    // arena mode doubles the boss count this often, in seconds
+    private static final float ARENA_RAMP_INTERVAL = 5f;
+    // events a subscriber may fall behind by before new ones are dropped; a boss changes state a few times a second
+    private static final int EVENT_CAPACITY = 1024;
+
+    private final GameConfig config;
+    private final World world;
+    private final Level level;
+    private final Player player;
+    private final PlayerInput input = new PlayerInput();
+    // versus only
+    private final Player opponent;
+    private final PlayerInput opponentInput;
+    private int localPlayer;
+    private final EventBus events = new EventBus(EVENT_CAPACITY);
+    private final Array<Boss> bosses = new Array<>();
+    private final LevelStreamer streamer;
+    private final Pool<Boss> bossPool;
+    private final LoadBalancingScheduler aiScheduler;
+    private int arenaStageCount = 1;
+    private float arenaRampTimer = 0f;
+    private long physicsNanos;
+    private float elapsedTime = 0f;  // 用于记录游戏时间
+    private int ticks;
+
+    public Simulation(GameConfig config, AnimationLibrary animations, Level level) {
+        this.config = config;
+        this.level = level;
+
+        world = new World(new Vector2(0, -25f), true);
+        world.setContactListener(this);
+
+        Vector2 playerSpawn = level.getPlayerSpawn();
+        player = new Player(world, animations, events, playerSpawn.x, playerSpawn.y);
+        if (config.isVersus()) {
+            // the opponent starts where the first boss would
+            Vector2 opponentSpawn = level.getBossSpawns().size > 0 ? level.getBossSpawns().first()
+                : new Vector2(playerSpawn.x + 4f, playerSpawn.y);
+            opponent = new Player(world, animations, events, opponentSpawn.x, opponentSpawn.y);
+            opponentInput = new PlayerInput();
+            // Box2D keeps no state a snapshot can't restore once warm starting and sleeping are off
+            world.setWarmStarting(false);
+            player.getBody().setSleepingAllowed(false);
+            opponent.getBody().setSleepingAllowed(false);
+        } else {
+            opponent = null;
+            opponentInput = null;
+        }
+        bossPool = new Pool<Boss>() {
+            @Override
+            protected Boss newObject() {
+                return new Boss(world, animations, events, 1, 5);
+            }
+        };
+        aiScheduler = new LoadBalancingScheduler(100);
+        if (opponent == null) {
+            for (Vector2 spawn : level.getBossSpawns()) {
+                spawnBoss(spawn.x, spawn.y);
+            }
+        }
+
+        // a versus fight loads the whole level up front, so streaming can't make a rolled back tick play out differently
+        float versusRadius = Math.max(level.getWidth(), level.getHeight());
+        streamer = opponent == null
+            ? new LevelStreamer(level, world, CHUNK_TILES, CHUNK_LOAD_RADIUS, CHUNK_UNLOAD_RADIUS)
+            : new LevelStreamer(level, world, CHUNK_TILES, versusRadius, versusRadius);
+        streamer.loadAround(player.getPosition());
+    }
+
+    /** Advances the fight by one {@link #STEP}, reading whatever has been applied to {@link #getInput()}. */
+    public RenderState.Outcome tick() {
+        if (opponent != null) return tickVersus();
+        float delta = STEP;
+        elapsedTime += delta;
+        events.setTick(ticks++, elapsedTime);
+        player.update(input, delta);
+        input.endTick(delta);
+        streamer.update(player.getPosition());
+        for (HittableBlock block : streamer.getBlocks()) {
+            block.tick(delta);
+            block.update(player.getCurrentHitbox());
+        }
+
+        aiScheduler.run(AI_BUDGET_NANOS);
+
+        boolean arenaMode = config.isArenaMode();
+        for (int i = bosses.size - 1; i >= 0; i--) {
+            Boss boss = bosses.get(i);
+            Vector2 bossPosition = boss.getPosition();
+            // a boss whose ground has been streamed out waits in place instead of falling through
+            boss.setFrozen(!streamer.isLoaded(bossPosition.x, bossPosition.y));
+            boss.update(player.getPosition(), delta);
+            boss.tryHit(player.getCurrentHitbox());
+            if (!arenaMode) {
+                player.tryHit(boss.getCurrentHitbox());
+            }
+
+            if (!boss.isAlive()) {
+                aiScheduler.remove(boss.getBrain());
+                bosses.removeIndex(i);
+                if (arenaMode) {
+                    bossPool.free(boss);
+                } else {
+                    boss.dispose();
+                }
+            }
+        }
+
+        if (arenaMode) {
+            updateArena(delta);
+        } else if (bosses.size == 0) {
+            events.publish(GameEvent.Type.FIGHT_WON, player.getPosition().x, player.getPosition().y, 0);
+            return RenderState.Outcome.WON;
+        }
+
+        if (player.isDead()) {
+            events.publish(GameEvent.Type.FIGHT_LOST, player.getPosition().x, player.getPosition().y, 0);
+            return RenderState.Outcome.LOST;
+        }
+
+        long stepStart = TimeUtils.nanoTime();
+        world.step(delta, 6, 2);
+        physicsNanos += TimeUtils.nanoTime() - stepStart;
+        return RenderState.Outcome.NONE;
+    }
+
+    /** The versus tick; returns the outcome for the first player, and LOST when both fall on the same tick. */
+    private RenderState.Outcome tickVersus() {
+        float delta = STEP;
+        elapsedTime += delta;
+        events.setTick(ticks++, elapsedTime);
+        player.update(input, delta);
+        input.endTick(delta);
+        opponent.update(opponentInput, delta);
+        opponentInput.endTick(delta);
+        streamer.update(player.getPosition());
+        // blocks only change colour, so they aren't part of a snapshot
+        for (HittableBlock block : streamer.getBlocks()) {
+            block.tick(delta);
+            block.update(player.getCurrentHitbox());
+            block.update(opponent.getCurrentHitbox());
+        }
+
+        player.tryHit(opponent.getCurrentHitbox());
+        opponent.tryHit(player.getCurrentHitbox());
+        if (player.isDead()) return RenderState.Outcome.LOST;
+        if (opponent.isDead()) return RenderState.Outcome.WON;
+
+        long stepStart = TimeUtils.nanoTime();
+        world.step(delta, 6, 2);
+        physicsNanos += TimeUtils.nanoTime() - stepStart;
+        return RenderState.Outcome.NONE;
+    }
+
+    /** Preallocated room for the state of a versus fight at one tick. */
+    public static class Snapshot {
+        /** Size of what {@link #write} writes. */
+        public static final int BYTES = 4 + 4 + 2 * Player.Snapshot.BYTES + 2 * PlayerInput.STATE_BYTES;
+
+        final Player.Snapshot player = new Player.Snapshot();
+        final Player.Snapshot opponent = new Player.Snapshot();
+        final PlayerInput input = new PlayerInput();
+        final PlayerInput opponentInput = new PlayerInput();
+        int ticks;
+        float elapsedTime;
+
+        /** Sums up the fight for comparing it with the other machine's; see {@link Player.Snapshot#checksum()}. */
+        public int checksum() {
+            int hash = 31 * ticks + Float.floatToIntBits(elapsedTime);
+            return 31 * (31 * hash + player.checksum()) + opponent.checksum();
+        }
+
+        /** Writes the whole fight, {@link #BYTES} of it, for the other machine to take over when the two disagree. */
+        public void write(ByteBuffer out) {
+            out.putInt(ticks).putFloat(elapsedTime);
+            player.write(out);
+            opponent.write(out);
+            input.write(out);
+            opponentInput.write(out);
+        }
+
+        public void read(ByteBuffer in) {
+            ticks = in.getInt();
+            elapsedTime = in.getFloat();
+            player.read(in);
+            opponent.read(in);
+            input.read(in);
+            opponentInput.read(in);
+        }
+    }
+
+    /** Saves the versus fight as it is before the next tick. Bosses keep their brains' state in behavior trees, which can't be saved. */
+    public void save(Snapshot out) {
+        if (opponent == null) throw new IllegalStateException("Only a versus fight can be saved");
+        player.save(out.player);
+        opponent.save(out.opponent);
+        out.input.copyFrom(input);
+        out.opponentInput.copyFrom(opponentInput);
+        out.ticks = ticks;
+        out.elapsedTime = elapsedTime;
+    }
+
+    public void restore(Snapshot in) {
+        if (opponent == null) throw new IllegalStateException("Only a versus fight can be restored");
+        player.restore(in.player);
+        opponent.restore(in.opponent);
+        input.copyFrom(in.input);
+        opponentInput.copyFrom(in.opponentInput);
+        ticks = in.ticks;
+        elapsedTime = in.elapsedTime;
+    }
+
+    private void spawnBoss(float x, float y) {
+        Boss boss = bossPool.obtain();
+        boss.spawn(x, y);
+        bosses.add(boss);
+        // in the arena, spread the brains over several ticks; the real fight decides every tick
+        aiScheduler.addWithAutomaticPhasing(boss.getBrain(), config.isArenaMode() ? 4 : 1);
+    }
+
+    private void updateArena(float delta) {
+        int maxCount = config.arenaBossCount;
+        arenaRampTimer += delta;
+        if (arenaRampTimer >= ARENA_RAMP_INTERVAL && arenaStageCount < maxCount) {
+            arenaRampTimer = 0f;
+            arenaStageCount = Math.min(arenaStageCount * 2, maxCount);
+        }
+        while (bosses.size < arenaStageCount) {
+            spawnBoss(MathUtils.random(1f, level.getWidth() - 1f), level.getHeight() - 2f);
+        }
+    }
+
+    /** Copies what the renderer needs and hands over the physics time measured since the last snapshot. */
+    public void writeRenderState(RenderState state) {
+        if (opponent != null) {
+            // the screen follows whichever player this machine controls
+            (localPlayer == 0 ? player : opponent).writeRenderState(state.player);
+            (localPlayer == 0 ? opponent : player).writeRenderState(state.opponent);
+        } else {
+            player.writeRenderState(state.player);
+        }
+        state.hasOpponent = opponent != null;
+        for (int i = 0; i < bosses.size; i++) {
+            bosses.get(i).writeRenderState(state.bossView(i));
+        }
+        state.bossCount = bosses.size;
+        Array<HittableBlock> blocks = streamer.getBlocks();
+        for (int i = 0; i < blocks.size; i++) {
+            blocks.get(i).writeRenderState(state.blockView(i));
+        }
+        state.blockCount = blocks.size;
+        state.loadedChunks = streamer.getLoadedCount();
+        state.bodyCount = world.getBodyCount();
+        state.elapsedTime = elapsedTime;
+        state.tick = ticks;
+        state.physicsNanos = physicsNanos;
+        physicsNanos = 0L;
+        input.drainLatency(state.inputActions, state.inputLatencyNanos, state.inputLatencyMaxNanos);
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    public World getWorld() {
+        return world;
+    }
+
+    /** Hits, deaths, boss state changes and the fight's end, published as the ticks run. Subscribe from any thread. */
+    public EventBus getEvents() {
+        return events;
+    }
+
+    /** The player's action state; only touch it from the thread that ticks. */
+    public PlayerInput getInput() {
+        return input;
+    }
+
+    public Player getPlayer() {
+        return player;
+    }
+
+    /** The second player of a versus fight, null otherwise. */
+    public Player getOpponent() {
+        return opponent;
+    }
+
+    /** The second player's action state; only touch it from the thread that ticks. */
+    public PlayerInput getOpponentInput() {
+        return opponentInput;
+    }
+
+    /** Which versus player this machine controls, 0 or 1. Only changes which one the renderer treats as the player. */
+    public void setLocalPlayer(int localPlayer) {
+        this.localPlayer = localPlayer;
+    }
+
+    public Array<Boss> getBosses() {
+        return bosses;
+    }
+
+    public float getElapsedTime() {
+        return elapsedTime;
+    }
+
+    @Override
+    public void dispose() {
+        streamer.dispose();
+        world.dispose();
+    }
+
+    @Override
+    public void beginContact(Contact contact) {
+        player.beginContact(contact);
+        if (opponent != null) opponent.beginContact(contact);
+    }
+
+    @Override
+    public void endContact(Contact contact) {
+        player.endContact(contact);
+        if (opponent != null) opponent.endContact(contact);
+    }
+
+    @Override public void preSolve(Contact contact, Manifold manifold) {}
+    @Override public void postSolve(Contact contact, ContactImpulse impulse) {}
+}
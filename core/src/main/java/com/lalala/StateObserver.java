@@ -0,0 +1,18 @@
+package com.lalala;
+
+import com.lalala.events.EventBus;
+
+/**
+ * Watches the fights from outside the game, for instance to broadcast them. The fight screen calls it on the GL
+ * thread; whatever it does there comes out of the frame, so anything slow belongs on a thread of its own.
+ */
+public interface StateObserver {
+    /** A fight is starting and nothing has ticked yet, so its events can be subscribed to from here. */
+    void fightStarted(EventBus events);
+
+    /** The snapshot the screen is about to draw. It is only valid during the call; the same tick may come again while paused. */
+    void observe(RenderState state);
+
+    /** The fight has stopped ticking; unsubscribe from its events. */
+    void fightEnded();
+}
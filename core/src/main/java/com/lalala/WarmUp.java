@@ -0,0 +1,179 @@
+package com.lalala;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.TimeUtils;
+import com.lalala.input.InputAction;
+import com.lalala.input.InputQueue;
+import com.lalala.input.PlayerInput;
+
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+
+import static com.lalala.input.InputAction.*;
+
+/**
+ * Plays a throwaway fight before the real one so the JIT compiles the hot paths first: player and boss
+ * updates, the Box2D step and its JNI calls, contact callbacks, chunk streaming and the input queue.
+ * A scripted pad walks, jumps, double-jumps, dashes and attacks, and every boss is handed the next action
+ * of a fixed rotation instead of asking its brain, so each boss state runs. A fight that ends starts over.
+ * <p>
+ * Runs in slices on the caller's thread. Stops once {@link #MIN_TICKS} have run and the JIT has gone quiet,
+ * or after {@link #MAX_TICKS} either way.
+ */
+public class WarmUp {
+    public static final int MIN_TICKS = 2000;
+    public static final int MAX_TICKS = 6000;
+    // the JIT counts as quiet when its total compilation time hasn't moved over this many ticks
+    private static final int QUIET_TICKS = 300;
+    private static final long STEP_NANOS = (long) (Simulation.STEP * 1_000_000_000L);
+    private static final int CYCLE_TICKS = 180;
+
+    private final GameConfig config;
+    private final AnimationLibrary animations;
+    private final Level level;
+    private final InputQueue queue = new InputQueue(64);
+    private final RenderState state = new RenderState();
+    private final CompilationMXBean compiler = ManagementFactory.getCompilationMXBean();
+    private Simulation simulation;
+    private int ticks;
+    private int fights;
+    private int nextAction;
+    private long compileMillisAtCheck = -1;
+    private long startNanos = -1, elapsedNanos;
+    private boolean done;
+
+    public WarmUp(GameConfig gameConfig, AnimationLibrary animations) {
+        // the normal fight, on the same level, whatever mode the real one runs in
+        config = new GameConfig();
+        config.levelFile = gameConfig.levelFile;
+        this.animations = animations;
+        level = Level.load(Gdx.files.internal(config.levelFile));
+        simulation = new Simulation(config, animations, level);
+    }
+
+    /** A native image has nothing to warm up. */
+    public static boolean isUseful() {
+        return System.getProperty("org.graalvm.nativeimage.imagecode") == null;
+    }
+
+    /** Runs ticks for about {@code budgetNanos}. Returns true once warm-up is complete. */
+    public boolean run(long budgetNanos) {
+        if (done) return true;
+        long sliceStart = TimeUtils.nanoTime();
+        if (startNanos < 0) startNanos = sliceStart;
+        do {
+            tick();
+            if (ticks % QUIET_TICKS == 0 && isSettled()) {
+                done = true;
+                break;
+            }
+        } while (TimeUtils.nanoTime() - sliceStart < budgetNanos);
+        elapsedNanos = TimeUtils.nanoTime() - startNanos;
+        simulation.writeRenderState(state);
+        return done;
+    }
+
+    private void tick() {
+        long tickNanos = ticks * STEP_NANOS;
+        script(ticks % CYCLE_TICKS, tickNanos);
+        queue.drainTo(simulation.getInput(), tickNanos);
+
+        Array<Boss> bosses = simulation.getBosses();
+        for (int i = 0; i < bosses.size; i++) {
+            Boss boss = bosses.get(i);
+            if (boss.needsDecision()) {
+                startNextAction(boss);
+            }
+        }
+
+        if (simulation.tick() != RenderState.Outcome.NONE) {
+            simulation.dispose();
+            simulation = new Simulation(config, animations, level);
+            fights++;
+        }
+        ticks++;
+    }
+
+    /** Walks right, then left; jumps, double-jumps and dashes on the way, then attacks, combos and down-attacks. */
+    private void script(int t, long time) {
+        at(t, 0, RIGHT, true, time);
+        at(t, 60, RIGHT, false, time);
+        at(t, 60, LEFT, true, time);
+        at(t, 120, LEFT, false, time);
+        tap(t, 10, JUMP, time);
+        tap(t, 25, JUMP, time);
+        tap(t, 45, DASH, time);
+        tap(t, 70, ATTACK, time);
+        tap(t, 80, ATTACK, time);
+        tap(t, 100, JUMP, time);
+        at(t, 108, DOWN, true, time);
+        tap(t, 115, ATTACK, time);
+        at(t, 126, DOWN, false, time);
+        tap(t, 150, ATTACK, time);
+    }
+
+    private void tap(int t, int when, InputAction action, long time) {
+        at(t, when, action, true, time);
+        at(t, when + 2, action, false, time);
+    }
+
+    private void at(int t, int when, InputAction action, boolean down, long time) {
+        if (t == when) {
+            queue.offer(action, down, time, PlayerInput.KEYBOARD);
+        }
+    }
+
+    private void startNextAction(Boss boss) {
+        switch (nextAction++ % 6) {
+            case 0: boss.startIdle(20); break;
+            case 1: boss.startWalk(true, 60); break;
+            case 2: boss.startJump(50, 0); break;
+            case 3: boss.startDash(30); break;
+            case 4: boss.startJumpDash(30, 0); break;
+            default: boss.startWalk(false, 20); break;
+        }
+    }
+
+    private boolean isSettled() {
+        if (ticks >= MAX_TICKS) return true;
+        if (compiler == null || !compiler.isCompilationTimeMonitoringSupported()) {
+            return ticks >= MIN_TICKS;
+        }
+        long compileMillis = compiler.getTotalCompilationTime();
+        boolean quiet = compileMillis == compileMillisAtCheck;
+        compileMillisAtCheck = compileMillis;
+        return ticks >= MIN_TICKS && quiet;
+    }
+
+    /** The latest snapshot of the throwaway fight, for exercising the draw code. */
+    public RenderState getState() {
+        return state;
+    }
+
+    /** How far along the warm-up is, from 0 to 1, assuming it stops at {@link #MIN_TICKS}. */
+    public float getProgress() {
+        return done ? 1f : Math.min(1f, ticks / (float) MIN_TICKS);
+    }
+
+    public int getTicks() {
+        return ticks;
+    }
+
+    public int getFights() {
+        return fights;
+    }
+
+    /** Wall time from the first tick to the end of the latest slice. */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public long getCompileMillis() {
+        return compiler != null && compiler.isCompilationTimeMonitoringSupported() ? compiler.getTotalCompilationTime() : -1L;
+    }
+
+    public void dispose() {
+        simulation.dispose();
+    }
+}
@@ -8,12 +8,6 @@ import com.badlogic.gdx.graphics.g2d.GlyphLayout;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.graphics.g2d.freetype.FreeTypeFontGenerator;
 
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.Statement;
-import java.util.ArrayList;
 import java.util.List;
 
 public class WinScreen implements Screen {
@@ -22,9 +16,17 @@ public class WinScreen implements Screen {
     private GlyphLayout layout;
     private float elapsedTime;
     private List<Float> topTimes;
-
-    public WinScreen(float elapsedTime) {
+    private final GhostRecorder ghost;
+    private final String levelFile;
+
+    /**
+     * {@code ghost} is the run just won, null for none; its recording must have stopped. A null {@code levelFile}
+     * shows the time without saving it, for fights that don't count for the leaderboard.
+     */
+    public WinScreen(float elapsedTime, GhostRecorder ghost, String levelFile) {
         this.elapsedTime = elapsedTime;
+        this.ghost = ghost;
+        this.levelFile = levelFile;
     }
 
     @Override
@@ -42,37 +44,11 @@ public class WinScreen implements Screen {
 
         layout = new GlyphLayout();
 
-        saveElapsedTimeToDatabase();
-        loadTopTimes();
-    }
-
-    private void saveElapsedTimeToDatabase() {
-        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:game_data.db")) {
-            Statement stmt = conn.createStatement();
-            String createTable = "CREATE TABLE IF NOT EXISTS win_times (id INTEGER PRIMARY KEY AUTOINCREMENT, time REAL)";
-            stmt.execute(createTable);
-
-            String insertSQL = "INSERT INTO win_times (time) VALUES (?)";
-            PreparedStatement pstmt = conn.prepareStatement(insertSQL);
-            pstmt.setDouble(1, elapsedTime);
-            pstmt.executeUpdate();
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-    }
-
-    private void loadTopTimes() {
-        topTimes = new ArrayList<>();
-        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:game_data.db")) {
-            String selectSQL = "SELECT time FROM win_times ORDER BY time ASC LIMIT 5";
-            PreparedStatement pstmt = conn.prepareStatement(selectSQL);
-            ResultSet rs = pstmt.executeQuery();
-            while (rs.next()) {
-                topTimes.add(rs.getFloat("time"));
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
+        Leaderboard leaderboard = new Leaderboard();
+        if (levelFile != null) {
+            leaderboard.save(elapsedTime, levelFile, ghost == null ? null : ghost.finish());
         }
+        topTimes = leaderboard.topTimes(5);
     }
 
     @Override
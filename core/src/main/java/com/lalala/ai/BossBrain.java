@@ -0,0 +1,34 @@
+package com.lalala.ai;
+
+import com.badlogic.gdx.ai.btree.BehaviorTree;
+import com.badlogic.gdx.ai.btree.utils.BehaviorTreeLibraryManager;
+import com.badlogic.gdx.ai.sched.Schedulable;
+import com.lalala.Boss;
+
+/**
+ * Runs a boss's behavior tree whenever the boss is waiting for its next action.
+ * Trees are parsed once per file by the library manager and cloned for every boss,
+ * so new patterns only need a new .tree asset.
+ * While the boss waits out its previous action, the brain asks for the animations it may pick next.
+ */
+public class BossBrain implements Schedulable {
+    private final Boss boss;
+    private final BehaviorTree<Boss> tree;
+    private boolean prefetched;
+
+    public BossBrain(Boss boss, String treeFile) {
+        this.boss = boss;
+        this.tree = BehaviorTreeLibraryManager.getInstance().createBehaviorTree(treeFile, boss);
+    }
+
+    @Override
+    public void run(long nanoTimeToRun) {
+        if (boss.needsDecision()) {
+            tree.step();
+            prefetched = false;
+        } else if (!prefetched && boss.isWaitingForDecision()) {
+            boss.prefetchNextActions();
+            prefetched = true;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.lalala.ai;
+
+import com.badlogic.gdx.ai.btree.LeafTask;
+import com.badlogic.gdx.ai.btree.Task;
+import com.badlogic.gdx.ai.btree.annotation.TaskAttribute;
+import com.lalala.Boss;
+
+/** Dashes horizontally towards the player. Fails while the dash is on cooldown. */
+public class DashTask extends LeafTask<Boss> {
+    @TaskAttribute
+    public int ticks = 500;
+
+    @Override
+    public Status execute() {
+        Boss boss = getObject();
+        if (!boss.isDashReady()) return Status.FAILED;
+
+        boss.startDash(ticks);
+        return Status.SUCCEEDED;
+    }
+
+    @Override
+    protected Task<Boss> copyTo(Task<Boss> task) {
+        ((DashTask) task).ticks = ticks;
+        return task;
+    }
+}
@@ -0,0 +1,24 @@
+package com.lalala.ai;
+
+import com.badlogic.gdx.ai.btree.LeafTask;
+import com.badlogic.gdx.ai.btree.Task;
+import com.badlogic.gdx.ai.btree.annotation.TaskAttribute;
+import com.lalala.Boss;
+
+/** Stands still facing the player for {@code ticks} simulation ticks. */
+public class IdleTask extends LeafTask<Boss> {
+    @TaskAttribute
+    public int ticks = 30;
+
+    @Override
+    public Status execute() {
+        getObject().startIdle(ticks);
+        return Status.SUCCEEDED;
+    }
+
+    @Override
+    protected Task<Boss> copyTo(Task<Boss> task) {
+        ((IdleTask) task).ticks = ticks;
+        return task;
+    }
+}
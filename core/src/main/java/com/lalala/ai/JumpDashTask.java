@@ -0,0 +1,32 @@
+package com.lalala.ai;
+
+import com.badlogic.gdx.ai.btree.LeafTask;
+import com.badlogic.gdx.ai.btree.Task;
+import com.badlogic.gdx.ai.btree.annotation.TaskAttribute;
+import com.lalala.Boss;
+
+/** Jumps, then dives diagonally at the player. Fails while on cooldown. */
+public class JumpDashTask extends LeafTask<Boss> {
+    @TaskAttribute
+    public int ticks = 500;
+
+    @TaskAttribute
+    public int cooldown = 100;
+
+    @Override
+    public Status execute() {
+        Boss boss = getObject();
+        if (!boss.isJumpDashReady()) return Status.FAILED;
+
+        boss.startJumpDash(ticks, cooldown);
+        return Status.SUCCEEDED;
+    }
+
+    @Override
+    protected Task<Boss> copyTo(Task<Boss> task) {
+        JumpDashTask jumpDash = (JumpDashTask) task;
+        jumpDash.ticks = ticks;
+        jumpDash.cooldown = cooldown;
+        return task;
+    }
+}
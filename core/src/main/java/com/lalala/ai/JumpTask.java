@@ -0,0 +1,32 @@
+package com.lalala.ai;
+
+import com.badlogic.gdx.ai.btree.LeafTask;
+import com.badlogic.gdx.ai.btree.Task;
+import com.badlogic.gdx.ai.btree.annotation.TaskAttribute;
+import com.lalala.Boss;
+
+/** Jumps towards the player. Fails while the jump is on cooldown. */
+public class JumpTask extends LeafTask<Boss> {
+    @TaskAttribute
+    public int ticks = 50;
+
+    @TaskAttribute
+    public int cooldown = 60;
+
+    @Override
+    public Status execute() {
+        Boss boss = getObject();
+        if (!boss.isJumpReady()) return Status.FAILED;
+
+        boss.startJump(ticks, cooldown);
+        return Status.SUCCEEDED;
+    }
+
+    @Override
+    protected Task<Boss> copyTo(Task<Boss> task) {
+        JumpTask jump = (JumpTask) task;
+        jump.ticks = ticks;
+        jump.cooldown = cooldown;
+        return task;
+    }
+}
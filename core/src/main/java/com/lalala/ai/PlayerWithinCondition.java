@@ -0,0 +1,23 @@
+package com.lalala.ai;
+
+import com.badlogic.gdx.ai.btree.LeafTask;
+import com.badlogic.gdx.ai.btree.Task;
+import com.badlogic.gdx.ai.btree.annotation.TaskAttribute;
+import com.lalala.Boss;
+
+/** Succeeds when the player is horizontally closer than {@code distance} world units. */
+public class PlayerWithinCondition extends LeafTask<Boss> {
+    @TaskAttribute
+    public float distance = 3f;
+
+    @Override
+    public Status execute() {
+        return getObject().getDistanceToPlayer() < distance ? Status.SUCCEEDED : Status.FAILED;
+    }
+
+    @Override
+    protected Task<Boss> copyTo(Task<Boss> task) {
+        ((PlayerWithinCondition) task).distance = distance;
+        return task;
+    }
+}
@@ -0,0 +1,29 @@
+package com.lalala.ai;
+
+import com.badlogic.gdx.ai.btree.LeafTask;
+import com.badlogic.gdx.ai.btree.Task;
+import com.badlogic.gdx.ai.btree.annotation.TaskAttribute;
+import com.lalala.Boss;
+
+/** Plays the walk animation for {@code ticks} ticks, optionally moving towards the facing direction. */
+public class WalkTask extends LeafTask<Boss> {
+    @TaskAttribute
+    public boolean moving;
+
+    @TaskAttribute
+    public int ticks = 30;
+
+    @Override
+    public Status execute() {
+        getObject().startWalk(moving, ticks);
+        return Status.SUCCEEDED;
+    }
+
+    @Override
+    protected Task<Boss> copyTo(Task<Boss> task) {
+        WalkTask walk = (WalkTask) task;
+        walk.moving = moving;
+        walk.ticks = ticks;
+        return task;
+    }
+}
@@ -0,0 +1,307 @@
+package com.lalala.capture;
+
+import com.lalala.log.Log;
+import com.lalala.log.LogCategory;
+import com.lalala.log.LogLevel;
+import com.lalala.log.LogRecord;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Encodes and writes one screen recording off the GL thread. The GL thread takes a {@link Frame} from a fixed pool,
+ * fills it and submits it. A few workers encode frames side by side, and one writer thread puts them in the file in
+ * the order they were submitted, then hands them back to the pool. When the pool is empty the GL thread drops the
+ * frame instead of waiting, so a slow encoder or disk costs frames, never frame time.
+ */
+public final class CaptureWriter {
+    public enum Format {
+        /** One looping animated GIF. */
+        GIF,
+        /** A folder of numbered PNG files. */
+        PNG,
+        /**
+         * Bare RGBA frames, top row first, one after the other. The gap a dropped frame leaves is filled with the frame
+         * that comes after it, so the file plays at the recording rate and can go straight into ffmpeg.
+         */
+        RAW
+    }
+
+    /** A preallocated frame of the pool; only the GL thread fills it, and only between obtain and submit. */
+    public static final class Frame {
+        /** RGBA, bottom row first, as glReadPixels leaves it. */
+        public final ByteBuffer pixels;
+        /** Which frame of the pool this is; for a pool of given buffers, the index of its buffer. */
+        public final int index;
+        /** When the frame was shown, in nanoseconds on whichever clock the recording keeps to. */
+        public long nanos;
+        private byte[] encoded;
+        private volatile boolean ready;
+
+        Frame(ByteBuffer pixels, int index) {
+            this.pixels = pixels;
+            this.index = index;
+        }
+    }
+
+    private static final long POLL_MS = 100L;
+
+    private final Format format;
+    private final Path target;
+    private final int width, height, fps;
+    private final ArrayBlockingQueue<Frame> free, encoding, writing;
+    private final Thread writer;
+    private volatile boolean finishing, done;
+
+    // writer thread only
+    private FileChannel channel;
+    private boolean failed;
+    private int written;
+    private long firstNanos = -1L, lastSlot = -1L;
+    private byte[] heldImage;
+    private long heldNanos;
+
+    /**
+     * Starts the workers and the writer for a recording of {@code width} by {@code height} frames into
+     * {@code target}, a file for GIF and RAW and a folder for PNG.
+     */
+    public CaptureWriter(Format format, Path target, int width, int height, int fps, int poolSize, int workerCount) {
+        this(format, target, width, height, fps, allocate(poolSize, width * height * 4), workerCount);
+    }
+
+    /**
+     * As above, but the pool has one frame for each of {@code pixels} instead of buffers of its own, such as pixel
+     * buffers the GPU reads the screen into. A buffer is only read while its frame is out of the pool.
+     */
+    public CaptureWriter(Format format, Path target, int width, int height, int fps, ByteBuffer[] pixels,
+        int workerCount) {
+        int poolSize = pixels.length;
+        this.format = format;
+        this.target = target;
+        this.width = width;
+        this.height = height;
+        this.fps = fps;
+        free = new ArrayBlockingQueue<>(poolSize);
+        encoding = new ArrayBlockingQueue<>(poolSize);
+        writing = new ArrayBlockingQueue<>(poolSize);
+        for (int i = 0; i < poolSize; i++) {
+            free.add(new Frame(pixels[i], i));
+        }
+        writer = new Thread(this::write, "capture writer");
+        writer.setDaemon(true);
+        writer.start();
+        if (format != Format.RAW) {
+            for (int i = 0; i < workerCount; i++) {
+                Thread worker = new Thread(this::encode, "capture encoder " + i);
+                worker.setDaemon(true);
+                worker.start();
+            }
+        }
+    }
+
+    /** A free frame to fill, or null when every frame is still being encoded or written. Never waits. */
+    public Frame obtain() {
+        return free.poll();
+    }
+
+    /** Queues a filled frame; frames are written in the order they are submitted. */
+    public void submit(Frame frame) {
+        if (format == Format.RAW) {
+            frame.ready = true;
+        } else {
+            encoding.offer(frame);
+        }
+        writing.offer(frame);
+    }
+
+    /** Returns a frame that was obtained but won't be submitted after all. */
+    public void discard(Frame frame) {
+        free.offer(frame);
+    }
+
+    /** No more frames are coming; the writer finishes the file once the queued ones are out. Returns at once. */
+    public void finish() {
+        finishing = true;
+    }
+
+    /** Whether the file is complete and every frame is back in the pool. */
+    public boolean isDone() {
+        return done;
+    }
+
+    /** Waits up to {@code millis} for the file to be complete; returns whether it is. */
+    public boolean awaitDone(long millis) throws InterruptedException {
+        writer.join(millis);
+        return done;
+    }
+
+    public Path getTarget() {
+        return target;
+    }
+
+    private static ByteBuffer[] allocate(int count, int bytes) {
+        ByteBuffer[] buffers = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            buffers[i] = ByteBuffer.allocateDirect(bytes);
+        }
+        return buffers;
+    }
+
+    private void encode() {
+        try {
+            while (!done) {
+                Frame frame = encoding.poll(POLL_MS, TimeUnit.MILLISECONDS);
+                if (frame == null) continue;
+                try {
+                    frame.encoded = format == Format.GIF ? GifEncoder.image(frame.pixels, width, height)
+                        : PngEncoder.encode(frame.pixels, width, height);
+                } catch (RuntimeException e) {
+                    Log.error(LogCategory.CAPTURE, "can't encode a captured frame", e);
+                    frame.encoded = null;
+                }
+                frame.ready = true;
+                LockSupport.unpark(writer);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write() {
+        try {
+            open();
+        } catch (IOException e) {
+            fail(e);
+        }
+        try {
+            while (true) {
+                Frame frame = writing.poll(POLL_MS, TimeUnit.MILLISECONDS);
+                if (frame == null) {
+                    if (finishing) break;
+                    continue;
+                }
+                while (!frame.ready) {
+                    LockSupport.parkNanos(this, 1_000_000L);
+                }
+                if (!failed) {
+                    try {
+                        write(frame);
+                    } catch (IOException e) {
+                        fail(e);
+                    }
+                }
+                frame.encoded = null;
+                frame.ready = false;
+                free.offer(frame);
+            }
+            close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            fail(e);
+        } finally {
+            done = true;
+        }
+    }
+
+    private void open() throws IOException {
+        if (format == Format.PNG) {
+            Files.createDirectories(target);
+            return;
+        }
+        if (target.getParent() != null) Files.createDirectories(target.getParent());
+        channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE);
+        if (format == Format.GIF) writeFully(GifEncoder.header(width, height));
+    }
+
+    private void write(Frame frame) throws IOException {
+        if (firstNanos < 0L) firstNanos = frame.nanos;
+        switch (format) {
+            case GIF:
+                if (frame.encoded == null) return;
+                // a frame's delay is only known once the next one is here
+                if (heldImage != null) writeHeld(centiseconds(frame.nanos) - centiseconds(heldNanos));
+                heldImage = frame.encoded;
+                heldNanos = frame.nanos;
+                break;
+            case PNG:
+                if (frame.encoded == null) return;
+                Files.write(target.resolve(String.format(Locale.ROOT, "frame-%05d.png", written)), frame.encoded);
+                break;
+            case RAW:
+                long slot = Math.round((frame.nanos - firstNanos) * (double) fps / 1e9);
+                long copies = lastSlot < 0L ? 1L : Math.max(1L, slot - lastSlot);
+                lastSlot = Math.max(slot, lastSlot + 1L);
+                for (long i = 0L; i < copies; i++) {
+                    writeRows(frame.pixels);
+                }
+                break;
+        }
+        written++;
+    }
+
+    private void writeHeld(int delay) throws IOException {
+        writeFully(GifEncoder.delay(delay));
+        writeFully(heldImage);
+        heldImage = null;
+    }
+
+    private int centiseconds(long nanos) {
+        return (int) Math.round((nanos - firstNanos) / 1e7);
+    }
+
+    /** Flips the frame on the way out: GL keeps the bottom row first, every video tool wants the top one. */
+    private void writeRows(ByteBuffer pixels) throws IOException {
+        int stride = width * 4;
+        for (int y = height - 1; y >= 0; y--) {
+            pixels.limit(y * stride + stride).position(y * stride);
+            while (pixels.hasRemaining()) {
+                channel.write(pixels);
+            }
+        }
+        pixels.clear();
+    }
+
+    private void writeFully(byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private void close() throws IOException {
+        if (format == Format.GIF && channel != null && !failed) {
+            if (heldImage != null) writeHeld(Math.round(100f / fps));
+            writeFully(GifEncoder.trailer());
+        }
+        if (channel != null) channel.close();
+        if (failed) return;
+        LogRecord record = Log.begin(LogCategory.CAPTURE, LogLevel.INFO);
+        if (record != null) {
+            record.append("wrote ").append(written).append(" frames to ").append(target.toAbsolutePath().toString());
+            record.commit();
+        }
+        record = format == Format.RAW ? Log.begin(LogCategory.CAPTURE, LogLevel.INFO) : null;
+        if (record != null) {
+            record.append("to encode it: ffmpeg -f rawvideo -pixel_format rgba -video_size ").append(width).append('x')
+                .append(height).append(" -framerate ").append(fps).append(" -i ")
+                .append(target.getFileName().toString()).append(" capture.mp4");
+            record.commit();
+        }
+    }
+
+    private void fail(IOException e) {
+        LogRecord record = failed ? null : Log.begin(LogCategory.CAPTURE, LogLevel.ERROR);
+        if (record != null) record.append("can't write ").append(target.toString()).cause(e).commit();
+        failed = true;
+    }
+}
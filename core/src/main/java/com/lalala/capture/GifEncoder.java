@@ -0,0 +1,237 @@
+package com.lalala.capture;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Animated GIF pieces, written by {@link CaptureWriter}. Frames are encoded independently, so several can be on the
+ * worker pool at once: each gets a palette of its own 256 most common colours, at 5 bits per channel, with every
+ * other colour mapped to the nearest of them. The game's flat pixel art rarely has more, so this is close to exact.
+ * The delay of a frame is only known when the next one arrives, so the writer puts it in front separately.
+ */
+public final class GifEncoder {
+    private static final int MAX_BITS = 12;
+    private static final int MAX_CODES = 1 << MAX_BITS;
+    private static final int CLEAR = 256, END = 257;
+    // a prime a little over the code count, as in the classic compress hash
+    private static final int HASH_SIZE = 5003;
+    private static final int HASH_SHIFT = 4;
+
+    private GifEncoder() {
+    }
+
+    /** The file header, with no global palette, looping forever. */
+    public static byte[] header(int width, int height) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(32);
+        out.writeBytes(new byte[] { 'G', 'I', 'F', '8', '9', 'a' });
+        writeShort(out, width);
+        writeShort(out, height);
+        out.write(0);
+        out.write(0);
+        out.write(0);
+        // NETSCAPE2.0 application extension: loop count 0
+        out.write(0x21);
+        out.write(0xFF);
+        out.write(11);
+        out.writeBytes(new byte[] { 'N', 'E', 'T', 'S', 'C', 'A', 'P', 'E', '2', '.', '0' });
+        out.write(3);
+        out.write(1);
+        writeShort(out, 0);
+        out.write(0);
+        return out.toByteArray();
+    }
+
+    /** The graphic control extension that goes in front of a frame, holding its delay. */
+    public static byte[] delay(int centiseconds) {
+        int delay = Math.max(2, Math.min(0xFFFF, centiseconds));
+        return new byte[] { 0x21, (byte) 0xF9, 4, 0, (byte) delay, (byte) (delay >> 8), 0, 0 };
+    }
+
+    public static byte[] trailer() {
+        return new byte[] { 0x3B };
+    }
+
+    /**
+     * One frame: the image descriptor, its palette and the LZW data. {@code rgba} holds the pixels bottom row first,
+     * as glReadPixels leaves them, from position 0; it is only read.
+     */
+    public static byte[] image(ByteBuffer rgba, int width, int height) {
+        int pixelCount = width * height;
+        short[] colors = new short[pixelCount];
+        int[] counts = new int[1 << 15];
+        for (int y = 0; y < height; y++) {
+            int row = (height - 1 - y) * width * 4;
+            for (int x = 0; x < width; x++) {
+                int at = row + x * 4;
+                int color = (rgba.get(at) & 0xF8) << 7 | (rgba.get(at + 1) & 0xF8) << 2 | (rgba.get(at + 2) & 0xFF) >> 3;
+                colors[y * width + x] = (short) color;
+                counts[color]++;
+            }
+        }
+
+        // most common first; the count is in the high bits and the colour in the low 15
+        int used = 0;
+        long[] ranked = new long[1 << 15];
+        for (int color = 0; color < counts.length; color++) {
+            if (counts[color] > 0) ranked[used++] = (long) counts[color] << 15 | color;
+        }
+        Arrays.sort(ranked, 0, used);
+        int paletteSize = Math.min(256, used);
+        int[] palette = new int[256];
+        short[] lookup = new short[1 << 15];
+        Arrays.fill(lookup, (short) -1);
+        for (int i = 0; i < paletteSize; i++) {
+            int color = (int) (ranked[used - 1 - i] & 0x7FFF);
+            palette[i] = color;
+            lookup[color] = (short) i;
+        }
+        byte[] indices = new byte[pixelCount];
+        for (int i = 0; i < pixelCount; i++) {
+            int color = colors[i];
+            if (lookup[color] < 0) lookup[color] = (short) nearest(color, palette, paletteSize);
+            indices[i] = (byte) lookup[color];
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(pixelCount / 2 + 1024);
+        out.write(0x2C);
+        writeShort(out, 0);
+        writeShort(out, 0);
+        writeShort(out, width);
+        writeShort(out, height);
+        // local palette of 2^(7+1) entries
+        out.write(0x80 | 7);
+        for (int i = 0; i < 256; i++) {
+            int color = palette[i];
+            out.write(expand(color >> 10));
+            out.write(expand(color >> 5));
+            out.write(expand(color));
+        }
+        new Lzw(out).encode(indices);
+        return out.toByteArray();
+    }
+
+    private static int nearest(int color, int[] palette, int paletteSize) {
+        int r = color >> 10, g = color >> 5 & 0x1F, b = color & 0x1F;
+        int best = 0, bestDistance = Integer.MAX_VALUE;
+        for (int i = 0; i < paletteSize; i++) {
+            int p = palette[i];
+            int dr = (p >> 10) - r, dg = (p >> 5 & 0x1F) - g, db = (p & 0x1F) - b;
+            // green weighs most to the eye
+            int distance = 2 * dr * dr + 4 * dg * dg + db * db;
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /** 5 bits to 8, so full white stays full white. */
+    private static int expand(int channel) {
+        channel &= 0x1F;
+        return channel << 3 | channel >> 2;
+    }
+
+    private static void writeShort(ByteArrayOutputStream out, int value) {
+        out.write(value & 0xFF);
+        out.write(value >> 8 & 0xFF);
+    }
+
+    /** Variable-width LZW in 255-byte sub-blocks, laid out like the classic compress/GIFEncoder implementation. */
+    private static final class Lzw {
+        private final ByteArrayOutputStream out;
+        private final int[] hashes = new int[HASH_SIZE];
+        private final int[] codes = new int[HASH_SIZE];
+        private final byte[] block = new byte[255];
+        private int blockSize;
+        private int bits, bitCount;
+        private int codeSize = 9, maxCode = (1 << 9) - 1;
+        private int nextCode = END + 1;
+        private boolean clearing;
+
+        Lzw(ByteArrayOutputStream out) {
+            this.out = out;
+        }
+
+        void encode(byte[] indices) {
+            out.write(8);
+            Arrays.fill(hashes, -1);
+            output(CLEAR);
+            int prefix = indices[0] & 0xFF;
+            for (int p = 1; p < indices.length; p++) {
+                int c = indices[p] & 0xFF;
+                int key = (c << MAX_BITS) + prefix;
+                int i = (c << HASH_SHIFT) ^ prefix;
+                if (hashes[i] == key) {
+                    prefix = codes[i];
+                    continue;
+                }
+                boolean found = false;
+                if (hashes[i] >= 0) {
+                    int step = i == 0 ? 1 : HASH_SIZE - i;
+                    do {
+                        i -= step;
+                        if (i < 0) i += HASH_SIZE;
+                        if (hashes[i] == key) {
+                            found = true;
+                            break;
+                        }
+                    } while (hashes[i] >= 0);
+                }
+                if (found) {
+                    prefix = codes[i];
+                    continue;
+                }
+                output(prefix);
+                prefix = c;
+                if (nextCode < MAX_CODES) {
+                    codes[i] = nextCode++;
+                    hashes[i] = key;
+                } else {
+                    // the table is full; start a fresh one rather than keep coding with a stale one
+                    Arrays.fill(hashes, -1);
+                    nextCode = END + 1;
+                    clearing = true;
+                    output(CLEAR);
+                }
+            }
+            output(prefix);
+            output(END);
+            if (bitCount > 0) writeByte(bits & 0xFF);
+            flushBlock();
+            out.write(0);
+        }
+
+        private void output(int code) {
+            bits |= code << bitCount;
+            bitCount += codeSize;
+            while (bitCount >= 8) {
+                writeByte(bits & 0xFF);
+                bits >>>= 8;
+                bitCount -= 8;
+            }
+            // the decoder widens its codes as its table passes each power of two, one code behind this side
+            if (clearing) {
+                codeSize = 9;
+                maxCode = (1 << 9) - 1;
+                clearing = false;
+            } else if (nextCode > maxCode) {
+                codeSize++;
+                maxCode = codeSize == MAX_BITS ? MAX_CODES : (1 << codeSize) - 1;
+            }
+        }
+
+        private void writeByte(int b) {
+            block[blockSize++] = (byte) b;
+            if (blockSize == block.length) flushBlock();
+        }
+
+        private void flushBlock() {
+            if (blockSize == 0) return;
+            out.write(blockSize);
+            out.write(block, 0, blockSize);
+            blockSize = 0;
+        }
+    }
+}
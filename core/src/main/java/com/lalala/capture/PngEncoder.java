@@ -0,0 +1,84 @@
+package com.lalala.capture;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes one captured frame as an RGB PNG, without going through AWT, which doesn't get along with GLFW on macOS.
+ * Rows use the Sub filter and the fastest deflate level: capture wants throughput, and the flat colours of the game
+ * compress well anyway.
+ */
+public final class PngEncoder {
+    private static final byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+    private static final int FILTER_SUB = 1;
+
+    private PngEncoder() {
+    }
+
+    /** {@code rgba} holds the pixels bottom row first, as glReadPixels leaves them, from position 0; it is only read. */
+    public static byte[] encode(ByteBuffer rgba, int width, int height) {
+        int stride = width * 3 + 1;
+        byte[] raw = new byte[stride * height];
+        for (int y = 0; y < height; y++) {
+            int from = (height - 1 - y) * width * 4;
+            int to = y * stride;
+            raw[to] = FILTER_SUB;
+            int r = 0, g = 0, b = 0;
+            for (int x = 0; x < width; x++) {
+                int at = from + x * 4;
+                byte nr = rgba.get(at), ng = rgba.get(at + 1), nb = rgba.get(at + 2);
+                raw[to + 1 + x * 3] = (byte) (nr - r);
+                raw[to + 2 + x * 3] = (byte) (ng - g);
+                raw[to + 3 + x * 3] = (byte) (nb - b);
+                r = nr;
+                g = ng;
+                b = nb;
+            }
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 4 + 256);
+        out.writeBytes(SIGNATURE);
+        byte[] header = new byte[13];
+        ByteBuffer.wrap(header).putInt(width).putInt(height).put((byte) 8).put((byte) 2);
+        chunk(out, "IHDR", header, header.length);
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            byte[] compressed = new byte[raw.length / 2 + 1024];
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == compressed.length) compressed = Arrays.copyOf(compressed, length * 2);
+                length += deflater.deflate(compressed, length, compressed.length - length);
+            }
+            chunk(out, "IDAT", compressed, length);
+        } finally {
+            deflater.end();
+        }
+        chunk(out, "IEND", new byte[0], 0);
+        return out.toByteArray();
+    }
+
+    private static void chunk(ByteArrayOutputStream out, String type, byte[] data, int length) {
+        byte[] name = type.getBytes(StandardCharsets.US_ASCII);
+        writeInt(out, length);
+        out.writeBytes(name);
+        out.write(data, 0, length);
+        CRC32 crc = new CRC32();
+        crc.update(name);
+        crc.update(data, 0, length);
+        writeInt(out, (int) crc.getValue());
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16 & 0xFF);
+        out.write(value >>> 8 & 0xFF);
+        out.write(value & 0xFF);
+    }
+}
@@ -0,0 +1,135 @@
+package com.lalala.events;
+
+import com.lalala.Boss;
+
+/**
+ * Hits, deaths and state changes from the simulation, for whatever reacts to them: effects, telemetry, spectators.
+ * The simulation publishes into a preallocated ring of {@link GameEvent}s; each {@link Subscription} reads the ring
+ * at its own pace, on the thread that polls it. Publishing fills a slot in place and never allocates, locks or
+ * waits. If the slowest subscription is a whole ring behind, the event is dropped and counted instead, the same way
+ * the input queue drops rather than stall its producer. So nothing that has to happen may hang on an event: the end
+ * of the fight is read from {@link com.lalala.RenderState#outcome}.
+ * <p>
+ * One thread publishes. Each subscription is polled by one thread at a time, which need not be the publisher.
+ */
+public class EventBus {
+    private static final Subscription[] NONE = new Subscription[0];
+
+    private final int mask;
+    private final GameEvent[] ring;
+    // written only by the publisher; the volatile write publishes the slot contents to the subscriptions
+    private volatile long head;
+    private volatile Subscription[] subscriptions = NONE;
+    // the lowest subscription cursor the publisher last saw; only rechecked when the ring looks full
+    private long gate;
+    private int tick;
+    private float time;
+    private int dropped;
+    private boolean muted;
+
+    /** @param capacity events held for the slowest subscription; rounded up to a power of two */
+    public EventBus(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        mask = size - 1;
+        ring = new GameEvent[size];
+        for (int i = 0; i < size; i++) {
+            ring[i] = new GameEvent();
+        }
+    }
+
+    /** Starts delivering events published from now on to {@code listener}. Call from the publisher's thread or before it starts. */
+    public synchronized Subscription subscribe(EventListener listener) {
+        Subscription subscription = new Subscription(listener, head);
+        Subscription[] current = subscriptions;
+        Subscription[] grown = new Subscription[current.length + 1];
+        System.arraycopy(current, 0, grown, 0, current.length);
+        grown[current.length] = subscription;
+        subscriptions = grown;
+        return subscription;
+    }
+
+    public synchronized void unsubscribe(Subscription subscription) {
+        Subscription[] current = subscriptions;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] != subscription) continue;
+            Subscription[] shrunk = new Subscription[current.length - 1];
+            System.arraycopy(current, 0, shrunk, 0, i);
+            System.arraycopy(current, i + 1, shrunk, i, current.length - i - 1);
+            subscriptions = shrunk.length == 0 ? NONE : shrunk;
+            return;
+        }
+    }
+
+    /** Stamps the events published from now on with this tick and fight time. Publisher side. */
+    public void setTick(int tick, float time) {
+        this.tick = tick;
+        this.time = time;
+    }
+
+    /**
+     * While muted, published events go nowhere. A rollback mutes the bus while it plays ticks again, so the hits
+     * already shown for them aren't shown twice. Publisher side.
+     */
+    public void setMuted(boolean muted) {
+        this.muted = muted;
+    }
+
+    /** Publisher side. Drops the event if the slowest subscription has not read the slot it would go into. */
+    public void publish(GameEvent.Type type, float x, float y, int value, Boss.State bossState) {
+        if (muted) return;
+        long h = head;
+        if (h - gate > mask) {
+            gate = slowestCursor(h);
+            if (h - gate > mask) {
+                dropped++;
+                return;
+            }
+        }
+        ring[(int) h & mask].set(type, tick, time, x, y, value, bossState);
+        head = h + 1;
+    }
+
+    public void publish(GameEvent.Type type, float x, float y, int value) {
+        publish(type, x, y, value, null);
+    }
+
+    private long slowestCursor(long h) {
+        long slowest = h;
+        Subscription[] current = subscriptions;
+        for (int i = 0; i < current.length; i++) {
+            slowest = Math.min(slowest, current[i].cursor);
+        }
+        return slowest;
+    }
+
+    /** Events dropped because a subscription fell a whole ring behind; read on the publisher's thread. */
+    public int getDropped() {
+        return dropped;
+    }
+
+    /** One reader of the ring, with its own position in it. */
+    public final class Subscription {
+        private final EventListener listener;
+        // next event to deliver; written only by the polling thread, read by the publisher to know what is free
+        private volatile long cursor;
+
+        private Subscription(EventListener listener, long cursor) {
+            this.listener = listener;
+            this.cursor = cursor;
+        }
+
+        /** Hands every event published since the last poll to the listener, in order. Returns how many there were. */
+        public int poll() {
+            long c = cursor;
+            long h = head;
+            int count = (int) (h - c);
+            while (c < h) {
+                listener.onEvent(ring[(int) c & mask]);
+                c++;
+            }
+            // only now may the publisher reuse the slots
+            cursor = c;
+            return count;
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package com.lalala.events;
+
+/** Receives events from an {@link EventBus.Subscription}, on whichever thread polls it. */
+public interface EventListener {
+    void onEvent(GameEvent event);
+}
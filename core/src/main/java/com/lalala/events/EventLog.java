@@ -0,0 +1,57 @@
+package com.lalala.events;
+
+import com.lalala.log.Log;
+import com.lalala.log.LogCategory;
+import com.lalala.log.LogLevel;
+import com.lalala.log.LogRecord;
+
+/**
+ * Telemetry: hands hits, deaths and the fight's end to the game log at INFO, and boss state changes at DEBUG.
+ * Nothing is built for a level that is switched off.
+ */
+public class EventLog implements EventListener {
+    @Override
+    public void onEvent(GameEvent event) {
+        LogRecord record;
+        switch (event.type) {
+            case PLAYER_HIT:
+                record = begin(LogCategory.PLAYER, LogLevel.INFO, event);
+                if (record != null) record.append("hit, HP ").append(event.value).commit();
+                break;
+            case PLAYER_DIED:
+                record = begin(LogCategory.PLAYER, LogLevel.INFO, event);
+                if (record != null) record.append("died").commit();
+                break;
+            case BOSS_HIT:
+                record = begin(LogCategory.BOSS, LogLevel.INFO, event);
+                if (record != null) record.append("hit, HP ").append(event.value).commit();
+                break;
+            case BOSS_DIED:
+                record = begin(LogCategory.BOSS, LogLevel.INFO, event);
+                if (record != null) record.append("died").commit();
+                break;
+            case BOSS_STATE:
+                record = begin(LogCategory.BOSS, LogLevel.DEBUG, event);
+                if (record != null) record.append("state ").append(event.bossState).commit();
+                break;
+            case FIGHT_WON:
+            case FIGHT_LOST:
+                record = begin(LogCategory.PLAYER, LogLevel.INFO, event);
+                if (record != null) {
+                    record.append(event.type == GameEvent.Type.FIGHT_WON ? "won" : "lost").append(" after ")
+                        .append(event.time, 2).append(" s").commit();
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /** Starts a record with where and when the event happened, or returns null if the level is off. */
+    private static LogRecord begin(LogCategory category, LogLevel level, GameEvent event) {
+        LogRecord record = Log.begin(category, level);
+        if (record == null) return null;
+        return record.append("tick ").append(event.tick).append(" at ").append(event.x, 2).append(',')
+            .append(event.y, 2).append(": ");
+    }
+}
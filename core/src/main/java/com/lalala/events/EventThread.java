@@ -0,0 +1,54 @@
+package com.lalala.events;
+
+import com.badlogic.gdx.utils.Disposable;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Polls subscriptions on a daemon thread of its own, for listeners that may be slow, such as logging, and must
+ * never hold up the simulation or the GL thread. Sleeps a millisecond whenever a poll comes back empty.
+ */
+public class EventThread implements Disposable {
+    private static final long IDLE_NANOS = 1_000_000L;
+
+    private final EventBus.Subscription[] subscriptions;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    public EventThread(String name, EventBus.Subscription... subscriptions) {
+        this.subscriptions = subscriptions;
+        thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void run() {
+        while (running) {
+            if (pollAll() == 0) {
+                LockSupport.parkNanos(IDLE_NANOS);
+            }
+        }
+        // whatever was published before the stop still gets delivered
+        pollAll();
+    }
+
+    private int pollAll() {
+        int count = 0;
+        for (EventBus.Subscription subscription : subscriptions) {
+            count += subscription.poll();
+        }
+        return count;
+    }
+
+    /** Delivers what is left and stops the thread. */
+    @Override
+    public void dispose() {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.lalala.events;
+
+import com.lalala.Boss;
+
+/**
+ * One slot of the {@link EventBus} ring. Slots are preallocated and filled in place, so a listener may only read
+ * an event while it is being handed one; whatever it needs later has to be copied out.
+ */
+public final class GameEvent {
+    public enum Type {
+        /** The player took a hit; {@link #value} is the health left. */
+        PLAYER_HIT,
+        /** The player's health ran out. */
+        PLAYER_DIED,
+        /** A boss took a hit; {@link #value} is the health left. */
+        BOSS_HIT,
+        /** A boss's health ran out. */
+        BOSS_DIED,
+        /** A boss moved to another state, given in {@link #bossState}. */
+        BOSS_STATE,
+        /** The last boss is dead. */
+        FIGHT_WON,
+        /** The player is dead. */
+        FIGHT_LOST
+    }
+
+    public Type type;
+    /** Simulation tick the event happened on, counted from the start of the fight. */
+    public int tick;
+    /** Fight time in seconds when it happened. */
+    public float time;
+    /** Where it happened, in world units. */
+    public float x, y;
+    public int value;
+    public Boss.State bossState;
+
+    void set(Type type, int tick, float time, float x, float y, int value, Boss.State bossState) {
+        this.type = type;
+        this.tick = tick;
+        this.time = time;
+        this.x = x;
+        this.y = y;
+        this.value = value;
+        this.bossState = bossState;
+    }
+}
@@ -0,0 +1,152 @@
+package com.lalala.input;
+
+import com.badlogic.gdx.controllers.Controller;
+import com.badlogic.gdx.controllers.ControllerAdapter;
+import com.badlogic.gdx.controllers.ControllerMapping;
+import com.badlogic.gdx.utils.TimeUtils;
+
+/**
+ * Maps gamepads onto the same actions as the keyboard: A jumps, X attacks, B or the right shoulder
+ * dashes, the d-pad or left stick moves and aims down, Start pauses. Events go straight into the
+ * {@link InputQueue} the tick drains, so a pad press is seen by the first tick after it, like a key.
+ * Each connected pad gets its own device slot so latency can be told apart per device.
+ * <p>
+ * The stick uses a radial deadzone and separate press and release thresholds, so resting noise and a
+ * thumb hovering on the edge don't turn into a stream of presses.
+ */
+public class ControllerInput extends ControllerAdapter {
+    private static final float DEADZONE = 0.25f;
+    private static final float PRESS_THRESHOLD = 0.5f;
+    private static final float RELEASE_THRESHOLD = 0.35f;
+
+    private final InputQueue queue;
+    private final Controller[] slots = new Controller[PlayerInput.MAX_DEVICES];
+    private final float[] stickX = new float[PlayerInput.MAX_DEVICES];
+    private final float[] stickY = new float[PlayerInput.MAX_DEVICES];
+    // actions currently held by the stick, one bit per InputAction ordinal
+    private final int[] stickHeld = new int[PlayerInput.MAX_DEVICES];
+    private boolean pauseRequested;
+
+    public ControllerInput(InputQueue queue) {
+        this.queue = queue;
+    }
+
+    @Override
+    public void connected(Controller controller) {
+        slotOf(controller);
+    }
+
+    @Override
+    public void disconnected(Controller controller) {
+        for (int device = 1; device < slots.length; device++) {
+            if (slots[device] == controller) {
+                // release whatever the pad was holding so the player doesn't keep walking
+                long now = TimeUtils.nanoTime();
+                for (InputAction action : InputAction.VALUES) {
+                    queue.offer(action, false, now, device);
+                }
+                slots[device] = null;
+                stickX[device] = stickY[device] = 0f;
+                stickHeld[device] = 0;
+            }
+        }
+    }
+
+    @Override
+    public boolean buttonDown(Controller controller, int buttonCode) {
+        return button(controller, buttonCode, true);
+    }
+
+    @Override
+    public boolean buttonUp(Controller controller, int buttonCode) {
+        return button(controller, buttonCode, false);
+    }
+
+    private boolean button(Controller controller, int buttonCode, boolean down) {
+        ControllerMapping mapping = controller.getMapping();
+        if (buttonCode == mapping.buttonStart) {
+            pauseRequested |= down;
+            return true;
+        }
+        InputAction action = map(mapping, buttonCode);
+        if (action == null) return false;
+        int device = slotOf(controller);
+        if (device < 0) return false;
+        queue.offer(action, down, TimeUtils.nanoTime(), device);
+        return true;
+    }
+
+    private static InputAction map(ControllerMapping mapping, int buttonCode) {
+        if (buttonCode == mapping.buttonA) return InputAction.JUMP;
+        if (buttonCode == mapping.buttonX) return InputAction.ATTACK;
+        if (buttonCode == mapping.buttonB || buttonCode == mapping.buttonR1) return InputAction.DASH;
+        if (buttonCode == mapping.buttonDpadLeft) return InputAction.LEFT;
+        if (buttonCode == mapping.buttonDpadRight) return InputAction.RIGHT;
+        if (buttonCode == mapping.buttonDpadDown) return InputAction.DOWN;
+        return null;
+    }
+
+    @Override
+    public boolean axisMoved(Controller controller, int axisCode, float value) {
+        ControllerMapping mapping = controller.getMapping();
+        int device = slotOf(controller);
+        if (device < 0) return false;
+        if (axisCode == mapping.axisLeftX) {
+            stickX[device] = value;
+        } else if (axisCode == mapping.axisLeftY) {
+            stickY[device] = value;
+        } else {
+            return false;
+        }
+        updateStick(device);
+        return true;
+    }
+
+    private void updateStick(int device) {
+        float x = stickX[device], y = stickY[device];
+        float magnitude = (float) Math.sqrt(x * x + y * y);
+        if (magnitude < DEADZONE) {
+            x = y = 0f;
+        } else {
+            // rescale so the usable range starts at zero just outside the deadzone
+            float scale = Math.min(1f, (magnitude - DEADZONE) / (1f - DEADZONE)) / magnitude;
+            x *= scale;
+            y *= scale;
+        }
+        long now = TimeUtils.nanoTime();
+        stickDirection(device, InputAction.LEFT, -x, now);
+        stickDirection(device, InputAction.RIGHT, x, now);
+        // gdx-controllers reports stick down as positive y
+        stickDirection(device, InputAction.DOWN, y, now);
+    }
+
+    private void stickDirection(int device, InputAction action, float amount, long now) {
+        int bit = 1 << action.ordinal();
+        boolean held = (stickHeld[device] & bit) != 0;
+        if (!held && amount >= PRESS_THRESHOLD) {
+            stickHeld[device] |= bit;
+            queue.offer(action, true, now, device);
+        } else if (held && amount < RELEASE_THRESHOLD) {
+            stickHeld[device] &= ~bit;
+            queue.offer(action, false, now, device);
+        }
+    }
+
+    /** Returns whether Start was pressed since the last call. */
+    public boolean consumePauseRequest() {
+        boolean requested = pauseRequested;
+        pauseRequested = false;
+        return requested;
+    }
+
+    /** Device slot for {@code controller}, assigned on first sight; -1 once every slot is taken. */
+    private int slotOf(Controller controller) {
+        int free = -1;
+        for (int device = 1; device < slots.length; device++) {
+            if (slots[device] == controller) return device;
+            if (free < 0 && slots[device] == null) free = device;
+        }
+        if (free > 0) slots[free] = controller;
+        return free;
+    }
+}
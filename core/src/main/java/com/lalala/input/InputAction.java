@@ -0,0 +1,8 @@
+package com.lalala.input;
+
+/** What the player can ask for, independent of the device that asked. */
+public enum InputAction {
+    LEFT, RIGHT, DOWN, JUMP, DASH, ATTACK;
+
+    static final InputAction[] VALUES = values();
+}
@@ -0,0 +1,75 @@
+package com.lalala.input;
+
+/**
+ * Lock-free single-producer, single-consumer ring of timestamped press and release events.
+ * Input sources write on the GL thread; the fixed tick drains on whichever thread runs the simulation.
+ * A full ring drops the new event rather than block the GL thread.
+ */
+public class InputQueue {
+    private final int mask;
+    private final InputAction[] actions;
+    private final boolean[] downs;
+    private final long[] times;
+    private final byte[] devices;
+
+    // head is written only by the producer and tail only by the consumer; the volatile
+    // write publishes the slot contents to the other side
+    private volatile long head;
+    private volatile long tail;
+    private int dropped;
+
+    /** @param capacity number of events held between drains; rounded up to a power of two */
+    public InputQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        mask = size - 1;
+        actions = new InputAction[size];
+        downs = new boolean[size];
+        times = new long[size];
+        devices = new byte[size];
+    }
+
+    /**
+     * Producer side. Returns false if the ring is full and the event was dropped.
+     * @param device {@link PlayerInput#KEYBOARD} or a controller slot below {@link PlayerInput#MAX_DEVICES}
+     */
+    public boolean offer(InputAction action, boolean down, long timeNanos, int device) {
+        long h = head;
+        if (h - tail > mask) {
+            dropped++;
+            return false;
+        }
+        int slot = (int) h & mask;
+        actions[slot] = action;
+        downs[slot] = down;
+        times[slot] = timeNanos;
+        devices[slot] = (byte) device;
+        head = h + 1;
+        return true;
+    }
+
+    /** Consumer side. Applies every event stamped at or before {@code untilNanos}, in order. */
+    public void drainTo(PlayerInput input, long untilNanos) {
+        drainTo(input, untilNanos, null, 0);
+    }
+
+    /** As {@link #drainTo(PlayerInput, long)}, also adding each applied event to {@code recording}, if any, under {@code tick}. */
+    public void drainTo(PlayerInput input, long untilNanos, InputRecording recording, int tick) {
+        long t = tail;
+        long h = head;
+        while (t < h) {
+            int slot = (int) t & mask;
+            if (times[slot] > untilNanos) break;
+            input.apply(actions[slot], downs[slot], times[slot], devices[slot]);
+            if (recording != null) {
+                recording.add(tick, devices[slot], actions[slot], downs[slot]);
+            }
+            t++;
+        }
+        tail = t;
+    }
+
+    /** Events dropped because the consumer fell behind; read on the producer thread. */
+    public int getDropped() {
+        return dropped;
+    }
+}
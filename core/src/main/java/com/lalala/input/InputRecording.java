@@ -0,0 +1,127 @@
+package com.lalala.input;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.BooleanArray;
+import com.badlogic.gdx.utils.ByteArray;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.TimeUtils;
+
+/**
+ * The press and release events of one fight, by the simulation tick that applied them, plus the seed the
+ * boss brains drew from and the level it was played on. Replaying the events tick for tick with the same
+ * seed plays the same fight again, which is what the timedemo renders.
+ * <p>
+ * Stored as text, one entry per line: {@code seed N}, {@code level FILE}, {@code ticks N} for the length
+ * of the fight, then one {@code TICK DEVICE ACTION down|up} line per event, in tick order.
+ */
+public class InputRecording {
+    private final long seed;
+    private final String levelFile;
+    private final IntArray ticks = new IntArray();
+    private final ByteArray devices = new ByteArray();
+    private final Array<InputAction> actions = new Array<>();
+    private final BooleanArray downs = new BooleanArray();
+    private int length;
+    // next event to replay
+    private int cursor;
+
+    public InputRecording(long seed, String levelFile) {
+        this.seed = seed;
+        this.levelFile = levelFile;
+    }
+
+    public static InputRecording read(FileHandle file) {
+        long seed = 0L;
+        String levelFile = null;
+        int length = 0;
+        InputRecording recording = null;
+        String[] lines = file.readString("UTF-8").split("\r?\n");
+        for (int n = 0; n < lines.length; n++) {
+            String line = lines[n].trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] parts = line.split("\\s+");
+            try {
+                switch (parts[0]) {
+                    case "seed":
+                        seed = Long.parseLong(parts[1]);
+                        break;
+                    case "level":
+                        levelFile = parts[1];
+                        break;
+                    case "ticks":
+                        length = Integer.parseInt(parts[1]);
+                        break;
+                    default:
+                        if (recording == null) {
+                            if (levelFile == null) throw new GdxRuntimeException("no level before the first event");
+                            recording = new InputRecording(seed, levelFile);
+                        }
+                        recording.add(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]),
+                            InputAction.valueOf(parts[2]), parts[3].equals("down"));
+                }
+            } catch (RuntimeException e) {
+                throw new GdxRuntimeException(file.path() + ":" + (n + 1) + ": can't read \"" + line + "\"", e);
+            }
+        }
+        if (recording == null) {
+            if (levelFile == null) throw new GdxRuntimeException(file.path() + ": no level");
+            recording = new InputRecording(seed, levelFile);
+        }
+        recording.length = Math.max(recording.length, length);
+        return recording;
+    }
+
+    public void write(FileHandle file) {
+        StringBuilder out = new StringBuilder(32 * ticks.size + 64);
+        out.append("seed ").append(seed).append('\n');
+        out.append("level ").append(levelFile).append('\n');
+        out.append("ticks ").append(length).append('\n');
+        for (int i = 0; i < ticks.size; i++) {
+            out.append(ticks.get(i)).append(' ').append(devices.get(i)).append(' ').append(actions.get(i).name())
+                .append(' ').append(downs.get(i) ? "down" : "up").append('\n');
+        }
+        file.writeString(out.toString(), false, "UTF-8");
+    }
+
+    /** Records one event applied on {@code tick}; ticks must not go backwards. */
+    public void add(int tick, int device, InputAction action, boolean down) {
+        ticks.add(tick);
+        devices.add((byte) device);
+        actions.add(action);
+        downs.add(down);
+        length = Math.max(length, tick + 1);
+    }
+
+    /** Marks the fight as having lasted at least {@code tick + 1} ticks, events or not. */
+    public void endTick(int tick) {
+        length = Math.max(length, tick + 1);
+    }
+
+    /** Applies the events recorded for {@code tick} to {@code input}. Ticks are replayed in order, from 0. */
+    public void replay(PlayerInput input, int tick) {
+        long now = TimeUtils.nanoTime();
+        while (cursor < ticks.size && ticks.get(cursor) <= tick) {
+            input.apply(actions.get(cursor), downs.get(cursor), now, devices.get(cursor));
+            cursor++;
+        }
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public String getLevelFile() {
+        return levelFile;
+    }
+
+    /** Length of the recorded fight in ticks. */
+    public int getLength() {
+        return length;
+    }
+
+    public int getEventCount() {
+        return ticks.size;
+    }
+}
@@ -0,0 +1,48 @@
+package com.lalala.input;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Input;
+import com.badlogic.gdx.InputAdapter;
+
+/**
+ * Turns key events into actions on an {@link InputQueue}, stamped with the time the backend received
+ * them rather than the time the frame got around to looking.
+ * A/D move, S aims the attack down, W or K jumps, L dashes and J attacks.
+ */
+public class KeyboardInput extends InputAdapter {
+    private final InputQueue queue;
+
+    public KeyboardInput(InputQueue queue) {
+        this.queue = queue;
+    }
+
+    @Override
+    public boolean keyDown(int keycode) {
+        return post(keycode, true);
+    }
+
+    @Override
+    public boolean keyUp(int keycode) {
+        return post(keycode, false);
+    }
+
+    private boolean post(int keycode, boolean down) {
+        InputAction action = map(keycode);
+        if (action == null) return false;
+        queue.offer(action, down, Gdx.input.getCurrentEventTime(), PlayerInput.KEYBOARD);
+        return true;
+    }
+
+    private static InputAction map(int keycode) {
+        switch (keycode) {
+            case Input.Keys.A: return InputAction.LEFT;
+            case Input.Keys.D: return InputAction.RIGHT;
+            case Input.Keys.S: return InputAction.DOWN;
+            case Input.Keys.W:
+            case Input.Keys.K: return InputAction.JUMP;
+            case Input.Keys.L: return InputAction.DASH;
+            case Input.Keys.J: return InputAction.ATTACK;
+            default: return null;
+        }
+    }
+}
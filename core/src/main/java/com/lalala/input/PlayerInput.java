@@ -0,0 +1,153 @@
+package com.lalala.input;
+
+import com.badlogic.gdx.utils.TimeUtils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The action model the player reads each tick: which actions are held, and which presses are still
+ * waiting to be acted on. A press stays buffered until the player consumes it or it gets older than
+ * the window the player asks with, so a press that lands a little early still counts, and a press and
+ * release between two ticks are never lost. Consuming a press records how long it waited, per device.
+ */
+public class PlayerInput {
+    /** Device slot of the keyboard; controllers use the slots after it. */
+    public static final int KEYBOARD = 0;
+    public static final int MAX_DEVICES = 8;
+
+    private static final int COUNT = InputAction.VALUES.length;
+    /** Size of what {@link #write} writes. */
+    public static final int STATE_BYTES = COUNT * (1 + 4 + 4);
+
+    // one bit per device, so releasing a key doesn't cancel the same action held on a pad
+    private final int[] heldBy = new int[COUNT];
+    private final int[] pending = new int[COUNT];
+    private final float[] pendingAge = new float[COUNT];
+    private final long[] firstPressTime = new long[COUNT];
+    private final long[] lastPressTime = new long[COUNT];
+    private final int[] firstPressDevice = new int[COUNT];
+    private final int[] lastPressDevice = new int[COUNT];
+
+    private final int[] latencyCount = new int[MAX_DEVICES];
+    private final long[] latencyTotalNanos = new long[MAX_DEVICES];
+    private final long[] latencyMaxNanos = new long[MAX_DEVICES];
+    private boolean latencyCounted = true;
+
+    /** Applies one press or release that happened at {@code timeNanos} on {@code device}. */
+    public void apply(InputAction action, boolean down, long timeNanos, int device) {
+        int i = action.ordinal();
+        int bit = 1 << device;
+        if (down) {
+            if ((heldBy[i] & bit) != 0) return;
+            heldBy[i] |= bit;
+            if (pending[i]++ == 0) {
+                pendingAge[i] = 0f;
+                firstPressTime[i] = timeNanos;
+                firstPressDevice[i] = device;
+            }
+            lastPressTime[i] = timeNanos;
+            lastPressDevice[i] = device;
+        } else {
+            heldBy[i] &= ~bit;
+        }
+    }
+
+    /** Convenience for scripted input: presses or releases {@code action} on the keyboard slot now. */
+    public void set(InputAction action, boolean down) {
+        apply(action, down, TimeUtils.nanoTime(), KEYBOARD);
+    }
+
+    public boolean isHeld(InputAction action) {
+        return heldBy[action.ordinal()] != 0;
+    }
+
+    /** True if {@code action} was pressed no more than {@code window} seconds of game time ago and not yet consumed. */
+    public boolean isBuffered(InputAction action, float window) {
+        int i = action.ordinal();
+        if (pending[i] > 0 && pendingAge[i] > window) {
+            pending[i] = 0;
+        }
+        return pending[i] > 0;
+    }
+
+    /** Marks the oldest buffered press of {@code action} as acted on. */
+    public void consume(InputAction action) {
+        int i = action.ordinal();
+        if (pending[i] == 0) return;
+        if (latencyCounted) {
+            int device = firstPressDevice[i];
+            long latency = TimeUtils.nanoTime() - firstPressTime[i];
+            latencyCount[device]++;
+            latencyTotalNanos[device] += latency;
+            latencyMaxNanos[device] = Math.max(latencyMaxNanos[device], latency);
+        }
+        // a further press waiting behind this one is only known by the latest press
+        if (--pending[i] > 0) {
+            pendingAge[i] = 0f;
+            firstPressTime[i] = lastPressTime[i];
+            firstPressDevice[i] = lastPressDevice[i];
+        }
+    }
+
+    /** Ages buffered presses by one tick. */
+    public void endTick(float delta) {
+        for (int i = 0; i < COUNT; i++) {
+            if (pending[i] > 0) pendingAge[i] += delta;
+        }
+    }
+
+    /** Makes this hold the same held and buffered actions as {@code other}; the latency counters are left alone. */
+    public void copyFrom(PlayerInput other) {
+        System.arraycopy(other.heldBy, 0, heldBy, 0, COUNT);
+        System.arraycopy(other.pending, 0, pending, 0, COUNT);
+        System.arraycopy(other.pendingAge, 0, pendingAge, 0, COUNT);
+        System.arraycopy(other.firstPressTime, 0, firstPressTime, 0, COUNT);
+        System.arraycopy(other.lastPressTime, 0, lastPressTime, 0, COUNT);
+        System.arraycopy(other.firstPressDevice, 0, firstPressDevice, 0, COUNT);
+        System.arraycopy(other.lastPressDevice, 0, lastPressDevice, 0, COUNT);
+    }
+
+    /**
+     * Writes the held and buffered actions, for another machine to take over with {@link #read}. The press times and
+     * devices are left out: past the buffer age they only feed the latency counters.
+     */
+    public void write(ByteBuffer out) {
+        for (int i = 0; i < COUNT; i++) {
+            out.put((byte) heldBy[i]).putInt(pending[i]).putFloat(pendingAge[i]);
+        }
+    }
+
+    public void read(ByteBuffer in) {
+        for (int i = 0; i < COUNT; i++) {
+            heldBy[i] = in.get() & 0xFF;
+            pending[i] = in.getInt();
+            pendingAge[i] = in.getFloat();
+        }
+    }
+
+    /** Drops every buffered press but keeps held state, e.g. for input that arrived while paused. */
+    public void clearPresses() {
+        for (int i = 0; i < COUNT; i++) {
+            pending[i] = 0;
+        }
+    }
+
+    /**
+     * Whether consuming a press records its latency; on by default. Turn it off for input whose press times are not
+     * on the {@link TimeUtils#nanoTime()} clock, such as a fight's tick count.
+     */
+    public void setLatencyCounted(boolean counted) {
+        latencyCounted = counted;
+    }
+
+    /** Copies the per-device latency recorded since the last call into the given arrays and starts over. */
+    public void drainLatency(int[] count, long[] total, long[] max) {
+        for (int d = 0; d < MAX_DEVICES; d++) {
+            count[d] = latencyCount[d];
+            total[d] = latencyTotalNanos[d];
+            max[d] = latencyMaxNanos[d];
+            latencyCount[d] = 0;
+            latencyTotalNanos[d] = latencyMaxNanos[d] = 0L;
+        }
+    }
+}
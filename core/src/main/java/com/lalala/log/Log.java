@@ -0,0 +1,165 @@
+package com.lalala.log;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Diagnostics for the game's systems, by {@link LogCategory} and {@link LogLevel}, written to a rotating file on a
+ * background thread. Any thread may log. A message is built in a slot of a preallocated ring and the writer thread
+ * formats and writes it later, so logging never allocates or waits on the disk:
+ * <pre>
+ * LogRecord record = Log.begin(LogCategory.BOSS, LogLevel.DEBUG);
+ * if (record != null) record.append("state ").append(state).append(" at tick ").append(tick).commit();
+ * </pre>
+ * A disabled level costs one array read and a compare, and nothing is built, so detailed levels can stay in the
+ * code in release builds. When the ring is full the message is dropped and counted rather than blocking.
+ * Until {@link #start} every level is disabled, so tests and tools that never start the log pay nothing.
+ */
+public final class Log {
+    private static final int CAPACITY = 4096;
+    private static final int MASK = CAPACITY - 1;
+    private static final LogRecord[] ring = new LogRecord[CAPACITY];
+
+    // next slot a producer claims, and next slot the writer reads; slots in between belong to producers or the writer
+    private static final AtomicLong head = new AtomicLong();
+    private static volatile long tail;
+    private static final AtomicInteger dropped = new AtomicInteger();
+
+    // most detailed level written per category, as an ordinal; -1 writes nothing
+    private static final int[] thresholds = new int[LogCategory.VALUES.length];
+    private static final int[] configured = new int[LogCategory.VALUES.length];
+    private static LogWriter writer;
+
+    static {
+        for (int i = 0; i < CAPACITY; i++) {
+            ring[i] = new LogRecord();
+        }
+        Arrays.fill(thresholds, -1);
+        Arrays.fill(configured, LogLevel.INFO.ordinal());
+    }
+
+    private Log() {
+    }
+
+    /**
+     * Sets levels from a comma-separated list: a bare level applies to every category, {@code category=level} to
+     * one, and {@code off} silences. Later entries win, so {@code info,boss=debug} logs boss details only. Set this
+     * before the game's threads start; while the log runs, the new levels apply at once. An entry naming an unknown
+     * category or level is reported on stderr and skipped, so a typo never stops the game.
+     */
+    public static synchronized void configure(String spec) {
+        for (String part : spec.split(",")) {
+            String entry = part.trim();
+            if (entry.isEmpty()) continue;
+            int equals = entry.indexOf('=');
+            try {
+                int level = parseLevel(equals < 0 ? entry : entry.substring(equals + 1).trim());
+                if (equals < 0) {
+                    Arrays.fill(configured, level);
+                } else {
+                    String category = entry.substring(0, equals).trim().toUpperCase(Locale.ROOT);
+                    configured[LogCategory.valueOf(category).ordinal()] = level;
+                }
+            } catch (IllegalArgumentException e) {
+                System.err.println("Log: ignoring " + entry + ", levels are " + names(LogLevel.values())
+                    + " or off, and categories " + names(LogCategory.VALUES));
+            }
+        }
+        if (writer != null) {
+            System.arraycopy(configured, 0, thresholds, 0, thresholds.length);
+        }
+    }
+
+    private static int parseLevel(String name) {
+        return name.equalsIgnoreCase("off") ? -1 : LogLevel.valueOf(name.toUpperCase(Locale.ROOT)).ordinal();
+    }
+
+    private static String names(Enum<?>[] values) {
+        return Arrays.toString(values).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Starts the writer thread on {@code file}. Once the file reaches {@code maxBytes} it is renamed to
+     * {@code file.1}, older ones shift up, and anything past {@code keepFiles} old files is deleted.
+     */
+    public static synchronized void start(File file, long maxBytes, int keepFiles) {
+        if (writer != null) return;
+        writer = new LogWriter(file, maxBytes, keepFiles);
+        System.arraycopy(configured, 0, thresholds, 0, thresholds.length);
+    }
+
+    /** Disables every level, writes whatever has been committed and closes the file. */
+    public static synchronized void stop() {
+        if (writer == null) return;
+        Arrays.fill(thresholds, -1);
+        writer.dispose();
+        writer = null;
+    }
+
+    public static boolean isEnabled(LogCategory category, LogLevel level) {
+        return level.ordinal() <= thresholds[category.ordinal()];
+    }
+
+    /**
+     * Claims a record to build a message in, or returns null when {@code level} is disabled for {@code category} or
+     * the ring is full. A record that is returned must be committed.
+     */
+    public static LogRecord begin(LogCategory category, LogLevel level) {
+        if (level.ordinal() > thresholds[category.ordinal()]) return null;
+        long h;
+        do {
+            h = head.get();
+            if (h - tail >= CAPACITY) {
+                dropped.incrementAndGet();
+                return null;
+            }
+        } while (!head.compareAndSet(h, h + 1));
+        LogRecord record = ring[(int) h & MASK];
+        record.start(h, category, level);
+        return record;
+    }
+
+    /** Logs a fixed message; anything built with {@code +} should go through {@link #begin} instead. */
+    public static void log(LogCategory category, LogLevel level, CharSequence message) {
+        LogRecord record = begin(category, level);
+        if (record != null) record.append(message).commit();
+    }
+
+    public static void error(LogCategory category, CharSequence message, Throwable cause) {
+        LogRecord record = begin(category, LogLevel.ERROR);
+        if (record != null) record.append(message).cause(cause).commit();
+    }
+
+    public static void warn(LogCategory category, CharSequence message) {
+        log(category, LogLevel.WARN, message);
+    }
+
+    public static void info(LogCategory category, CharSequence message) {
+        log(category, LogLevel.INFO, message);
+    }
+
+    public static void debug(LogCategory category, CharSequence message) {
+        log(category, LogLevel.DEBUG, message);
+    }
+
+    /** Messages lost because the writer fell a whole ring behind. */
+    public static int getDropped() {
+        return dropped.get();
+    }
+
+    /** Writer side: the next record if its producer has committed it, else null. */
+    static LogRecord peek() {
+        long t = tail;
+        LogRecord record = ring[(int) t & MASK];
+        return record.sequence == t ? record : null;
+    }
+
+    /** Writer side: frees the record returned by the last {@link #peek()} for producers to reuse. */
+    static void release(LogRecord record) {
+        record.cause = null;
+        tail = tail + 1;
+    }
+}
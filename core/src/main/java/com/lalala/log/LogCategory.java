@@ -0,0 +1,8 @@
+package com.lalala.log;
+
+/** What part of the game a message is about; each category has its own level. */
+public enum LogCategory {
+    PLAYER, BOSS, PHYSICS, PERSISTENCE, NETWORK, CAPTURE;
+
+    static final LogCategory[] VALUES = values();
+}
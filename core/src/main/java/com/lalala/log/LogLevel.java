@@ -0,0 +1,6 @@
+package com.lalala.log;
+
+/** How important a message is. A category set to a level writes that level and everything above it. */
+public enum LogLevel {
+    ERROR, WARN, INFO, DEBUG, TRACE
+}
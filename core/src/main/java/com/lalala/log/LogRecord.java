@@ -0,0 +1,106 @@
+package com.lalala.log;
+
+/**
+ * One message being written, in a slot of the preallocated ring behind {@link Log}. The text is appended piece by
+ * piece into a fixed char array, numbers included, so building a message allocates nothing; text past
+ * {@link #MAX_CHARS} is cut off. Every record handed out by {@link Log#begin} must be finished with {@link #commit()}.
+ */
+public final class LogRecord {
+    public static final int MAX_CHARS = 256;
+    private static final long[] POWERS_OF_TEN = { 1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L };
+
+    final char[] text = new char[MAX_CHARS];
+    int length;
+    LogCategory category;
+    LogLevel level;
+    long timeMillis;
+    String threadName;
+    Throwable cause;
+    // the message number this slot holds once committed; the writer waits for it before reading the slot
+    volatile long sequence = -1L;
+    private long claimed;
+
+    void start(long claimed, LogCategory category, LogLevel level) {
+        this.claimed = claimed;
+        this.category = category;
+        this.level = level;
+        timeMillis = System.currentTimeMillis();
+        threadName = Thread.currentThread().getName();
+        cause = null;
+        length = 0;
+    }
+
+    public LogRecord append(char c) {
+        if (length < MAX_CHARS) text[length++] = c;
+        return this;
+    }
+
+    public LogRecord append(CharSequence s) {
+        for (int i = 0, n = s.length(); i < n && length < MAX_CHARS; i++) {
+            text[length++] = s.charAt(i);
+        }
+        return this;
+    }
+
+    public LogRecord append(Enum<?> value) {
+        return append(value.name());
+    }
+
+    public LogRecord append(boolean value) {
+        return append(value ? "true" : "false");
+    }
+
+    public LogRecord append(int value) {
+        return append((long) value);
+    }
+
+    public LogRecord append(long value) {
+        // digits are taken off a negative number so that Long.MIN_VALUE works too
+        if (value < 0) {
+            append('-');
+        } else {
+            value = -value;
+        }
+        int start = length;
+        do {
+            append((char) ('0' - value % 10));
+            value /= 10;
+        } while (value != 0);
+        for (int i = start, j = length - 1; i < j; i++, j--) {
+            char c = text[i];
+            text[i] = text[j];
+            text[j] = c;
+        }
+        return this;
+    }
+
+    /** Appends {@code value} rounded to {@code decimals} places, at most 6. */
+    public LogRecord append(float value, int decimals) {
+        if (Float.isNaN(value)) return append("NaN");
+        if (Float.isInfinite(value)) return append(value > 0f ? "Infinity" : "-Infinity");
+        decimals = Math.max(0, Math.min(6, decimals));
+        long scale = POWERS_OF_TEN[decimals];
+        long scaled = Math.round(Math.abs((double) value) * scale);
+        if (value < 0f && scaled != 0L) append('-');
+        append(scaled / scale);
+        if (decimals > 0) {
+            append('.');
+            long fraction = scaled % scale;
+            for (long place = scale / 10; place > 0; place /= 10) {
+                append((char) ('0' + fraction / place % 10));
+            }
+        }
+        return this;
+    }
+
+    /** Attaches an exception; its stack trace is written after the message. */
+    public LogRecord cause(Throwable throwable) {
+        cause = throwable;
+        return this;
+    }
+
+    /** Hands the message to the writer. The record must not be touched afterwards. */
+    public void commit() {
+        sequence = claimed;
+    }
+}
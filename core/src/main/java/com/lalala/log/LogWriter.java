@@ -0,0 +1,191 @@
+package com.lalala.log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.TimeZone;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The appender: takes committed records off {@link Log}'s ring on a daemon thread, formats each into a reused
+ * line buffer and encodes it into a direct buffer that goes to the file once the ring runs dry, so producers never
+ * wait on the disk. Warnings and errors are also echoed to stderr.
+ * Lines look like {@code 14:03:27.512 INFO  BOSS [simulation] state DASHING at tick 1830}.
+ */
+final class LogWriter {
+    private static final long IDLE_NANOS = 2_000_000L;
+    private static final long DAY_MILLIS = 24L * 60L * 60L * 1000L;
+    private static final int THREAD_NAME_CHARS = 24;
+
+    private final Path file;
+    private final long maxBytes;
+    private final int keepFiles;
+    private final CharBuffer line = CharBuffer.allocate(LogRecord.MAX_CHARS + 64);
+    private final ByteBuffer bytes = ByteBuffer.allocateDirect(64 * 1024);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    // local time of day for the timestamps; taken once, so a DST change shows up after a restart
+    private final long zoneOffsetMillis = TimeZone.getDefault().getOffset(System.currentTimeMillis());
+    private final Thread thread;
+    private FileChannel channel;
+    private long fileBytes;
+    private volatile boolean running = true;
+
+    LogWriter(File file, long maxBytes, int keepFiles) {
+        this.file = file.toPath();
+        this.maxBytes = maxBytes;
+        this.keepFiles = keepFiles;
+        open();
+        thread = new Thread(this::run, "log writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void run() {
+        while (true) {
+            LogRecord record = Log.peek();
+            if (record == null) {
+                flush();
+                // checked only once the ring is empty, so everything committed before stop() is written
+                if (!running) break;
+                LockSupport.parkNanos(IDLE_NANOS);
+                continue;
+            }
+            write(record);
+            Log.release(record);
+        }
+        close();
+    }
+
+    private void write(LogRecord record) {
+        line.clear();
+        long millis = Math.floorMod(record.timeMillis + zoneOffsetMillis, DAY_MILLIS);
+        digits(millis / 3_600_000L, 2).put(':');
+        digits(millis / 60_000L % 60L, 2).put(':');
+        digits(millis / 1000L % 60L, 2).put('.');
+        digits(millis % 1000L, 3).put(' ');
+        String level = record.level.name();
+        line.put(level);
+        for (int i = level.length(); i < 6; i++) line.put(' ');
+        line.put(record.category.name()).put(" [");
+        String threadName = record.threadName;
+        line.put(threadName, 0, Math.min(threadName.length(), THREAD_NAME_CHARS)).put("] ");
+        line.put(record.text, 0, record.length).put('\n');
+        line.flip();
+        if (record.level.ordinal() <= LogLevel.WARN.ordinal()) {
+            System.err.append(line);
+            line.rewind();
+        }
+        encode(line);
+
+        if (record.cause != null) {
+            // rare, and only ever on this thread, so the trace may allocate
+            StringWriter trace = new StringWriter();
+            record.cause.printStackTrace(new PrintWriter(trace));
+            if (record.level.ordinal() <= LogLevel.WARN.ordinal()) {
+                System.err.append(trace.getBuffer());
+            }
+            encode(CharBuffer.wrap(trace.getBuffer()));
+        }
+    }
+
+    private CharBuffer digits(long value, int width) {
+        for (long place = width == 3 ? 100L : 10L; place > 0; place /= 10) {
+            line.put((char) ('0' + value / place % 10));
+        }
+        return line;
+    }
+
+    private void encode(CharBuffer chars) {
+        while (encoder.encode(chars, bytes, false) == CoderResult.OVERFLOW) {
+            flush();
+        }
+    }
+
+    private void flush() {
+        if (bytes.position() == 0) return;
+        bytes.flip();
+        try {
+            if (channel != null) {
+                while (bytes.hasRemaining()) {
+                    fileBytes += channel.write(bytes);
+                }
+                if (fileBytes >= maxBytes) {
+                    rotate();
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Log: can't write " + file + ", file logging stops: " + e);
+            close();
+        }
+        bytes.clear();
+    }
+
+    private void open() {
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) Files.createDirectories(parent);
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            fileBytes = channel.size();
+        } catch (IOException e) {
+            System.err.println("Log: can't open " + file + ", logging to the file is off: " + e);
+            channel = null;
+        }
+    }
+
+    /** game.log becomes game.log.1, game.log.1 becomes game.log.2 and so on; the oldest is deleted. */
+    private void rotate() throws IOException {
+        channel.close();
+        channel = null;
+        Files.deleteIfExists(sibling(keepFiles));
+        for (int i = keepFiles - 1; i >= 1; i--) {
+            Path older = sibling(i);
+            if (Files.exists(older)) {
+                Files.move(older, sibling(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        if (keepFiles > 0) {
+            Files.move(file, sibling(1), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.deleteIfExists(file);
+        }
+        open();
+    }
+
+    private Path sibling(int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+
+    private void close() {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+        channel = null;
+    }
+
+    /** Writes everything committed so far, closes the file and ends the thread. */
+    void dispose() {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
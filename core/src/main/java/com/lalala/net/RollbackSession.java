@@ -0,0 +1,465 @@
+package com.lalala.net;
+
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.TimeUtils;
+import com.lalala.Player;
+import com.lalala.RenderState;
+import com.lalala.Simulation;
+import com.lalala.events.EventBus;
+import com.lalala.events.GameEvent;
+import com.lalala.input.InputAction;
+import com.lalala.input.InputQueue;
+import com.lalala.input.PlayerInput;
+import com.lalala.log.Log;
+import com.lalala.log.LogCategory;
+import com.lalala.log.LogLevel;
+import com.lalala.log.LogRecord;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Runs a versus fight against another machine without waiting for its input. Each tick runs at once with this
+ * side's input and a guess at the other side's: whatever it held last. The state before every tick is saved, and
+ * when the other side's real input for a tick turns out different from the guess, the fight goes back to that
+ * tick and plays the ticks since again with the corrected input. The fight runs at most {@link #MAX_ROLLBACK}
+ * ticks ahead of the input it has, so a correction never plays more than that many again; past that it waits.
+ * <p>
+ * Input travels as one 12-bit value per tick: an action held, and an action pressed since the tick before. Every
+ * packet carries all of this side's input the other side hasn't acknowledged yet, so a lost packet costs nothing
+ * but the delay until the next one. Packets also carry a checksum, to the bit, of the newest tick whose input is
+ * known on both sides. The hosting side has the last word: when the joining side's checksum differs from its own,
+ * it sends its whole state for that tick until the joining side has taken it over and played on from it.
+ * <p>
+ * Both sides publish hits as they are predicted; ticks played again are muted. The end of the fight is decided by
+ * the hosting side alone, once the tick it happened on no longer depends on a guess there. It goes out with every
+ * packet until the joining side acknowledges it, so the two sides always see the same end.
+ */
+public class RollbackSession implements Disposable {
+    /** Ticks the fight may run ahead of the other side's input; a correction plays at most this many again. */
+    public static final int MAX_ROLLBACK = 8;
+    // ticks of input, snapshots and checksums kept; a power of two well past MAX_ROLLBACK and the input in flight
+    private static final int HISTORY = 64;
+    private static final int MASK = HISTORY - 1;
+    // input entries in one packet; what the other side hasn't acknowledged, up to this many of the newest
+    private static final int MAX_INPUTS_PER_PACKET = 32;
+    // the other side counts as gone after this long without a packet
+    private static final long TIMEOUT_NANOS = 5_000_000_000L;
+    private static final long REPORT_NANOS = 5_000_000_000L;
+    private static final long STEP_NANOS = (long) (Simulation.STEP * 1_000_000_000L);
+    // the last packet goes out this many times, so the other side can confirm the end even if some are lost
+    private static final int GOODBYE_COPIES = 3;
+
+    private static final byte MAGIC = 0x56;
+    // magic, acknowledged tick, checksum tick, checksum, end tick, who fell, first input tick, input count
+    private static final int HEADER = 1 + 4 + 4 + 4 + 4 + 1 + 4 + 1;
+    // the hosting side's state: magic, tick, the state before that tick
+    private static final byte STATE_MAGIC = 0x57;
+    private static final int STATE_PACKET = 1 + 4 + Simulation.Snapshot.BYTES;
+    // who fell at the end, one bit per player: the hosting side's, the joining side's
+    private static final int HOST_FELL = 1, JOINER_FELL = 2;
+    private static final InputAction[] ACTIONS = InputAction.values();
+    private static final int PRESSED_SHIFT = ACTIONS.length;
+    private static final int HELD_MASK = (1 << PRESSED_SHIFT) - 1;
+
+    private final Simulation simulation;
+    private final UdpLink link;
+    private final PlayerInput localInput, remoteInput;
+    private final Player localPlayer;
+    private final boolean hosting;
+    // this side's devices, read once per tick into the input value
+    private final PlayerInput devices = new PlayerInput();
+    private final int[] localInputs = new int[HISTORY];
+    // real input up to remoteConfirmed, guesses after it
+    private final int[] remoteInputs = new int[HISTORY];
+    private final Simulation.Snapshot[] snapshots = new Simulation.Snapshot[HISTORY];
+    private final int[] checksums = new int[HISTORY];
+    private final ByteBuffer packet = ByteBuffer.allocateDirect(UdpLink.MAX_PACKET);
+
+    // the next tick to run
+    private int tick;
+    private int remoteConfirmed = -1;
+    private int ackedByRemote = -1;
+    private int rollbackFrom = Integer.MAX_VALUE;
+    // the first tick the fight ended on as far as this side knows, and who fell; -1 while it goes on
+    private int endTick = -1;
+    private int endFell;
+    // the end the hosting side decided, and whether the joining side has acknowledged it; -1 until then
+    private int decidedTick = -1;
+    private int decidedFell;
+    private boolean endAcknowledged;
+    private RenderState.Outcome outcome = RenderState.Outcome.NONE;
+    // newest tick whose state no longer depends on a guess, with its checksum in the ring
+    private int checksumTick = -1;
+    private int comparedTick = -1;
+    // newest tick known to be the same on both sides: compared equal, or taken over from the hosting side
+    private int agreedTick = -1;
+    // hosting side: the state goes out while this is not -1, until the other side agrees from this tick on
+    private int resyncFrom = -1;
+    private long lastReceiveNanos;
+    private long nextReportNanos;
+
+    private int rollbacks, resimulatedTicks, deepestRollback, stalls, desyncs, resyncs;
+    private long worstRollbackNanos;
+
+    /** @param localPlayer 0 for the hosting side, which plays the simulation's first player, 1 for the joining side */
+    public RollbackSession(Simulation simulation, UdpLink link, int localPlayer) {
+        this.simulation = simulation;
+        this.link = link;
+        simulation.setLocalPlayer(localPlayer);
+        localInput = localPlayer == 0 ? simulation.getInput() : simulation.getOpponentInput();
+        remoteInput = localPlayer == 0 ? simulation.getOpponentInput() : simulation.getInput();
+        this.localPlayer = localPlayer == 0 ? simulation.getPlayer() : simulation.getOpponent();
+        hosting = localPlayer == 0;
+        // both are fed below with times counted in ticks; this side's latency is measured on the devices instead
+        localInput.setLatencyCounted(false);
+        remoteInput.setLatencyCounted(false);
+        for (int i = 0; i < HISTORY; i++) {
+            snapshots[i] = new Simulation.Snapshot();
+        }
+    }
+
+    /**
+     * Takes in the other side's packets, plays ticks again if a guess was wrong, then runs the next tick with the
+     * events in {@code localQueue} stamped up to {@code tickNanos}. Returns false when the tick couldn't run
+     * because the other side's input is too far behind or the fight is over; the events then stay queued.
+     */
+    public boolean advance(InputQueue localQueue, long tickNanos) {
+        long now = TimeUtils.nanoTime();
+        receive(now);
+        // a state taken over from the hosting side may be for the current tick, with nothing to play again
+        if (rollbackFrom <= tick) {
+            rollBack();
+        }
+        updateChecksums();
+        if (hosting && decidedTick < 0 && endTick >= 0 && remoteConfirmed >= endTick) {
+            decidedTick = endTick;
+            decidedFell = endFell;
+        }
+        if (outcome == RenderState.Outcome.NONE) {
+            if (decidedTick >= 0 && (endAcknowledged || !hosting)) {
+                finish(outcomeOf(decidedFell));
+            } else if (lastReceiveNanos != 0L && now - lastReceiveNanos > TIMEOUT_NANOS) {
+                if (decidedTick >= 0) {
+                    // the acknowledgement got lost, but the end was already decided
+                    finish(outcomeOf(decidedFell));
+                } else {
+                    Log.warn(LogCategory.NETWORK, "the other side stopped answering; the fight counts as won");
+                    finish(RenderState.Outcome.WON);
+                }
+            }
+        }
+
+        boolean ticked = false;
+        // the joining side plays on past an end it predicted, until the hosting side says how the fight ended
+        if (outcome == RenderState.Outcome.NONE && (endTick < 0 || !hosting)
+            && tick - remoteConfirmed <= MAX_ROLLBACK) {
+            localQueue.drainTo(devices, tickNanos);
+            localInputs[tick & MASK] = readDevices();
+            if (tick > remoteConfirmed) {
+                remoteInputs[tick & MASK] = predict();
+            }
+            run(tick);
+            ticked = true;
+        } else if (outcome == RenderState.Outcome.NONE) {
+            stalls++;
+        }
+
+        writePacket();
+        link.send(packet, now);
+        if (resyncFrom >= 0 && outcome == RenderState.Outcome.NONE) {
+            writeState();
+            link.send(packet, now);
+        }
+        link.flush(now);
+        if (now >= nextReportNanos) {
+            if (nextReportNanos != 0L) report(LogLevel.DEBUG);
+            nextReportNanos = now + REPORT_NANOS;
+        }
+        return ticked;
+    }
+
+    /** Saves the state before tick {@code t}, applies both inputs for it and runs it. */
+    private void run(int t) {
+        simulation.save(snapshots[t & MASK]);
+        apply(localInput, localInputs[t & MASK], t);
+        apply(remoteInput, remoteInputs[t & MASK], t);
+        RenderState.Outcome result = simulation.tick();
+        tick = t + 1;
+        if (result != RenderState.Outcome.NONE && endTick < 0) {
+            endTick = t;
+            endFell = (simulation.getPlayer().isDead() ? HOST_FELL : 0)
+                | (simulation.getOpponent().isDead() ? JOINER_FELL : 0);
+        }
+    }
+
+    /**
+     * Goes back to the first tick whose guess was wrong, or whose state the hosting side sent, and plays the ticks up
+     * to the current one again. Ticks after an end play on too; they were sent already, and they change nothing.
+     */
+    private void rollBack() {
+        long start = TimeUtils.nanoTime();
+        int from = rollbackFrom, to = tick;
+        rollbackFrom = Integer.MAX_VALUE;
+        EventBus events = simulation.getEvents();
+        events.setMuted(true);
+        simulation.restore(snapshots[from & MASK]);
+        endTick = -1;
+        for (int t = from; t < to; t++) {
+            if (t > remoteConfirmed) {
+                remoteInputs[t & MASK] = predict();
+            }
+            run(t);
+        }
+        events.setMuted(false);
+        rollbacks++;
+        resimulatedTicks += to - from;
+        deepestRollback = Math.max(deepestRollback, to - from);
+        worstRollbackNanos = Math.max(worstRollbackNanos, TimeUtils.nanoTime() - start);
+    }
+
+    /** The other side keeps doing what it did in the newest tick known: holding the same actions, pressing nothing new. */
+    private int predict() {
+        return remoteConfirmed < 0 ? 0 : remoteInputs[remoteConfirmed & MASK] & HELD_MASK;
+    }
+
+    /** Turns this side's devices into the input value; a press counts as acted on once it is in a tick. */
+    private int readDevices() {
+        int bits = 0;
+        for (int i = 0; i < ACTIONS.length; i++) {
+            if (devices.isHeld(ACTIONS[i])) bits |= 1 << i;
+            if (devices.isBuffered(ACTIONS[i], Float.MAX_VALUE)) bits |= 1 << (PRESSED_SHIFT + i);
+            while (devices.isBuffered(ACTIONS[i], Float.MAX_VALUE)) {
+                devices.consume(ACTIONS[i]);
+            }
+        }
+        return bits;
+    }
+
+    /** Turns one tick's input value into presses and releases, stamped with the tick so both sides stamp alike. */
+    private static void apply(PlayerInput input, int bits, int t) {
+        long time = t * STEP_NANOS;
+        for (int i = 0; i < ACTIONS.length; i++) {
+            InputAction action = ACTIONS[i];
+            boolean held = (bits & 1 << i) != 0;
+            boolean pressed = (bits & 1 << (PRESSED_SHIFT + i)) != 0;
+            boolean wasHeld = input.isHeld(action);
+            if (pressed) {
+                // released and pressed again between two ticks
+                if (wasHeld) input.apply(action, false, time, PlayerInput.KEYBOARD);
+                input.apply(action, true, time, PlayerInput.KEYBOARD);
+                wasHeld = true;
+            } else if (held && !wasHeld) {
+                input.apply(action, true, time, PlayerInput.KEYBOARD);
+                wasHeld = true;
+            }
+            if (!held && wasHeld) {
+                input.apply(action, false, time, PlayerInput.KEYBOARD);
+            }
+        }
+    }
+
+    private void receive(long now) {
+        while (link.receive(packet)) {
+            if (packet.remaining() == STATE_PACKET && packet.get(packet.position()) == STATE_MAGIC) {
+                packet.get();
+                lastReceiveNanos = now;
+                if (!hosting) takeOver(packet.getInt());
+                continue;
+            }
+            if (packet.remaining() < HEADER || packet.get() != MAGIC) continue;
+            lastReceiveNanos = now;
+            ackedByRemote = Math.max(ackedByRemote, packet.getInt());
+            int theirChecksumTick = packet.getInt();
+            int theirChecksum = packet.getInt();
+            int theirEndTick = packet.getInt();
+            int theirFell = packet.get();
+            if (hosting) {
+                endAcknowledged |= decidedTick >= 0 && theirEndTick == decidedTick;
+            } else if (decidedTick < 0 && theirEndTick >= 0) {
+                decidedTick = theirEndTick;
+                decidedFell = theirFell;
+            }
+            int first = packet.getInt();
+            int count = packet.get() & 0xFF;
+            if (packet.remaining() < count * 2) continue;
+            for (int i = 0; i < count; i++) {
+                int t = first + i;
+                int bits = packet.getShort() & 0xFFFF;
+                if (t <= remoteConfirmed) continue;
+                // a gap means an older packet is still missing; the next one repeats everything from it
+                if (t != remoteConfirmed + 1 || t >= tick + HISTORY / 2) break;
+                if (t < tick && remoteInputs[t & MASK] != bits) {
+                    rollbackFrom = Math.min(rollbackFrom, t);
+                }
+                remoteInputs[t & MASK] = bits;
+                remoteConfirmed = t;
+            }
+            compareChecksum(theirChecksumTick, theirChecksum);
+        }
+    }
+
+    /** Sums up the saved states that no longer depend on a guess. */
+    private void updateChecksums() {
+        int confirmed = Math.min(remoteConfirmed + 1, tick - 1);
+        while (checksumTick < confirmed) {
+            checksumTick++;
+            checksums[checksumTick & MASK] = snapshots[checksumTick & MASK].checksum();
+        }
+    }
+
+    private void compareChecksum(int t, int checksum) {
+        if (t <= comparedTick || t > checksumTick || checksumTick - t >= HISTORY) return;
+        comparedTick = t;
+        if (checksums[t & MASK] == checksum) {
+            agreedTick = t;
+            if (resyncFrom >= 0 && t >= resyncFrom) resyncFrom = -1;
+            return;
+        }
+        desyncs++;
+        boolean resyncing = hosting && resyncFrom < 0;
+        if (resyncing) resyncFrom = checksumTick;
+        // until the other side has caught up, the ticks after this one most likely disagree as well
+        LogRecord record = Log.begin(LogCategory.NETWORK, resyncing ? LogLevel.WARN : LogLevel.DEBUG);
+        if (record != null) {
+            record.append("the two sides disagree about tick ").append(t);
+            if (resyncing) record.append("; sending this side's state from tick ").append(resyncFrom);
+            record.commit();
+        }
+    }
+
+    /**
+     * Joining side: takes over the hosting side's state before tick {@code t} and plays on from it. Only a tick
+     * whose input from the hosting side is all here will do; a guess before it could later roll back past it.
+     */
+    private void takeOver(int t) {
+        if (t <= agreedTick || t > remoteConfirmed + 1 || t > tick || tick - t >= HISTORY) return;
+        Simulation.Snapshot snapshot = snapshots[t & MASK];
+        snapshot.read(packet);
+        checksums[t & MASK] = snapshot.checksum();
+        checksumTick = t;
+        comparedTick = Math.max(comparedTick, t);
+        agreedTick = t;
+        // whatever was to be played again from an earlier tick now starts from this one
+        rollbackFrom = t;
+        resyncs++;
+        LogRecord record = Log.begin(LogCategory.NETWORK, LogLevel.INFO);
+        if (record != null) record.append("took over the host's state at tick ").append(t).commit();
+    }
+
+    private void writePacket() {
+        int first = Math.max(ackedByRemote + 1, tick - MAX_INPUTS_PER_PACKET);
+        int count = Math.max(0, tick - first);
+        packet.clear();
+        packet.put(MAGIC);
+        packet.putInt(remoteConfirmed);
+        packet.putInt(checksumTick);
+        packet.putInt(checksumTick >= 0 ? checksums[checksumTick & MASK] : 0);
+        // the hosting side's decided end, and the joining side's acknowledgement of it
+        packet.putInt(decidedTick);
+        packet.put((byte) decidedFell);
+        packet.putInt(first);
+        packet.put((byte) count);
+        for (int t = first; t < tick; t++) {
+            packet.putShort((short) localInputs[t & MASK]);
+        }
+        packet.flip();
+    }
+
+    /** The hosting side's state before its newest confirmed tick, for a joining side that disagrees about it. */
+    private void writeState() {
+        packet.clear();
+        packet.put(STATE_MAGIC);
+        packet.putInt(checksumTick);
+        snapshots[checksumTick & MASK].write(packet);
+        packet.flip();
+    }
+
+    private RenderState.Outcome outcomeOf(int fell) {
+        return (fell & (hosting ? HOST_FELL : JOINER_FELL)) != 0 ? RenderState.Outcome.LOST : RenderState.Outcome.WON;
+    }
+
+    private void finish(RenderState.Outcome result) {
+        outcome = result;
+        float x = localPlayer.getPosition().x, y = localPlayer.getPosition().y;
+        simulation.getEvents().publish(result == RenderState.Outcome.WON ? GameEvent.Type.FIGHT_WON
+            : GameEvent.Type.FIGHT_LOST, x, y, 0);
+        report(LogLevel.INFO);
+    }
+
+    private void report(LogLevel level) {
+        LogRecord record = Log.begin(LogCategory.NETWORK, level);
+        if (record == null) return;
+        record.append("tick ").append(tick).append(", ").append(rollbacks).append(" rollbacks over ")
+            .append(resimulatedTicks).append(" ticks, deepest ").append(deepestRollback).append(", worst ")
+            .append(worstRollbackNanos / 1e6f, 2).append(" ms, ").append(stalls).append(" stalls, ")
+            .append(desyncs).append(" desyncs, ").append(resyncs).append(" resyncs, packets ")
+            .append(link.getSent()).append(" sent ").append(link.getReceived()).append(" received ")
+            .append(link.getDropped()).append(" dropped").commit();
+    }
+
+    /** The fight's end as the hosting side decided it, from this side's point of view. */
+    public RenderState.Outcome getOutcome() {
+        return outcome;
+    }
+
+    public int getTick() {
+        return tick;
+    }
+
+    /** Newest tick whose state no longer depends on a guess and has a checksum; -1 before the first. */
+    public int getConfirmedTick() {
+        return checksumTick;
+    }
+
+    /** The checksum of the state before tick {@code t}, for one of the last confirmed ticks. */
+    public int getChecksum(int t) {
+        if (t > checksumTick || checksumTick - t >= HISTORY) throw new IllegalArgumentException("No checksum for tick " + t);
+        return checksums[t & MASK];
+    }
+
+    /**
+     * Copies this side's input latency since the last call, per device, and starts over: from a press on the device to
+     * the tick that took it in. See {@link PlayerInput#drainLatency}.
+     */
+    public void drainLatency(int[] count, long[] total, long[] max) {
+        devices.drainLatency(count, total, max);
+    }
+
+    public int getRollbacks() {
+        return rollbacks;
+    }
+
+    public int getDeepestRollback() {
+        return deepestRollback;
+    }
+
+    /** The longest any rollback took, restoring and playing its ticks again. */
+    public long getWorstRollbackNanos() {
+        return worstRollbackNanos;
+    }
+
+    public int getDesyncs() {
+        return desyncs;
+    }
+
+    /** How many times the joining side took over the hosting side's state; always 0 on the hosting side. */
+    public int getResyncs() {
+        return resyncs;
+    }
+
+    /** Newest tick this side knows to be the same on both sides, to the bit; -1 before the first. */
+    public int getAgreedTick() {
+        return agreedTick;
+    }
+
+    /** Sends the last input a few times more, so the other side can still confirm the end, and closes the link. */
+    @Override
+    public void dispose() {
+        writePacket();
+        for (int i = 0; i < GOODBYE_COPIES; i++) {
+            link.sendNow(packet);
+        }
+        report(LogLevel.INFO);
+        link.dispose();
+    }
+}
@@ -0,0 +1,201 @@
+package com.lalala.net;
+
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Random;
+
+/**
+ * A non-blocking UDP connection to the other side of a versus fight. The hosting side listens on a port and takes
+ * the first machine it hears from as its peer; the joining side sends to the host's address from any free port.
+ * <p>
+ * For trying rollback on one machine, outgoing packets can be held back by a fixed latency plus random jitter, and
+ * a share of them dropped. Held packets wait in a preallocated ring until {@link #flush} finds them due, and leave
+ * in the order they were sent. Only the sending side delays, so a round trip gets both sides' delay.
+ */
+public class UdpLink implements Disposable {
+    /** Largest packet either side sends. */
+    public static final int MAX_PACKET = 512;
+    // packets held back at once; anything past this is dropped, as a full router queue would
+    private static final int DELAY_SLOTS = 256;
+
+    private final DatagramChannel channel;
+    private SocketAddress peer;
+    private final long latencyNanos, jitterNanos;
+    private final float lossRate;
+    // loss and jitter draw from their own generator; the shared one belongs to the simulation
+    private final Random random = new Random();
+
+    private final ByteBuffer[] delayed = new ByteBuffer[DELAY_SLOTS];
+    private final long[] dueNanos = new long[DELAY_SLOTS];
+    private int delayedHead, delayedCount;
+    private long lastDueNanos;
+
+    private int sent, received, dropped;
+
+    private UdpLink(DatagramChannel channel, SocketAddress peer, int latencyMs, int jitterMs, float lossPercent) {
+        this.channel = channel;
+        this.peer = peer;
+        latencyNanos = latencyMs * 1_000_000L;
+        jitterNanos = jitterMs * 1_000_000L;
+        lossRate = lossPercent / 100f;
+        for (int i = 0; i < DELAY_SLOTS; i++) {
+            delayed[i] = ByteBuffer.allocateDirect(MAX_PACKET);
+        }
+    }
+
+    /** Listens on {@code port}, or on any free port for 0; see {@link #getLocalPort()}. */
+    public static UdpLink host(int port, int latencyMs, int jitterMs, float lossPercent) {
+        try {
+            DatagramChannel channel = DatagramChannel.open();
+            channel.configureBlocking(false);
+            channel.bind(new InetSocketAddress(port));
+            return new UdpLink(channel, null, latencyMs, jitterMs, lossPercent);
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Can't listen on UDP port " + port, e);
+        }
+    }
+
+    /** Connects to a host given as {@code host:port}. */
+    public static UdpLink join(String address, int latencyMs, int jitterMs, float lossPercent) {
+        int colon = address.lastIndexOf(':');
+        if (colon < 0) throw new GdxRuntimeException("Expected host:port, got " + address);
+        InetSocketAddress host = new InetSocketAddress(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+        try {
+            DatagramChannel channel = DatagramChannel.open();
+            channel.configureBlocking(false);
+            channel.connect(host);
+            return new UdpLink(channel, host, latencyMs, jitterMs, lossPercent);
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Can't connect to " + address, e);
+        }
+    }
+
+    /**
+     * Sends {@code packet} from its position to its limit, or holds it back when a latency is set. Does nothing
+     * until the peer is known. Leaves {@code packet}'s position alone.
+     */
+    public void send(ByteBuffer packet, long nowNanos) {
+        if (peer == null) return;
+        if (lossRate > 0f && random.nextFloat() < lossRate) {
+            dropped++;
+            return;
+        }
+        int position = packet.position();
+        if (latencyNanos == 0L && jitterNanos == 0L) {
+            write(packet);
+            packet.position(position);
+            return;
+        }
+        if (delayedCount == DELAY_SLOTS) {
+            dropped++;
+            return;
+        }
+        int slot = (delayedHead + delayedCount) % DELAY_SLOTS;
+        ByteBuffer copy = delayed[slot];
+        copy.clear();
+        copy.put(packet);
+        copy.flip();
+        packet.position(position);
+        long due = nowNanos + latencyNanos + (jitterNanos > 0L ? (long) (random.nextFloat() * jitterNanos) : 0L);
+        // jitter stretches the gaps between packets but never reorders them
+        lastDueNanos = Math.max(lastDueNanos, due);
+        dueNanos[slot] = lastDueNanos;
+        delayedCount++;
+    }
+
+    /** Sends {@code packet} right away, without the injected latency or loss. */
+    public void sendNow(ByteBuffer packet) {
+        if (peer == null) return;
+        int position = packet.position();
+        write(packet);
+        packet.position(position);
+    }
+
+    /** Sends the held back packets that are due. */
+    public void flush(long nowNanos) {
+        while (delayedCount > 0 && dueNanos[delayedHead] <= nowNanos) {
+            write(delayed[delayedHead]);
+            delayedHead = (delayedHead + 1) % DELAY_SLOTS;
+            delayedCount--;
+        }
+    }
+
+    private void write(ByteBuffer packet) {
+        try {
+            channel.send(packet, peer);
+            sent++;
+        } catch (PortUnreachableException e) {
+            // the other side isn't up yet; the next packet tries again
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Can't send to " + peer, e);
+        }
+    }
+
+    /**
+     * Reads the next packet into {@code into}, cleared first and flipped after. Returns false when none is waiting.
+     * The host takes the sender of the first packet as its peer and ignores everyone else.
+     */
+    public boolean receive(ByteBuffer into) {
+        while (true) {
+            into.clear();
+            SocketAddress from;
+            try {
+                from = channel.receive(into);
+            } catch (PortUnreachableException e) {
+                return false;
+            } catch (IOException e) {
+                throw new GdxRuntimeException("Can't receive from " + peer, e);
+            }
+            if (from == null) return false;
+            if (peer == null) {
+                peer = from;
+            } else if (!peer.equals(from)) {
+                continue;
+            }
+            into.flip();
+            received++;
+            return true;
+        }
+    }
+
+    public boolean hasPeer() {
+        return peer != null;
+    }
+
+    public int getLocalPort() {
+        try {
+            return ((InetSocketAddress) channel.getLocalAddress()).getPort();
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Can't read the local port", e);
+        }
+    }
+
+    public int getSent() {
+        return sent;
+    }
+
+    public int getReceived() {
+        return received;
+    }
+
+    /** Packets dropped on purpose, or because too many were held back at once. */
+    public int getDropped() {
+        return dropped;
+    }
+
+    @Override
+    public void dispose() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // nothing left to do with it
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.lalala;
+
+import com.badlogic.gdx.math.Rectangle;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BossTest {
+    // the boss ray-casts for ground every jump-dash tick; that is still far below the 16.7 ms step
+    private static final double TICK_BUDGET_MS = 1.0;
+
+    private TestArena arena;
+    private Boss boss;
+
+    @BeforeEach
+    void setUp() {
+        arena = new TestArena();
+        boss = arena.spawnBoss(0f);
+    }
+
+    @AfterEach
+    void tearDown() {
+        arena.dispose();
+    }
+
+    @Test
+    void dashLastsOneDashAnimationAndStaysLevel() {
+        float startX = boss.getPosition().x, startY = boss.getPosition().y;
+        boss.startDash(10);
+        assertEquals(Boss.State.DASHING, boss.getState());
+
+        int ticks = 0;
+        while (boss.getState() == Boss.State.DASHING && ticks < 600) {
+            arena.step();
+            ticks++;
+            assertEquals(startY, boss.getPosition().y, 0.01f, "dash is not affected by gravity");
+        }
+        int expected = Math.round(TestArena.animations().get("boss/dashRight").getAnimationDuration() / TestArena.STEP);
+        assertEquals(expected, ticks, 1);
+        assertEquals(Boss.State.IDLE_WAITING, boss.getState());
+        assertTrue(Math.abs(boss.getPosition().x - startX) > 1f, "dash did not move the boss");
+
+        waitForIdle();
+        arena.assertTickBudget(TICK_BUDGET_MS);
+    }
+
+    @Test
+    void jumpDashLeavesTheGroundAndLands() {
+        float floor = boss.getPosition().y;
+        boss.startJumpDash(10, 60);
+        assertEquals(Boss.State.JUMP_DASHING, boss.getState());
+
+        float peak = floor;
+        int ticks = 0;
+        while (boss.getState() == Boss.State.JUMP_DASHING && ticks < 180) {
+            arena.step();
+            ticks++;
+            peak = Math.max(peak, boss.getPosition().y);
+        }
+        assertEquals(Boss.State.IDLE_WAITING, boss.getState(), "jump dash never ended");
+        assertTrue(peak - floor > 1f, "jump dash stayed on the ground");
+
+        waitForIdle();
+        arena.step(30);
+        assertEquals(floor, boss.getPosition().y, 0.05f);
+        arena.assertTickBudget(TICK_BUDGET_MS);
+    }
+
+    @Test
+    void hitsWithinTheHitIntervalCountOnce() {
+        // the hitbox follows the current animation frame from the next update on
+        arena.step();
+        Rectangle hit = new Rectangle(boss.getCurrentHitbox());
+        boss.tryHit(hit);
+        boss.tryHit(hit);
+        assertEquals(4, boss.getHealth());
+
+        arena.step(29);
+        boss.tryHit(hit);
+        assertEquals(4, boss.getHealth());
+        for (int i = 3; i >= 0; i--) {
+            arena.step(31);
+            boss.tryHit(hit);
+            assertEquals(i, boss.getHealth());
+        }
+        assertFalse(boss.isAlive());
+        arena.assertTickBudget(TICK_BUDGET_MS);
+    }
+
+    /** IDLE_WAITING holds for half a second, then the boss asks its brain for the next move. */
+    private void waitForIdle() {
+        arena.step(29);
+        assertEquals(Boss.State.IDLE_WAITING, boss.getState());
+        arena.step(2);
+        assertEquals(Boss.State.IDLE, boss.getState());
+        assertTrue(boss.needsDecision());
+    }
+}
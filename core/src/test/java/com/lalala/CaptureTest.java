@@ -0,0 +1,185 @@
+package com.lalala;
+
+import com.lalala.capture.CaptureWriter;
+import com.lalala.capture.PngEncoder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.w3c.dom.Node;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CaptureTest {
+    private static final int WIDTH = 96, HEIGHT = 64;
+    private static final long FRAME_NANOS = 1_000_000_000L / 30L;
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void pngKeepsEveryPixel() throws Exception {
+        ByteBuffer rgba = ByteBuffer.allocateDirect(WIDTH * HEIGHT * 4);
+        fillNoise(rgba, new Random(1), 1 << 24);
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(PngEncoder.encode(rgba, WIDTH, HEIGHT)));
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                assertEquals(rgbAt(rgba, x, y), image.getRGB(x, y) & 0xFFFFFF, "pixel " + x + "," + y);
+            }
+        }
+    }
+
+    @Test
+    void gifPlaysTheFramesInOrderWithTheirDelays() throws Exception {
+        Path file = folder.resolve("fight.gif");
+        CaptureWriter writer = new CaptureWriter(CaptureWriter.Format.GIF, file, WIDTH, HEIGHT, 30, 4, 3);
+        Random random = new Random(2);
+        int[][] colors = new int[5][];
+        // more distinct pixels than the 4096 codes a GIF table holds, so the encoder has to start over mid-frame
+        long[] times = { 0L, FRAME_NANOS, 2 * FRAME_NANOS, 5 * FRAME_NANOS, 6 * FRAME_NANOS };
+        for (int i = 0; i < times.length; i++) {
+            CaptureWriter.Frame frame = obtain(writer);
+            fillNoise(frame.pixels, random, 200);
+            colors[i] = new int[WIDTH * HEIGHT];
+            for (int p = 0; p < colors[i].length; p++) {
+                colors[i][p] = rgbAt(frame.pixels, p % WIDTH, p / WIDTH);
+            }
+            frame.nanos = times[i];
+            writer.submit(frame);
+        }
+        writer.finish();
+        assertTrue(writer.awaitDone(10_000L));
+
+        ImageReader reader = ImageIO.getImageReadersByFormatName("gif").next();
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            reader.setInput(in);
+            assertEquals(times.length, reader.getNumImages(true));
+            int[] expectedDelays = { 3, 4, 10, 3, 3 };
+            for (int i = 0; i < times.length; i++) {
+                BufferedImage image = reader.read(i);
+                for (int p = 0; p < colors[i].length; p++) {
+                    // 200 colours fit the palette, so only the 5-bit rounding is lost
+                    assertEquals(fiveBits(colors[i][p]), image.getRGB(p % WIDTH, p / WIDTH) & 0xFFFFFF,
+                        "frame " + i + " pixel " + p);
+                }
+                assertEquals(expectedDelays[i], delayOf(reader.getImageMetadata(i)), "delay of frame " + i);
+            }
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    @Test
+    void rawFillsTheFramesThatWereDropped() throws Exception {
+        Path file = folder.resolve("fight.rgba");
+        CaptureWriter writer = new CaptureWriter(CaptureWriter.Format.RAW, file, WIDTH, HEIGHT, 30, 2, 1);
+        long[] times = { 0L, FRAME_NANOS, 4 * FRAME_NANOS };
+        for (int i = 0; i < times.length; i++) {
+            CaptureWriter.Frame frame = obtain(writer);
+            frame.pixels.clear();
+            for (int p = 0; p < WIDTH * HEIGHT; p++) {
+                // every pixel says which frame it is from and, in blue, which row GL put it on
+                frame.pixels.put((byte) i).put((byte) 0).put((byte) (p / WIDTH)).put((byte) 0xFF);
+            }
+            frame.pixels.flip();
+            frame.nanos = times[i];
+            writer.submit(frame);
+        }
+        writer.finish();
+        assertTrue(writer.awaitDone(10_000L));
+
+        byte[] bytes = Files.readAllBytes(file);
+        int frameBytes = WIDTH * HEIGHT * 4;
+        assertEquals(5 * frameBytes, bytes.length, "the two missing frames are filled in");
+        int[] sources = { 0, 1, 2, 2, 2 };
+        for (int i = 0; i < sources.length; i++) {
+            assertEquals(sources[i], bytes[i * frameBytes]);
+            // top row first
+            assertEquals(HEIGHT - 1, bytes[i * frameBytes + 2]);
+        }
+    }
+
+    @Test
+    void givenBuffersAreReadWhereTheyLie() throws Exception {
+        Path file = folder.resolve("mapped.rgba");
+        ByteBuffer[] buffers = new ByteBuffer[3];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = ByteBuffer.allocateDirect(WIDTH * HEIGHT * 4);
+        }
+        CaptureWriter writer = new CaptureWriter(CaptureWriter.Format.RAW, file, WIDTH, HEIGHT, 30, buffers, 1);
+        for (int i = 0; i < 6; i++) {
+            CaptureWriter.Frame frame = obtain(writer);
+            assertSame(buffers[frame.index], frame.pixels);
+            // written straight into the buffer, the way the GPU writes a mapped pixel buffer
+            for (int p = 0; p < WIDTH * HEIGHT * 4; p++) {
+                buffers[frame.index].put(p, (byte) i);
+            }
+            frame.nanos = i * FRAME_NANOS;
+            writer.submit(frame);
+        }
+        writer.finish();
+        assertTrue(writer.awaitDone(10_000L));
+        assertTrue(writer.isDone());
+
+        byte[] bytes = Files.readAllBytes(file);
+        int frameBytes = WIDTH * HEIGHT * 4;
+        assertEquals(6 * frameBytes, bytes.length);
+        for (int i = 0; i < 6; i++) {
+            assertEquals(i, bytes[i * frameBytes + frameBytes - 1]);
+        }
+    }
+
+    /** The frames come back once the writer is done with them, so a small pool only has to wait for it. */
+    private static CaptureWriter.Frame obtain(CaptureWriter writer) throws InterruptedException {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        CaptureWriter.Frame frame;
+        while ((frame = writer.obtain()) == null) {
+            assertTrue(System.nanoTime() < deadline, "no frame came back to the pool");
+            Thread.sleep(1L);
+        }
+        return frame;
+    }
+
+    private static void fillNoise(ByteBuffer rgba, Random random, int colorCount) {
+        int[] palette = new int[Math.min(colorCount, 1 << 12)];
+        for (int i = 0; i < palette.length; i++) {
+            palette[i] = random.nextInt(1 << 24);
+        }
+        rgba.clear();
+        while (rgba.hasRemaining()) {
+            int rgb = colorCount >= 1 << 24 ? random.nextInt(1 << 24) : palette[random.nextInt(palette.length)];
+            rgba.put((byte) (rgb >> 16)).put((byte) (rgb >> 8)).put((byte) rgb).put((byte) 0xFF);
+        }
+        rgba.flip();
+    }
+
+    /** The colour at {@code x, y} from the top left, in a buffer laid out bottom row first like glReadPixels. */
+    private static int rgbAt(ByteBuffer rgba, int x, int y) {
+        int at = ((HEIGHT - 1 - y) * WIDTH + x) * 4;
+        return (rgba.get(at) & 0xFF) << 16 | (rgba.get(at + 1) & 0xFF) << 8 | rgba.get(at + 2) & 0xFF;
+    }
+
+    private static int fiveBits(int rgb) {
+        int r = rgb >> 19 & 0x1F, g = rgb >> 11 & 0x1F, b = rgb >> 3 & 0x1F;
+        return (r << 3 | r >> 2) << 16 | (g << 3 | g >> 2) << 8 | (b << 3 | b >> 2);
+    }
+
+    private static int delayOf(IIOMetadata metadata) {
+        Node root = metadata.getAsTree("javax_imageio_gif_image_1.0");
+        for (Node node = root.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node.getNodeName().equals("GraphicControlExtension")) {
+                return Integer.parseInt(node.getAttributes().getNamedItem("delayTime").getNodeValue());
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,119 @@
+package com.lalala;
+
+import com.badlogic.gdx.controllers.Controller;
+import com.badlogic.gdx.controllers.ControllerMapping;
+import com.badlogic.gdx.utils.TimeUtils;
+import com.lalala.input.ControllerInput;
+import com.lalala.input.InputQueue;
+import com.lalala.input.PlayerInput;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+
+import static com.lalala.input.InputAction.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ControllerInputTest {
+    private static final int AXIS_X = 0, AXIS_Y = 1, BUTTON_A = 10, BUTTON_START = 15;
+    private static final ControllerMapping MAPPING = new ControllerMapping(AXIS_X, AXIS_Y, 2, 3,
+        BUTTON_A, 11, 12, 13, 14, BUTTON_START, 16, 17, 18, 19, 20, 21, 22, 23, 24, 25) {};
+
+    private final InputQueue queue = new InputQueue(64);
+    private final ControllerInput controllers = new ControllerInput(queue);
+    private PlayerInput input = new PlayerInput();
+
+    @Test
+    void stickHasADeadzoneAndSeparatePressAndReleasePoints() {
+        Controller pad = pad();
+        // resting noise
+        controllers.axisMoved(pad, AXIS_X, 0.2f);
+        controllers.axisMoved(pad, AXIS_Y, 0.2f);
+        assertFalse(drain().isHeld(RIGHT));
+        // out of the deadzone, but the rescaled push is still short of the press point
+        controllers.axisMoved(pad, AXIS_Y, 0f);
+        controllers.axisMoved(pad, AXIS_X, 0.6f);
+        assertFalse(drain().isHeld(RIGHT));
+        controllers.axisMoved(pad, AXIS_X, 0.7f);
+        assertTrue(drain().isHeld(RIGHT));
+        // a thumb easing off a little stays held until it passes the release point
+        controllers.axisMoved(pad, AXIS_X, 0.55f);
+        assertTrue(drain().isHeld(RIGHT));
+        controllers.axisMoved(pad, AXIS_X, 0.5f);
+        assertFalse(drain().isHeld(RIGHT));
+        controllers.axisMoved(pad, AXIS_X, -1f);
+        assertTrue(drain().isHeld(LEFT));
+        // stick down is positive y
+        controllers.axisMoved(pad, AXIS_X, 0f);
+        assertFalse(drain().isHeld(LEFT));
+        controllers.axisMoved(pad, AXIS_Y, 1f);
+        assertTrue(drain().isHeld(DOWN));
+    }
+
+    @Test
+    void padPressReachesTheTickThatDrainsIt() {
+        TestArena arena = new TestArena();
+        try {
+            Player player = arena.spawnPlayer(0f);
+            input = arena.input;
+            Controller pad = pad();
+            // pressed and released between two ticks; the tick right after still jumps on it, as it would on a key
+            controllers.buttonDown(pad, BUTTON_A);
+            controllers.buttonUp(pad, BUTTON_A);
+            drain();
+            arena.step();
+            assertTrue(player.getBody().getLinearVelocity().y > 0f, "the jump waited for another tick");
+        } finally {
+            arena.dispose();
+        }
+
+        controllers.buttonDown(pad(), BUTTON_START);
+        assertTrue(controllers.consumePauseRequest());
+        assertFalse(controllers.consumePauseRequest());
+    }
+
+    @Test
+    void latencyIsCountedForThePadThatPressed() {
+        Controller first = pad(), second = pad();
+        controllers.connected(first);
+        controllers.connected(second);
+        controllers.buttonDown(second, BUTTON_A);
+        drain();
+        assertTrue(input.isBuffered(JUMP, 0.1f));
+        input.consume(JUMP);
+
+        int[] count = new int[PlayerInput.MAX_DEVICES];
+        long[] total = new long[PlayerInput.MAX_DEVICES], max = new long[PlayerInput.MAX_DEVICES];
+        input.drainLatency(count, total, max);
+        assertEquals(0, count[PlayerInput.KEYBOARD]);
+        assertEquals(0, count[1]);
+        assertEquals(1, count[2]);
+        assertTrue(max[2] >= 0L && total[2] == max[2]);
+
+        // unplugging releases what the pad held
+        controllers.buttonDown(second, BUTTON_A);
+        controllers.disconnected(second);
+        assertFalse(drain().isHeld(JUMP));
+    }
+
+    private PlayerInput drain() {
+        queue.drainTo(input, TimeUtils.nanoTime());
+        return input;
+    }
+
+    /** A pad with {@link #MAPPING}; ControllerInput only ever asks it for the mapping. */
+    private static Controller pad() {
+        Class<?>[] types = { Controller.class };
+        return (Controller) Proxy.newProxyInstance(Controller.class.getClassLoader(), types, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getMapping":
+                    return MAPPING;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+}
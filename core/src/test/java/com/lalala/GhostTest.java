@@ -0,0 +1,108 @@
+package com.lalala;
+
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static com.lalala.input.InputAction.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class GhostTest {
+    private TestArena arena;
+    private Player player;
+    private final GhostRecorder recorder = new GhostRecorder();
+    private final FloatArray xs = new FloatArray(), ys = new FloatArray();
+
+    @BeforeEach
+    void setUp() {
+        arena = new TestArena();
+        player = arena.spawnPlayer(0f);
+    }
+
+    @AfterEach
+    void tearDown() {
+        arena.dispose();
+    }
+
+    @Test
+    void replayFollowsTheRecordedPath() {
+        // walk right, jump twice on the way, dash, then walk back and attack
+        arena.input.set(RIGHT, true);
+        record(20);
+        arena.tap(JUMP);
+        sample();
+        record(25);
+        arena.tap(JUMP);
+        sample();
+        record(60);
+        arena.tap(DASH);
+        sample();
+        record(40);
+        arena.input.set(RIGHT, false);
+        arena.input.set(LEFT, true);
+        record(90);
+        arena.input.set(LEFT, false);
+        arena.tap(ATTACK);
+        sample();
+        record(60);
+
+        byte[] data = recorder.finish();
+        GhostReplay ghost = new GhostReplay(data, TestArena.animations());
+        for (int i = 0; i < xs.size; i++) {
+            ghost.advanceTo(i + 1);
+            assertEquals(xs.get(i), ghost.getX(), 0.02f, "x at tick " + i);
+            assertEquals(ys.get(i), ghost.getY(), 0.02f, "y at tick " + i);
+        }
+
+        // well under the few KiB a minute of play is allowed
+        assertTrue(data.length * 3600f / xs.size < 8 * 1024, data.length + " bytes for " + xs.size + " ticks");
+    }
+
+    @Test
+    void standingStillCostsLessThanAByteATick() {
+        record(600);
+        // nothing moves; only the idle animation's frame changes and the runs between them are stored
+        int length = recorder.finish().length;
+        assertTrue(length < 600, length + " bytes");
+    }
+
+    @Test
+    void aCutShortGhostIsRejectedWhenLoaded() {
+        arena.input.set(RIGHT, true);
+        record(30);
+        arena.tap(JUMP);
+        sample();
+        record(60);
+        byte[] data = recorder.finish();
+        int rejected = 0;
+        for (int length = 0; length < data.length; length++) {
+            GhostReplay ghost;
+            try {
+                ghost = new GhostReplay(Arrays.copyOf(data, length), TestArena.animations());
+            } catch (GdxRuntimeException e) {
+                rejected++;
+                continue;
+            }
+            // a cut between two ticks is a shorter run, and plays to its end
+            ghost.advanceTo(xs.size);
+        }
+        assertTrue(rejected > 0, "no cut was noticed");
+    }
+
+    private void record(int ticks) {
+        for (int i = 0; i < ticks; i++) {
+            arena.step();
+            sample();
+        }
+    }
+
+    private void sample() {
+        recorder.sample(player);
+        xs.add(player.getPosition().x);
+        ys.add(player.getPosition().y);
+    }
+}
@@ -0,0 +1,123 @@
+package com.lalala;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.IntArray;
+import com.lalala.events.EventBus;
+import com.lalala.events.GameEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static com.lalala.input.InputAction.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PlayerTest {
+    // a player tick without bosses or level has no excuse to come near the 16.7 ms step
+    private static final double TICK_BUDGET_MS = 1.0;
+
+    private TestArena arena;
+    private Player player;
+
+    @BeforeEach
+    void setUp() {
+        arena = new TestArena();
+        player = arena.spawnPlayer(0f);
+    }
+
+    @AfterEach
+    void tearDown() {
+        arena.dispose();
+    }
+
+    @Test
+    void standsOnTheFloor() {
+        assertFalse(player.isInAir());
+        assertEquals(0.5f, player.getPosition().y, 0.02f);
+    }
+
+    @Test
+    void jumpReachesTwoUnits() {
+        // v = 10 against g = 25 peaks at v^2 / 2g = 2, a little less with the discrete step
+        float height = peakAfter(player.getPosition().y);
+        assertEquals(1.92f, height, 0.1f);
+        arena.assertTickBudget(TICK_BUDGET_MS);
+    }
+
+    @Test
+    void doubleJumpFromTheApexDoublesTheHeight() {
+        float floor = player.getPosition().y;
+        float first = peakAfter(floor);
+        float second = peakAfter(floor + first);
+        assertEquals(first * 2f, first + second, 0.1f);
+
+        // no third jump before landing
+        arena.tap(JUMP);
+        assertTrue(player.getBody().getLinearVelocity().y < 0f);
+        arena.assertTickBudget(TICK_BUDGET_MS);
+    }
+
+    @Test
+    void jumpPressedJustBeforeLandingIsBuffered() {
+        float floor = player.getPosition().y;
+        float first = peakAfter(floor);
+        peakAfter(floor + first);
+        // both jumps spent: a press a few ticks above the floor waits in the buffer and fires on touchdown
+        while (player.getPosition().y - floor > 0.3f) {
+            arena.step();
+        }
+        arena.tap(JUMP);
+        arena.step(8);
+        assertTrue(player.getBody().getLinearVelocity().y > 0f || player.getPosition().y - floor > 0.3f,
+            "buffered jump did not fire on landing");
+    }
+
+    @Test
+    void dashIgnoresHits() {
+        Rectangle hit = new Rectangle(player.getPosition().x - 1f, player.getPosition().y - 1f, 2f, 2f);
+        arena.tap(DASH);
+        assertTrue(player.isDashing());
+        player.tryHit(hit);
+        assertEquals(20, player.getHealth());
+
+        arena.step(20);
+        assertFalse(player.isDashing());
+        hit.setPosition(player.getPosition().x - 1f, player.getPosition().y - 1f);
+        player.tryHit(hit);
+        assertEquals(19, player.getHealth());
+        arena.assertTickBudget(TICK_BUDGET_MS);
+    }
+
+    @Test
+    void hitsWithinTheHitIntervalCountOnce() {
+        IntArray healthAfterHits = new IntArray();
+        EventBus.Subscription hits = arena.events.subscribe(event -> {
+            if (event.type == GameEvent.Type.PLAYER_HIT) healthAfterHits.add(event.value);
+        });
+        Rectangle hit = new Rectangle(-1f, 0f, 2f, 2f);
+        player.tryHit(hit);
+        player.tryHit(hit);
+        assertEquals(19, player.getHealth());
+
+        // HIT_INTERVAL is half a second: 30 ticks
+        arena.step(29);
+        player.tryHit(hit);
+        assertEquals(19, player.getHealth());
+        arena.step(2);
+        player.tryHit(hit);
+        assertEquals(18, player.getHealth());
+        hits.poll();
+        assertEquals(new IntArray(new int[] {19, 18}), healthAfterHits);
+        arena.assertTickBudget(TICK_BUDGET_MS);
+    }
+
+    /** Jumps, and returns how far above {@code from} the player got before falling again. */
+    private float peakAfter(float from) {
+        arena.tap(JUMP);
+        float peak = player.getPosition().y;
+        while (player.getBody().getLinearVelocity().y > 0f) {
+            arena.step();
+            peak = Math.max(peak, player.getPosition().y);
+        }
+        return peak - from;
+    }
+}
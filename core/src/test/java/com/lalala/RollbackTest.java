@@ -0,0 +1,170 @@
+package com.lalala;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.utils.LongArray;
+import com.lalala.input.InputAction;
+import com.lalala.input.InputQueue;
+import com.lalala.input.PlayerInput;
+import com.lalala.net.RollbackSession;
+import com.lalala.net.UdpLink;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import static com.lalala.input.InputAction.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RollbackTest {
+    private static final int TICKS = 600;
+    private static final long STEP_NANOS = (long) (Simulation.STEP * 1_000_000_000L);
+    // a rollback of the full window shares the 16.7 ms frame with drawing, so it gets half
+    private static final double ROLLBACK_BUDGET_MS = 8.0;
+
+    @Test
+    void bothSidesAgreeOverALossyLoopback() {
+        fight(null, (host, join) -> {
+            assertAgree(host, join);
+            // with 20 ms each way, guesses go wrong and get corrected, but never further back than the window
+            assertTrue(host.getRollbacks() > 0 && join.getRollbacks() > 0);
+            assertTrue(host.getDeepestRollback() <= RollbackSession.MAX_ROLLBACK);
+        });
+    }
+
+    @Test
+    void aSideThatDriftsTakesOverTheHostsState() {
+        // far less than a thousandth, so only a checksum of every bit notices
+        fight((hostSimulation, joinSimulation) -> change(joinSimulation, false, state -> state.x += 1e-4f),
+            (host, join) -> {
+                assertTrue(host.getDesyncs() > 0, "the drift went unnoticed");
+                assertTrue(join.getResyncs() > 0, "the joining side never took over the host's state");
+                assertAgree(host, join);
+            });
+    }
+
+    @Test
+    void theHostDecidesHowTheFightEnds() {
+        // each side believes the other one fell; only one of them can be right
+        fight((hostSimulation, joinSimulation) -> {
+            change(hostSimulation, true, state -> state.health = 0);
+            change(joinSimulation, false, state -> state.health = 0);
+        }, (host, join) -> {
+            assertEquals(RenderState.Outcome.WON, host.getOutcome());
+            assertEquals(RenderState.Outcome.LOST, join.getOutcome());
+        });
+    }
+
+    @Test
+    void fullRollbackFitsInHalfAFrame() {
+        Simulation simulation = new Simulation(versusConfig(), TestArena.animations(),
+            Level.load(Gdx.files.internal(versusConfig().levelFile)));
+        Simulation.Snapshot snapshot = new Simulation.Snapshot();
+        LongArray nanos = new LongArray();
+        try {
+            simulation.getInput().set(LEFT, true);
+            simulation.getOpponentInput().set(RIGHT, true);
+            for (int i = 0; i < 60; i++) {
+                simulation.tick();
+            }
+            for (int round = 0; round < 200; round++) {
+                simulation.save(snapshot);
+                for (int i = 0; i < RollbackSession.MAX_ROLLBACK; i++) {
+                    simulation.tick();
+                }
+                long start = System.nanoTime();
+                simulation.restore(snapshot);
+                for (int i = 0; i < RollbackSession.MAX_ROLLBACK; i++) {
+                    simulation.tick();
+                }
+                nanos.add(System.nanoTime() - start);
+            }
+        } finally {
+            simulation.dispose();
+        }
+        // the first rounds run before the JIT has compiled anything
+        long[] sorted = Arrays.copyOfRange(nanos.items, 20, nanos.size);
+        Arrays.sort(sorted);
+        double p95 = sorted[(int) (sorted.length * 0.95f)] / 1_000_000.0;
+        assertTrue(p95 < ROLLBACK_BUDGET_MS, String.format("p95 rollback took %.3f ms", p95));
+    }
+
+    /**
+     * Plays the scripted fight between a hosting and a joining session over a lossy loopback, until both have
+     * confirmed {@link #TICKS} ticks or both have ended, then hands them to {@code check}. {@code setUp}, if any, gets
+     * the two simulations first.
+     */
+    private static void fight(BiConsumer<Simulation, Simulation> setUp,
+        BiConsumer<RollbackSession, RollbackSession> check) {
+        AnimationLibrary animations = TestArena.animations();
+        Level level = Level.load(Gdx.files.internal(versusConfig().levelFile));
+        UdpLink hostLink = UdpLink.host(0, 20, 10, 10f);
+        UdpLink joinLink = UdpLink.join("127.0.0.1:" + hostLink.getLocalPort(), 20, 10, 10f);
+        Simulation hostSimulation = new Simulation(versusConfig(), animations, level);
+        Simulation joinSimulation = new Simulation(versusConfig(), animations, level);
+        if (setUp != null) setUp.accept(hostSimulation, joinSimulation);
+        RollbackSession host = new RollbackSession(hostSimulation, hostLink, 0);
+        RollbackSession join = new RollbackSession(joinSimulation, joinLink, 1);
+        InputQueue hostQueue = new InputQueue(64), joinQueue = new InputQueue(64);
+        try {
+            int hostScripted = -1, joinScripted = -1;
+            long deadline = System.nanoTime() + 30_000_000_000L;
+            // no frame pacing: each side ticks as soon as the other's input allows
+            while ((host.getConfirmedTick() < TICKS || join.getConfirmedTick() < TICKS)
+                && (host.getOutcome() == RenderState.Outcome.NONE || join.getOutcome() == RenderState.Outcome.NONE)
+                && System.nanoTime() < deadline) {
+                if (host.getTick() > hostScripted) {
+                    hostScripted = host.getTick();
+                    script(hostQueue, hostScripted, LEFT, 90);
+                }
+                if (join.getTick() > joinScripted) {
+                    joinScripted = join.getTick();
+                    script(joinQueue, joinScripted, RIGHT, 70);
+                }
+                host.advance(hostQueue, hostScripted * STEP_NANOS);
+                join.advance(joinQueue, joinScripted * STEP_NANOS);
+            }
+            check.accept(host, join);
+        } finally {
+            host.dispose();
+            join.dispose();
+            hostSimulation.dispose();
+            joinSimulation.dispose();
+        }
+    }
+
+    /** The two sides are the same to the bit at a late tick, and no more than one of them won. */
+    private static void assertAgree(RollbackSession host, RollbackSession join) {
+        int tick = join.getAgreedTick();
+        assertTrue(tick > TICKS / 2, "only agreed up to tick " + tick);
+        assertEquals(host.getChecksum(tick), join.getChecksum(tick), "state at tick " + tick);
+        assertFalse(host.getOutcome() == RenderState.Outcome.WON && join.getOutcome() == RenderState.Outcome.WON);
+    }
+
+    /** Changes the saved state of the simulation's first player, or of its opponent, and puts it back. */
+    private static void change(Simulation simulation, boolean opponent, Consumer<Player.Snapshot> change) {
+        Simulation.Snapshot snapshot = new Simulation.Snapshot();
+        simulation.save(snapshot);
+        change.accept(opponent ? snapshot.opponent : snapshot.player);
+        simulation.restore(snapshot);
+    }
+
+    /** Walks towards the other player, jumping and attacking at different moments on each side. */
+    private static void script(InputQueue queue, int tick, InputAction towards, int cycle) {
+        long time = tick * STEP_NANOS;
+        int t = tick % cycle;
+        if (t == 0) queue.offer(towards, true, time, PlayerInput.KEYBOARD);
+        if (t == cycle / 2) queue.offer(towards, false, time, PlayerInput.KEYBOARD);
+        if (t == 10 || t == cycle / 2 + 5) queue.offer(ATTACK, true, time, PlayerInput.KEYBOARD);
+        if (t == 12 || t == cycle / 2 + 7) queue.offer(ATTACK, false, time, PlayerInput.KEYBOARD);
+        if (t == 30) queue.offer(JUMP, true, time, PlayerInput.KEYBOARD);
+        if (t == 33) queue.offer(JUMP, false, time, PlayerInput.KEYBOARD);
+    }
+
+    private static GameConfig versusConfig() {
+        GameConfig config = new GameConfig();
+        // only marks the fight as versus; the simulation itself never opens the port
+        config.versusHostPort = 1;
+        return config;
+    }
+}
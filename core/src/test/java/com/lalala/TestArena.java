@@ -0,0 +1,139 @@
+package com.lalala;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.*;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.LongArray;
+import com.lalala.events.EventBus;
+import com.lalala.input.InputAction;
+import com.lalala.input.PlayerInput;
+
+import java.util.Arrays;
+
+import static com.lalala.Boss.*;
+
+/**
+ * A flat floor with its top at y = 0, stepped the way {@link Simulation#tick} steps the real fight, so
+ * movement and combat rules can be checked tick by tick without a window. Each step is timed; see
+ * {@link #assertTickBudget}.
+ */
+class TestArena implements ContactListener, Disposable {
+    static final float STEP = Simulation.STEP;
+
+    private static AnimationLibrary animations;
+
+    final World world = new World(new Vector2(0, -25f), true);
+    final PlayerInput input = new PlayerInput();
+    final EventBus events = new EventBus(256);
+    Player player;
+    Boss boss;
+
+    private final LongArray tickNanos = new LongArray();
+
+    TestArena() {
+        world.setContactListener(this);
+
+        BodyDef bodyDef = new BodyDef();
+        bodyDef.position.set(0f, -0.5f);
+        Body ground = world.createBody(bodyDef);
+        PolygonShape shape = new PolygonShape();
+        shape.setAsBox(50f, 0.5f);
+        FixtureDef fixtureDef = new FixtureDef();
+        fixtureDef.shape = shape;
+        fixtureDef.filter.categoryBits = CATEGORY_GROUND;
+        fixtureDef.filter.maskBits = CATEGORY_PLAYER | CATEGORY_BOSS;
+        ground.createFixture(fixtureDef);
+        shape.dispose();
+    }
+
+    /** Starts a headless backend once per test JVM and loads the animations the way HeadlessSmoke does. */
+    static synchronized AnimationLibrary animations() {
+        if (animations == null) {
+            HeadlessApplicationConfiguration config = new HeadlessApplicationConfiguration();
+            // no render loop; the tests drive everything themselves
+            config.updatesPerSecond = -1;
+            new HeadlessApplication(new ApplicationAdapter() {}, config);
+            HeadlessGL.install();
+            animations = new AnimationLibrary(Gdx.files.internal("animations.json"), 1f / STEP);
+        }
+        return animations;
+    }
+
+    /** Places the player standing on the floor at {@code x} and lets it settle. */
+    Player spawnPlayer(float x) {
+        player = new Player(world, animations(), events, x, 0.5f);
+        settle();
+        return player;
+    }
+
+    /** Places a boss standing on the floor at {@code x} and lets it settle. */
+    Boss spawnBoss(float x) {
+        boss = new Boss(world, animations(), events, x, 3f);
+        settle();
+        return boss;
+    }
+
+    private void settle() {
+        for (int i = 0; i < 60; i++) {
+            step();
+        }
+        tickNanos.clear();
+    }
+
+    /** One fixed tick: player, then boss, then physics, in Simulation's order. */
+    void step() {
+        long start = System.nanoTime();
+        if (player != null) {
+            player.update(input, STEP);
+            input.endTick(STEP);
+        }
+        if (boss != null) {
+            boss.update(player != null ? player.getPosition() : Vector2.Zero, STEP);
+        }
+        world.step(STEP, 6, 2);
+        tickNanos.add(System.nanoTime() - start);
+    }
+
+    void step(int ticks) {
+        for (int i = 0; i < ticks; i++) {
+            step();
+        }
+    }
+
+    /** Presses and releases {@code action} within a single tick. */
+    void tap(InputAction action) {
+        input.set(action, true);
+        step();
+        input.set(action, false);
+    }
+
+    /**
+     * Fails if the slowest 5% of timed ticks took longer than {@code budgetMillis}. The first ticks are left
+     * out while the JIT warms up; the 95th percentile rather than the maximum keeps a stray GC pause from
+     * failing the build.
+     */
+    void assertTickBudget(double budgetMillis) {
+        int warmUp = Math.min(10, tickNanos.size / 2);
+        long[] sorted = Arrays.copyOfRange(tickNanos.items, warmUp, tickNanos.size);
+        if (sorted.length == 0) return;
+        Arrays.sort(sorted);
+        double p95 = sorted[(int) (sorted.length * 0.95f)] / 1_000_000.0;
+        if (p95 > budgetMillis) {
+            throw new AssertionError(String.format("p95 tick took %.3f ms, budget is %.3f ms", p95, budgetMillis));
+        }
+    }
+
+    @Override
+    public void dispose() {
+        world.dispose();
+    }
+
+    @Override public void beginContact(Contact contact) { if (player != null) player.beginContact(contact); }
+    @Override public void endContact(Contact contact) { if (player != null) player.endContact(contact); }
+    @Override public void preSolve(Contact contact, Manifold manifold) {}
+    @Override public void postSolve(Contact contact, ContactImpulse impulse) {}
+}
@@ -0,0 +1,97 @@
+package com.lalala.lwjgl3;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.lalala.AnimationLibrary;
+import com.lalala.GameConfig;
+import com.lalala.HeadlessGL;
+import com.lalala.Level;
+import com.lalala.RenderState;
+import com.lalala.Simulation;
+import com.lalala.input.InputAction;
+import com.lalala.input.PlayerInput;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Started with {@code --smoke}: loads every animation and the default level, plays a scripted fight without a window and
+ * opens an in-memory SQLite database, then exits with status 0 on success.
+ * This touches the asset, Box2D, gdx-ai reflection and JDBC paths, which is what usually breaks
+ * in a native image, and reports startup time and peak memory for comparing JVM and native builds.
+ */
+public class HeadlessSmoke extends ApplicationAdapter {
+    private static final int TICKS = 600;
+
+    private boolean failed = false;
+
+    @Override
+    public void create() {
+        try {
+            HeadlessGL.install();
+            AnimationLibrary animations = new AnimationLibrary(Gdx.files.internal("animations.json"), 1f / Simulation.STEP);
+            GameConfig config = new GameConfig();
+            Level level = Level.load(Gdx.files.internal(config.levelFile));
+            Simulation simulation = new Simulation(config, animations, level);
+            Gdx.app.log("Smoke", "first tick " + millisSinceJvmStart() + " ms after JVM start");
+
+            int ticks = 0;
+            RenderState.Outcome outcome = RenderState.Outcome.NONE;
+            PlayerInput input = simulation.getInput();
+            while (ticks < TICKS && outcome == RenderState.Outcome.NONE) {
+                boolean right = (ticks / 120) % 2 == 0;
+                input.set(InputAction.LEFT, !right);
+                input.set(InputAction.RIGHT, right);
+                input.set(InputAction.JUMP, ticks % 45 == 0);
+                input.set(InputAction.DASH, ticks % 90 == 30);
+                input.set(InputAction.ATTACK, ticks % 20 == 10);
+                outcome = simulation.tick();
+                ticks++;
+            }
+            Gdx.app.log("Smoke", ticks + " ticks simulated, outcome " + outcome);
+
+            try (Connection conn = DriverManager.getConnection("jdbc:sqlite::memory:");
+                 Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT sqlite_version()")) {
+                rs.next();
+                Gdx.app.log("Smoke", "sqlite " + rs.getString(1));
+            }
+
+            simulation.dispose();
+            animations.dispose();
+            Gdx.app.log("Smoke", "OK in " + millisSinceJvmStart() + " ms, peak RSS " + peakRss());
+        } catch (Throwable t) {
+            failed = true;
+            Gdx.app.error("Smoke", "FAILED", t);
+        }
+        Gdx.app.exit();
+    }
+
+    @Override
+    public void dispose() {
+        System.exit(failed ? 1 : 0);
+    }
+
+    private static long millisSinceJvmStart() {
+        return System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+    }
+
+    /** Peak resident set size as reported by Linux; other platforms report "n/a". */
+    private static String peakRss() {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+                if (line.startsWith("VmHWM:")) {
+                    return line.substring("VmHWM:".length()).trim();
+                }
+            }
+        } catch (IOException | RuntimeException ignored) {
+        }
+        return "n/a";
+    }
+}
@@ -1,30 +1,199 @@
 package com.lalala.lwjgl3;
 
+import com.badlogic.gdx.ApplicationListener;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
 import com.badlogic.gdx.backends.lwjgl3.Lwjgl3Application;
 import com.badlogic.gdx.backends.lwjgl3.Lwjgl3ApplicationConfiguration;
-import com.lalala.GameScreen;
+import com.lalala.GameConfig;
+import com.lalala.Lighting;
 import com.lalala.MainGame;
+import com.lalala.capture.CaptureWriter;
+
+import java.util.Arrays;
+import java.util.Locale;
 
 /** Launches the desktop (LWJGL3) application. */
 public class Lwjgl3Launcher {
+    private static final String USAGE = "Usage: lwjgl3 [--arena N] [--profile] [--no-pipeline] [--exit-after-frames N]"
+        + " [--level FILE] [--lighting off|low|medium|high] [--texture-budget MB] [--no-warm-up] [--record FILE]"
+        + " [--timedemo FILE [--csv FILE]] [--log LEVELS] [--host PORT | --join HOST:PORT] [--net-latency MS]"
+        + " [--net-jitter MS] [--net-loss PERCENT] [--spectate PORT] [--capture gif|png|raw] [--capture-fps N]";
+
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--smoke")) {
+            // no window, so none of the macOS first-thread handling is needed
+            new HeadlessApplication(new HeadlessSmoke(), new HeadlessApplicationConfiguration());
+            return;
+        }
         if (StartupHelper.startNewJvmIfRequired()) return; // This handles macOS support and helps on Windows.
-        createApplication();
+        createApplication(parseArguments(args));
+    }
+
+    private static Lwjgl3Application createApplication(GameConfig config) {
+        MainGame game = new MainGame(config);
+        SpectatorServer spectators = config.spectatorPort > 0 ? new SpectatorServer(config.spectatorPort) : null;
+        game.setStateObserver(spectators);
+        ApplicationListener listener = config.isTimedemo() ? new Timedemo(game, config.timedemoCsv) : game;
+        if (config.captureFormat != null) listener = new ScreenCapture(listener, config);
+        // returns once the window is closed
+        Lwjgl3Application application = new Lwjgl3Application(listener, getDefaultConfiguration(config));
+        if (spectators != null) spectators.dispose();
+        return application;
+    }
+
+    /**
+     * Supported options ({@code --smoke} is handled in main and must come first):
+     * {@code --arena N} starts the stress arena with up to N bosses (implies {@code --profile}),
+     * {@code --profile} logs frame statistics once per second,
+     * {@code --no-pipeline} simulates on the render thread,
+     * {@code --exit-after-frames N} quits after N rendered frames,
+     * {@code --level FILE} loads another Tiled map from the assets folder,
+     * {@code --lighting off|low|medium|high} picks the starting lighting quality,
+     * {@code --texture-budget MB} caps the animation textures kept in memory,
+     * {@code --no-warm-up} skips the JIT warm-up behind the loading screen,
+     * {@code --record FILE} saves the fight's input for replaying,
+     * {@code --timedemo FILE} replays a recorded fight as fast as possible and writes frame statistics,
+     * {@code --csv FILE} is where the timedemo writes them,
+     * {@code --log LEVELS} sets log levels, e.g. {@code info,boss=debug},
+     * {@code --host PORT} hosts a versus fight on a UDP port, {@code --join HOST:PORT} joins one,
+     * {@code --net-latency MS}, {@code --net-jitter MS} and {@code --net-loss PERCENT} delay and drop this side's
+     * versus packets, for trying rollback on one machine,
+     * {@code --spectate PORT} broadcasts the fights to spectators connecting to a local TCP port,
+     * {@code --capture gif|png|raw} lets F9 record the screen (a timedemo records from the start),
+     * {@code --capture-fps N} sets the recording rate.
+     * An option missing its value, or given one that isn't a number, prints the usage and quits.
+     */
+    private static GameConfig parseArguments(String[] args) {
+        GameConfig config = new GameConfig();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--arena":
+                    config.arenaBossCount = intValue(args, ++i);
+                    config.profile = true;
+                    break;
+                case "--profile":
+                    config.profile = true;
+                    break;
+                case "--no-pipeline":
+                    config.pipelinedSimulation = false;
+                    break;
+                case "--exit-after-frames":
+                    config.exitAfterFrames = intValue(args, ++i);
+                    break;
+                case "--level":
+                    config.levelFile = value(args, ++i);
+                    break;
+                case "--lighting":
+                    String quality = value(args, ++i);
+                    try {
+                        config.lightingQuality = Lighting.Quality.valueOf(quality.toUpperCase(Locale.ROOT));
+                    } catch (IllegalArgumentException e) {
+                        System.err.println("Unknown lighting quality " + quality + ", choose from "
+                            + Arrays.toString(Lighting.Quality.values()).toLowerCase(Locale.ROOT)
+                            + "; using " + config.lightingQuality.name().toLowerCase(Locale.ROOT));
+                    }
+                    break;
+                case "--no-warm-up":
+                    config.warmUp = false;
+                    break;
+                case "--record":
+                    config.recordFile = value(args, ++i);
+                    break;
+                case "--timedemo":
+                    config.timedemoFile = value(args, ++i);
+                    break;
+                case "--csv":
+                    config.timedemoCsv = value(args, ++i);
+                    break;
+                case "--log":
+                    config.logLevels = value(args, ++i);
+                    break;
+                case "--host":
+                    config.versusHostPort = intValue(args, ++i);
+                    break;
+                case "--join":
+                    config.versusJoin = value(args, ++i);
+                    break;
+                case "--net-latency":
+                    config.netLatencyMs = intValue(args, ++i);
+                    break;
+                case "--net-jitter":
+                    config.netJitterMs = intValue(args, ++i);
+                    break;
+                case "--net-loss":
+                    config.netLossPercent = floatValue(args, ++i);
+                    break;
+                case "--spectate":
+                    config.spectatorPort = intValue(args, ++i);
+                    break;
+                case "--capture":
+                    String format = value(args, ++i);
+                    try {
+                        config.captureFormat = CaptureWriter.Format.valueOf(format.toUpperCase(Locale.ROOT));
+                    } catch (IllegalArgumentException e) {
+                        System.err.println("Unknown capture format " + format + ", choose from "
+                            + Arrays.toString(CaptureWriter.Format.values()).toLowerCase(Locale.ROOT)
+                            + "; screen capture is off");
+                    }
+                    break;
+                case "--capture-fps":
+                    config.captureFps = intValue(args, ++i);
+                    break;
+                case "--texture-budget":
+                    config.textureBudgetMb = intValue(args, ++i);
+                    break;
+                default:
+                    System.err.println("Ignoring unknown argument: " + args[i]);
+            }
+        }
+        return config;
+    }
+
+    /** The value of option {@code args[i - 1]}. */
+    private static String value(String[] args, int i) {
+        if (i >= args.length) usageError(args[i - 1] + " needs a value");
+        return args[i];
+    }
+
+    private static int intValue(String[] args, int i) {
+        String value = value(args, i);
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            usageError(args[i - 1] + " takes a whole number, not " + value);
+            return 0;
+        }
+    }
+
+    private static float floatValue(String[] args, int i) {
+        String value = value(args, i);
+        try {
+            return Float.parseFloat(value);
+        } catch (NumberFormatException e) {
+            usageError(args[i - 1] + " takes a number, not " + value);
+            return 0f;
+        }
     }
 
-    private static Lwjgl3Application createApplication() {
-    return new Lwjgl3Application(new MainGame(), getDefaultConfiguration());
+    private static void usageError(String message) {
+        System.err.println(message);
+        System.err.println(USAGE);
+        System.exit(2);
     }
 
-    private static Lwjgl3ApplicationConfiguration getDefaultConfiguration() {
+    private static Lwjgl3ApplicationConfiguration getDefaultConfiguration(GameConfig config) {
         Lwjgl3ApplicationConfiguration configuration = new Lwjgl3ApplicationConfiguration();
         configuration.setTitle("thefristGdx-lift");
+        //// The game has no sound; skipping OpenAL saves loading its natives at startup.
+        configuration.disableAudio(true);
         //// Vsync limits the frames per second to what your hardware can display, and helps eliminate
         //// screen tearing. This setting doesn't always work on Linux, so the line after is a safeguard.
-        configuration.useVsync(true);
+        configuration.useVsync(!config.isTimedemo());
         //// Limits FPS to the refresh rate of the currently active monitor, plus 1 to try to match fractional
         //// refresh rates. The Vsync setting above should limit the actual FPS to match the monitor.
-        configuration.setForegroundFPS(Lwjgl3ApplicationConfiguration.getDisplayMode().refreshRate + 1);
+        //// A timedemo measures how fast frames can be made, so it runs with neither limit.
+        configuration.setForegroundFPS(config.isTimedemo() ? 0 : Lwjgl3ApplicationConfiguration.getDisplayMode().refreshRate + 1);
         //// If you remove the above line and set Vsync to false, you can get unlimited FPS, which can be
         //// useful for testing performance, but can also be very stressful to some hardware.
         //// You may also need to configure GPU drivers to fully disable Vsync; this can cause screen tearing.
@@ -0,0 +1,390 @@
+package com.lalala.lwjgl3;
+
+import com.badlogic.gdx.ApplicationListener;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Input;
+import com.badlogic.gdx.utils.TimeUtils;
+import com.lalala.FrameTimes;
+import com.lalala.GameConfig;
+import com.lalala.Simulation;
+import com.lalala.capture.CaptureWriter;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL21;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL32;
+import org.lwjgl.opengl.GL44;
+import org.lwjgl.opengl.GLCapabilities;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+/**
+ * Wraps the game for {@code --capture}: F9 starts and stops recording the screen to a GIF, a PNG sequence or raw
+ * frames, and a timedemo is recorded from its first frame. After each frame is drawn, glReadPixels copies it into
+ * a pixel buffer object, which returns at once and lets the GPU do the copy when it gets there. A later frame checks
+ * the buffer's fence and hands the pixels to the {@link CaptureWriter}'s encoders. Nothing here waits on the GPU or
+ * the encoders: when every buffer is still in flight, or the pool is empty, the frame is dropped and counted.
+ * <p>
+ * Where the driver has buffer storage (GL 4.4 or ARB_buffer_storage), each frame of the writer's pool is a pixel
+ * buffer mapped once for the whole recording, and the encoders read the GPU's copy where it lies, so the GL thread
+ * touches no pixels at all. Elsewhere a finished buffer is mapped and copied into a pool frame on the GL thread,
+ * which costs a few milliseconds for a large window; those copies are held to {@link #COPY_BUDGET_NANOS} a frame on
+ * average by dropping frames, and the drops are reported when the recording stops.
+ */
+public class ScreenCapture implements ApplicationListener {
+    // copies in flight when they are copied out; the GPU has a couple of frames to finish each before it is looked at
+    private static final int BUFFERS = 3;
+    // frames between the GL thread and the file; past this the encoders are behind and frames are dropped
+    private static final int POOL_SIZE = 6;
+    /** What copying captured frames may cost the GL thread per rendered frame, on average, without buffer storage. */
+    private static final long COPY_BUDGET_NANOS = 1_000_000L;
+    private static final long TIMEDEMO_FRAME_NANOS = (long) (Simulation.STEP * 1_000_000_000L);
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss", Locale.ROOT);
+
+    private final ApplicationListener listener;
+    private final CaptureWriter.Format format;
+    private final int fps;
+    private final Path directory;
+    // a timedemo draws each tick once however long it takes, so its recording keeps to the fight's clock
+    private final boolean timedemo;
+    private boolean supported, fences, bufferStorage;
+
+    private CaptureWriter writer;
+    // whether this recording's pool frames are the mapped buffers themselves
+    private boolean persistent;
+    private int width, height;
+    // one per entry of the in-flight ring when copying, one per pool frame when persistent
+    private int[] buffers;
+    // the in-flight ring, oldest at collected; its size is BUFFERS when copying and POOL_SIZE when persistent
+    private int inFlight;
+    private final long[] syncs = new long[POOL_SIZE];
+    private final long[] issuedNanos = new long[POOL_SIZE];
+    private final long[] issuedFrames = new long[POOL_SIZE];
+    private final CaptureWriter.Frame[] issuedTo = new CaptureWriter.Frame[POOL_SIZE];
+    private long issued, collected;
+    private ByteBuffer mapped;
+    private long frameCount, nextCapture;
+    private int captured, dropped, overBudget;
+    // copy time not yet paid off by frames that copied nothing
+    private long copyDebt;
+    private final FrameTimes cost = new FrameTimes();
+    private final FrameTimes copyCost = new FrameTimes();
+    // a stopped persistent recording whose encoders may still be reading its buffers
+    private CaptureWriter retiring;
+    private int[] retiringBuffers;
+
+    public ScreenCapture(ApplicationListener listener, GameConfig config) {
+        this.listener = listener;
+        this.format = config.captureFormat;
+        this.fps = Math.max(1, config.captureFps);
+        this.directory = Paths.get(config.captureDir);
+        this.timedemo = config.isTimedemo();
+    }
+
+    @Override
+    public void create() {
+        GLCapabilities capabilities = GL.getCapabilities();
+        supported = capabilities.OpenGL21 || capabilities.GL_ARB_pixel_buffer_object;
+        fences = capabilities.OpenGL32 || capabilities.GL_ARB_sync;
+        bufferStorage = fences && capabilities.OpenGL30
+            && (capabilities.OpenGL44 || capabilities.GL_ARB_buffer_storage);
+        if (!supported) {
+            Gdx.app.error("Capture", "no pixel buffer objects on this driver, screen capture is off");
+        } else if (!fences) {
+            Gdx.app.log("Capture", "no fences on this driver, captured frames are read back " + (BUFFERS - 1)
+                + " frames later and may wait on the GPU");
+        } else if (!bufferStorage) {
+            Gdx.app.log("Capture", "no buffer storage on this driver, captured frames are copied on the render thread"
+                + " within " + COPY_BUDGET_NANOS / 1_000_000L + " ms a frame");
+        }
+        listener.create();
+        if (supported && timedemo) start();
+    }
+
+    @Override
+    public void render() {
+        listener.render();
+        frameCount++;
+        if (!supported) return;
+        if (retiring != null && retiring.isDone()) release();
+        if (Gdx.input.isKeyJustPressed(Input.Keys.F9) && !timedemo) {
+            if (writer == null) {
+                start();
+            } else {
+                stop();
+            }
+        }
+        if (writer == null) return;
+
+        long start = TimeUtils.nanoTime();
+        long now = timedemo ? frameCount * TIMEDEMO_FRAME_NANOS : start;
+        copyDebt = Math.max(0L, copyDebt - COPY_BUDGET_NANOS);
+        collect();
+        long interval = 1_000_000_000L / fps;
+        // a quarter interval of slack keeps a 30 fps recording from skipping frames of a 60 Hz game that runs a bit early
+        if (now >= nextCapture - interval / 4) {
+            issue(now);
+            nextCapture = Math.max(nextCapture + interval, now - interval / 4);
+        }
+        cost.add((TimeUtils.nanoTime() - start) / 1e9f);
+    }
+
+    private void start() {
+        if (retiring != null) awaitRetiring();
+        width = Gdx.graphics.getBackBufferWidth();
+        height = Gdx.graphics.getBackBufferHeight();
+        String name = "capture-" + LocalDateTime.now().format(FILE_TIME);
+        Path target = directory.resolve(format == CaptureWriter.Format.GIF ? name + ".gif"
+            : format == CaptureWriter.Format.RAW ? name + ".rgba" : name);
+        int workers = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+        ByteBuffer[] pixels = bufferStorage ? createPersistentBuffers() : null;
+        persistent = pixels != null;
+        if (persistent) {
+            inFlight = POOL_SIZE;
+            writer = new CaptureWriter(format, target, width, height, fps, pixels, workers);
+        } else {
+            inFlight = BUFFERS;
+            buffers = new int[BUFFERS];
+            for (int i = 0; i < BUFFERS; i++) {
+                buffers[i] = GL15.glGenBuffers();
+                GL15.glBindBuffer(GL21.GL_PIXEL_PACK_BUFFER, buffers[i]);
+                GL15.glBufferData(GL21.GL_PIXEL_PACK_BUFFER, width * height * 4L, GL15.GL_STREAM_READ);
+            }
+            GL15.glBindBuffer(GL21.GL_PIXEL_PACK_BUFFER, 0);
+            writer = new CaptureWriter(format, target, width, height, fps, POOL_SIZE, workers);
+        }
+        issued = collected = 0L;
+        captured = dropped = overBudget = 0;
+        nextCapture = copyDebt = 0L;
+        cost.clear();
+        copyCost.clear();
+        Gdx.app.log("Capture", "recording " + width + "x" + height + " at " + fps + " fps to " + target
+            + (persistent ? "" : ", copying frames") + (timedemo ? "" : ", F9 stops"));
+    }
+
+    /**
+     * One pixel buffer per pool frame, each mapped for as long as it lives; null, with nothing left behind, if the
+     * driver won't map them.
+     */
+    private ByteBuffer[] createPersistentBuffers() {
+        long bytes = width * height * 4L;
+        // client storage asks for memory the CPU reads quickly, which is all the encoders do with it
+        int storage = GL30.GL_MAP_READ_BIT | GL44.GL_MAP_PERSISTENT_BIT | GL44.GL_MAP_COHERENT_BIT
+            | GL44.GL_CLIENT_STORAGE_BIT;
+        int access = GL30.GL_MAP_READ_BIT | GL44.GL_MAP_PERSISTENT_BIT | GL44.GL_MAP_COHERENT_BIT;
+        buffers = new int[POOL_SIZE];
+        ByteBuffer[] pixels = new ByteBuffer[POOL_SIZE];
+        for (int i = 0; i < POOL_SIZE; i++) {
+            buffers[i] = GL15.glGenBuffers();
+            GL15.glBindBuffer(GL21.GL_PIXEL_PACK_BUFFER, buffers[i]);
+            GL44.glBufferStorage(GL21.GL_PIXEL_PACK_BUFFER, bytes, storage);
+            pixels[i] = GL30.glMapBufferRange(GL21.GL_PIXEL_PACK_BUFFER, 0L, bytes, access);
+            if (pixels[i] == null) {
+                GL15.glBindBuffer(GL21.GL_PIXEL_PACK_BUFFER, 0);
+                deleteBuffers(buffers, i + 1);
+                Gdx.app.log("Capture", "can't keep pixel buffers mapped, copying frames instead");
+                bufferStorage = false;
+                return null;
+            }
+        }
+        GL15.glBindBuffer(GL21.GL_PIXEL_PACK_BUFFER, 0);
+        return pixels;
+    }
+
+    /** Hands on every copy the GPU has finished, oldest first, and stops at the first that isn't done. */
+    private void collect() {
+        while (collected < issued) {
+            int entry = (int) (collected % inFlight);
+            if (!isDone(entry)) return;
+            if (fences) {
+                GL32.glDeleteSync(syncs[entry]);
+                syncs[entry] = 0L;
+            }
+            collected++;
+            if (persistent) {
+                // the pixels are already in the frame's own buffer; the encoders read them there
+                CaptureWriter.Frame frame = issuedTo[entry];
+                issuedTo[entry] = null;
+                frame.nanos = issuedNanos[entry];
+                writer.submit(frame);
+                captured++;
+            } else {
+                copy(entry);
+            }
+        }
+    }
+
+    /** Maps a finished buffer and copies it into a pool frame, unless earlier copies have used up the budget. */
+    private void copy(int entry) {
+        if (copyDebt > 0L) {
+            overBudget++;
+            dropped++;
+            return;
+        }
+        CaptureWriter.Frame frame = writer.obtain();
+        if (frame == null) {
+            dropped++;
+            return;
+        }
+        long start = TimeUtils.nanoTime();
+        GL15.glBindBuffer(GL21.GL_PIXEL_PACK_BUFFER, buffers[entry]);
+        mapped = GL15.glMapBuffer(GL21.GL_PIXEL_PACK_BUFFER, GL15.GL_READ_ONLY, width * height * 4L, mapped);
+        if (mapped != null) {
+            mapped.clear();
+            frame.pixels.clear();
+            frame.pixels.put(mapped);
+            frame.pixels.flip();
+            GL15.glUnmapBuffer(GL21.GL_PIXEL_PACK_BUFFER);
+            frame.nanos = issuedNanos[entry];
+            writer.submit(frame);
+            captured++;
+        } else {
+            writer.discard(frame);
+            dropped++;
+        }
+        GL15.glBindBuffer(GL21.GL_PIXEL_PACK_BUFFER, 0);
+        long spent = TimeUtils.nanoTime() - start;
+        copyCost.add(spent / 1e9f);
+        // the frames after this one pay it off a budget each, copying nothing until they have
+        copyDebt += spent;
+    }
+
+    private boolean isDone(int entry) {
+        if (!fences) return frameCount - issuedFrames[entry] >= BUFFERS - 1;
+        int status = GL32.glClientWaitSync(syncs[entry], 0, 0L);
+        return status == GL32.GL_ALREADY_SIGNALED || status == GL32.GL_CONDITION_SATISFIED;
+    }
+
+    /** Starts copying the frame just drawn into a buffer, unless every buffer is still in flight or with the writer. */
+    private void issue(long now) {
+        if (issued - collected == inFlight) {
+            dropped++;
+            return;
+        }
+        int entry = (int) (issued % inFlight);
+        int buffer;
+        if (persistent) {
+            CaptureWriter.Frame frame = writer.obtain();
+            if (frame == null) {
+                dropped++;
+                return;
+            }
+            issuedTo[entry] = frame;
+            buffer = buffers[frame.index];
+        } else {
+            buffer = buffers[entry];
+        }
+        GL15.glBindBuffer(GL21.GL_PIXEL_PACK_BUFFER, buffer);
+        GL11.glReadPixels(0, 0, width, height, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, 0L);
+        GL15.glBindBuffer(GL21.GL_PIXEL_PACK_BUFFER, 0);
+        if (fences) syncs[entry] = GL32.glFenceSync(GL32.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+        issuedNanos[entry] = now;
+        issuedFrames[entry] = frameCount;
+        issued++;
+    }
+
+    /**
+     * Drops the copies still in flight and lets the writer finish the file in the background. Mapped buffers stay
+     * until the writer is done with them.
+     */
+    private void stop() {
+        for (int i = 0; i < inFlight; i++) {
+            if (syncs[i] != 0L) GL32.glDeleteSync(syncs[i]);
+            syncs[i] = 0L;
+            if (issuedTo[i] != null) writer.discard(issuedTo[i]);
+            issuedTo[i] = null;
+        }
+        dropped += (int) (issued - collected);
+        writer.finish();
+        if (persistent) {
+            retiring = writer;
+            retiringBuffers = buffers;
+        } else {
+            deleteBuffers(buffers, buffers.length);
+        }
+        buffers = null;
+        Gdx.app.log("Capture", String.format(Locale.ROOT,
+            "stopped after %d frames, %d dropped; capture cost per frame p50=%.3fms p99=%.3fms max=%.3fms",
+            captured, dropped, cost.percentile(50f) * 1000f, cost.percentile(99f) * 1000f, cost.max() * 1000f));
+        if (overBudget > 0) {
+            Gdx.app.log("Capture", String.format(Locale.ROOT,
+                "%d of the dropped frames were over the %.1f ms copy budget; a copy took p50=%.3fms max=%.3fms",
+                overBudget, COPY_BUDGET_NANOS / 1e6f, copyCost.percentile(50f) * 1000f, copyCost.max() * 1000f));
+        }
+        writer = null;
+    }
+
+    /** Waits for the last persistent recording's encoders, which may still be reading its buffers. */
+    private void awaitRetiring() {
+        if (await(retiring)) {
+            release();
+        } else {
+            // deleting the buffers would unmap them under the encoders, so they are left to the context
+            retiring = null;
+            retiringBuffers = null;
+        }
+    }
+
+    /** Waits for {@code finishing} to complete its file; returns false if it gave up. */
+    private static boolean await(CaptureWriter finishing) {
+        try {
+            // the encoders hold at most a pool's worth of frames
+            if (finishing.awaitDone(10_000L)) return true;
+            Gdx.app.error("Capture", "gave up waiting for " + finishing.getTarget() + " to be written");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    private void release() {
+        deleteBuffers(retiringBuffers, retiringBuffers.length);
+        retiring = null;
+        retiringBuffers = null;
+    }
+
+    private static void deleteBuffers(int[] buffers, int count) {
+        for (int i = 0; i < count; i++) {
+            // deleting a mapped buffer unmaps it
+            GL15.glDeleteBuffers(buffers[i]);
+        }
+    }
+
+    @Override
+    public void resize(int width, int height) {
+        listener.resize(width, height);
+        if (writer != null && (Gdx.graphics.getBackBufferWidth() != this.width
+            || Gdx.graphics.getBackBufferHeight() != this.height)) {
+            Gdx.app.log("Capture", "the window changed size, so the recording ends here");
+            stop();
+        }
+    }
+
+    @Override
+    public void pause() {
+        listener.pause();
+    }
+
+    @Override
+    public void resume() {
+        listener.resume();
+    }
+
+    @Override
+    public void dispose() {
+        if (writer != null) {
+            CaptureWriter finishing = writer;
+            stop();
+            // a persistent recording is retiring now; a copied one only has its file left to finish
+            if (retiring != finishing) await(finishing);
+        }
+        if (retiring != null) awaitRetiring();
+        listener.dispose();
+    }
+}
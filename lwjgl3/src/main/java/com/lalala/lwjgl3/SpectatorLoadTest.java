@@ -0,0 +1,302 @@
+package com.lalala.lwjgl3;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.utils.LongArray;
+import com.lalala.Boss;
+import com.lalala.RenderState;
+import com.lalala.events.EventBus;
+import com.lalala.events.GameEvent;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Measures what spectators cost the frame. A synthetic fight of one player and a crowd of wandering bosses is fed
+ * to a {@link SpectatorServer} at 60 ticks a second, first with nobody watching and then with hundreds of local
+ * spectators read by one selector thread. For both it prints the time {@link SpectatorServer#observe} takes on the
+ * producing thread and how late the frames start, then checks that every spectator got the whole stream. Exits
+ * with 1 if one didn't, or if watching made either p99 worse than the tolerances below allow in every attempt.
+ * <p>
+ * Arguments: spectators (300), bosses (200), seconds per run (10).
+ */
+public class SpectatorLoadTest {
+    private static final long FRAME_NANOS = 1_000_000_000L / 60L;
+    // watched p99 observe may be this many times the unwatched one, plus OBSERVE_SLACK_NANOS; the wakeup and the
+    // cache misses the selector thread causes are real costs, but a small one
+    private static final double OBSERVE_FACTOR = 2.0;
+    private static final long OBSERVE_SLACK_NANOS = 50_000L;
+    // watched p99 lateness of the frame start may exceed the unwatched one by this much, 6% of a frame
+    private static final long LATE_SLACK_NANOS = 1_000_000L;
+    // a regression has to show up in this many fresh pairs of runs in a row, so one scheduler hiccup doesn't fail it
+    private static final int ATTEMPTS = 3;
+
+    public static void main(String[] args) throws Exception {
+        int spectatorCount = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        int bossCount = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int ticks = seconds * 60;
+
+        SpectatorServer server = new SpectatorServer(0);
+        Fight fight = new Fight(bossCount);
+        server.fightStarted(fight.events);
+        // compiles the encoder first, so neither run pays for the JIT
+        run(server, fight, 180);
+        boolean failed = false;
+        for (int attempt = 1; attempt <= ATTEMPTS; attempt++) {
+            Run alone = run(server, fight, ticks);
+            System.out.println("no spectators:   " + alone);
+
+            Spectators spectators = new Spectators(server.getPort(), spectatorCount);
+            waitForSpectators(server, fight, spectatorCount);
+            long firstTick = fight.tick;
+            Run watched = run(server, fight, ticks);
+            System.out.println(spectatorCount + " spectators: " + watched);
+            // let the last ticks drain out of the sockets
+            Thread.sleep(500L);
+            int complete = spectators.stop(fight.tick - firstTick);
+            float kibPerSecond = server.getBytesWritten() / 1024f / (fight.tick / 60f);
+            System.out.println(String.format(Locale.ROOT,
+                "%d of %d spectators got every tick, %d disconnected, %.1f KiB/s each",
+                complete, spectatorCount, server.getDisconnected(), kibPerSecond));
+            // a lost tick is a bug, not noise
+            if (complete < spectatorCount) {
+                failed = true;
+                break;
+            }
+
+            long observeLimit = (long) (Run.percentile(alone.observe, 99) * OBSERVE_FACTOR) + OBSERVE_SLACK_NANOS;
+            long lateLimit = Run.percentile(alone.late, 99) + LATE_SLACK_NANOS;
+            boolean regressed = exceeds("observe p99", Run.percentile(watched.observe, 99), observeLimit);
+            regressed |= exceeds("frame start late p99", Run.percentile(watched.late, 99), lateLimit);
+            if (!regressed) break;
+            if (attempt == ATTEMPTS) {
+                failed = true;
+            } else {
+                System.out.println("measuring both again");
+                waitForSpectators(server, fight, 0);
+            }
+        }
+        server.fightEnded();
+        server.dispose();
+        if (failed) System.exit(1);
+    }
+
+    /** Keeps the fight going until the server has {@code count} spectators, or five seconds have passed. */
+    private static void waitForSpectators(SpectatorServer server, Fight fight, int count) {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (server.getSpectatorCount() != count && System.nanoTime() < deadline) {
+            run(server, fight, 1);
+        }
+    }
+
+    private static boolean exceeds(String what, long watchedNanos, long limitNanos) {
+        if (watchedNanos <= limitNanos) return false;
+        System.out.println(String.format(Locale.ROOT, "REGRESSION: %s is %.1fus with spectators, the limit is %.1fus",
+            what, watchedNanos / 1e3, limitNanos / 1e3));
+        return true;
+    }
+
+    private static Run run(SpectatorServer server, Fight fight, int ticks) {
+        Run run = new Run(ticks);
+        long next = System.nanoTime();
+        for (int i = 0; i < ticks; i++) {
+            LockSupport.parkNanos(next - System.nanoTime());
+            long start = System.nanoTime();
+            run.late.add(Math.max(0L, start - next));
+            fight.tick();
+            long observed = System.nanoTime();
+            server.observe(fight.state);
+            run.observe.add(System.nanoTime() - observed);
+            next += FRAME_NANOS;
+        }
+        return run;
+    }
+
+    /** A stand-in for the simulation: bosses wander, take hits, change state and die, all deterministically. */
+    private static final class Fight {
+        final RenderState state = new RenderState();
+        final EventBus events = new EventBus(1024);
+        final float[] speed;
+        int tick;
+
+        Fight(int bossCount) {
+            state.bossCount = bossCount;
+            speed = new float[bossCount];
+            for (int i = 0; i < bossCount; i++) {
+                RenderState.BossView boss = state.bossView(i);
+                boss.alive = true;
+                boss.healthRatio = 1f;
+                boss.state = Boss.State.IDLE;
+                boss.x = i % 40;
+                boss.y = i / 40 * 3f;
+                speed[i] = 0.5f + (i % 7) * 0.4f;
+            }
+            state.player.healthRatio = 1f;
+        }
+
+        void tick() {
+            tick++;
+            float time = tick / 60f;
+            state.tick = tick;
+            state.elapsedTime = time;
+            events.setTick(tick, time);
+            state.player.x = 20f + 10f * MathUtils.sin(time * 0.5f);
+            state.player.y = 1f + Math.abs(MathUtils.sin(time * 3f));
+            for (int i = 0; i < state.bossCount; i++) {
+                RenderState.BossView boss = state.bossView(i);
+                if (!boss.alive) continue;
+                // most of a crowd stands still at any moment, which is what the deltas are for
+                if ((tick / 30 + i) % 4 == 0) {
+                    boss.x += speed[i] / 60f * ((i & 1) == 0 ? 1f : -1f);
+                    boss.state = Boss.State.WALKING;
+                } else {
+                    boss.state = Boss.State.IDLE;
+                }
+                if ((tick + i * 13) % 97 == 0) {
+                    boss.healthRatio = Math.max(0f, boss.healthRatio - 0.1f);
+                    events.publish(GameEvent.Type.BOSS_HIT, boss.x, boss.y, Math.round(boss.healthRatio * 100f));
+                    if (boss.healthRatio <= 0f) {
+                        boss.alive = false;
+                        events.publish(GameEvent.Type.BOSS_DIED, boss.x, boss.y, 0);
+                    }
+                }
+            }
+            if (tick % 45 == 0) {
+                events.publish(GameEvent.Type.PLAYER_HIT, state.player.x, state.player.y, 90);
+            }
+        }
+    }
+
+    private static final class Run {
+        final LongArray observe, late;
+
+        Run(int ticks) {
+            observe = new LongArray(ticks);
+            late = new LongArray(ticks);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "observe p50=%.1fus p99=%.1fus max=%.1fus, frame start late p99=%.1fus max=%.1fus",
+                percentile(observe, 50) / 1e3, percentile(observe, 99) / 1e3, percentile(observe, 100) / 1e3,
+                percentile(late, 99) / 1e3, percentile(late, 100) / 1e3);
+        }
+
+        static long percentile(LongArray values, int percent) {
+            if (values.size == 0) return 0L;
+            long[] sorted = Arrays.copyOf(values.items, values.size);
+            Arrays.sort(sorted);
+            return sorted[Math.min(sorted.length - 1, Math.max(0, (int) Math.ceil(percent / 100.0 * sorted.length) - 1))];
+        }
+    }
+
+    /** Local connections read on one thread, each counting the whole messages it gets. */
+    private static final class Spectators {
+        final Selector selector = Selector.open();
+        final List<Reader> readers = new ArrayList<>();
+        final Thread thread;
+        volatile boolean running = true;
+
+        Spectators(int port, int count) throws IOException {
+            for (int i = 0; i < count; i++) {
+                SocketChannel channel = SocketChannel.open(new InetSocketAddress("127.0.0.1", port));
+                channel.configureBlocking(false);
+                Reader reader = new Reader(channel);
+                channel.register(selector, SelectionKey.OP_READ, reader);
+                readers.add(reader);
+            }
+            thread = new Thread(this::run, "spectator clients");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private void run() {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(64 << 10);
+            try {
+                while (running) {
+                    selector.select(key -> ((Reader) key.attachment()).read(buffer), 100L);
+                }
+                selector.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        /** Stops reading and returns how many got at least {@code ticks} whole messages with nothing malformed. */
+        int stop(long ticks) throws Exception {
+            running = false;
+            selector.wakeup();
+            thread.join();
+            int complete = 0;
+            for (int i = 0; i < readers.size(); i++) {
+                Reader reader = readers.get(i);
+                if (reader.messages >= ticks && !reader.malformed && !reader.closed) complete++;
+                reader.channel.close();
+            }
+            return complete;
+        }
+    }
+
+    private static final class Reader {
+        final SocketChannel channel;
+        long messages;
+        boolean malformed, closed;
+        // framing state, carried over between reads
+        private int header, headerBytes, bodyLeft;
+        private boolean atKind;
+
+        Reader(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void read(ByteBuffer buffer) {
+            try {
+                buffer.clear();
+                if (channel.read(buffer) < 0) {
+                    closed = true;
+                    channel.close();
+                    return;
+                }
+            } catch (IOException e) {
+                closed = true;
+                return;
+            }
+            buffer.flip();
+            while (buffer.hasRemaining() && !malformed) {
+                if (bodyLeft == 0) {
+                    header = header << 8 | buffer.get() & 0xFF;
+                    if (++headerBytes < 4) continue;
+                    if (header <= 0 || header > SpectatorProtocol.MAX_MESSAGE) {
+                        malformed = true;
+                        return;
+                    }
+                    bodyLeft = header;
+                    header = 0;
+                    headerBytes = 0;
+                    atKind = true;
+                    continue;
+                }
+                if (atKind) {
+                    byte kind = buffer.get();
+                    if (kind != SpectatorProtocol.KEYFRAME && kind != SpectatorProtocol.DELTA) malformed = true;
+                    atKind = false;
+                    bodyLeft--;
+                } else {
+                    int skip = Math.min(bodyLeft, buffer.remaining());
+                    buffer.position(buffer.position() + skip);
+                    bodyLeft -= skip;
+                }
+                if (bodyLeft == 0) messages++;
+            }
+        }
+    }
+}
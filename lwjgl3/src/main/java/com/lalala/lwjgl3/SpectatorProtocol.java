@@ -0,0 +1,137 @@
+package com.lalala.lwjgl3;
+
+import com.lalala.Boss;
+import com.lalala.events.GameEvent;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The spectator stream. Each tick is one message: an int length (not counting itself), a kind byte, the tick as
+ * an int, the fight time as a float, the entity count as a varint and a short with the number of entities that
+ * follow. Entity 0 is the player and the rest are the bosses in their render order. Each listed entity is its index
+ * as a varint, a byte of {@link #X}, {@link #Y}, {@link #HEALTH} and {@link #STATE} bits, then only the parts whose
+ * bits are set: x and y as zigzag varints in hundredths of a unit, health as a percent byte, and the boss state as
+ * a byte, its ordinal plus one, zero for none. Last come a count byte and the hits and deaths of the tick, each a
+ * {@link GameEvent.Type} ordinal byte followed by zigzag x, y and value.
+ * <p>
+ * In a {@link #KEYFRAME} every entity is listed and x and y are absolute. In a {@link #DELTA} only what changed is
+ * listed, and x and y are the change since the message before; an entity the stream hasn't had before starts at 0.
+ */
+final class SpectatorProtocol {
+    static final byte KEYFRAME = 1, DELTA = 2;
+    static final int X = 1, Y = 2, HEALTH = 4, STATE = 8, ALL = X | Y | HEALTH | STATE;
+    // positions travel as hundredths of a unit, well below a pixel
+    static final float UNITS = 100f;
+    static final int HEADER_BYTES = 4;
+    static final int MAX_ENTITIES = 4096;
+    static final int MAX_EVENTS = 64;
+    // the largest keyframe: header, 16 bytes per entity at most, then the events
+    static final int MAX_MESSAGE = 16 + 16 * MAX_ENTITIES + 1 + 16 * MAX_EVENTS;
+
+    private static final Boss.State[] STATES = Boss.State.values();
+    private static final GameEvent.Type[] TYPES = GameEvent.Type.values();
+
+    private SpectatorProtocol() {
+    }
+
+    static void putVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static void putZigzag(ByteBuffer buffer, int value) {
+        putVarint(buffer, (value << 1) ^ (value >> 31));
+    }
+
+    static int getVarint(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+    }
+
+    static int getZigzag(ByteBuffer buffer) {
+        int value = getVarint(buffer);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static Boss.State state(int code) {
+        return code == 0 ? null : STATES[code - 1];
+    }
+
+    static GameEvent.Type eventType(int code) {
+        return TYPES[code];
+    }
+
+    /** The picture of the fight a spectator builds up from the messages, one {@link #read} at a time. */
+    static final class View {
+        int tick;
+        float time;
+        int entityCount;
+        // as quantized on the wire
+        final int[] x = new int[MAX_ENTITIES], y = new int[MAX_ENTITIES];
+        final byte[] health = new byte[MAX_ENTITIES], state = new byte[MAX_ENTITIES];
+        // the hits and deaths of the last message only
+        int eventCount;
+        final byte[] eventTypes = new byte[MAX_EVENTS];
+        final int[] eventX = new int[MAX_EVENTS], eventY = new int[MAX_EVENTS], eventValues = new int[MAX_EVENTS];
+        int messages, keyframes;
+        private boolean synced;
+
+        /**
+         * Applies one message, positioned after its length, up to its end. Deltas are skipped until the first
+         * keyframe. Returns false for a message that is not a keyframe or a delta.
+         */
+        boolean read(ByteBuffer message) {
+            byte kind = message.get();
+            if (kind != KEYFRAME && kind != DELTA) return false;
+            if (kind == DELTA && !synced) {
+                message.position(message.limit());
+                return true;
+            }
+            synced = true;
+            tick = message.getInt();
+            time = message.getFloat();
+            int count = Math.min(getVarint(message), MAX_ENTITIES);
+            if (kind == KEYFRAME) {
+                clear(0, count);
+                keyframes++;
+            } else if (count > entityCount) {
+                clear(entityCount, count);
+            }
+            entityCount = count;
+            int changed = message.getShort() & 0xFFFF;
+            for (int i = 0; i < changed; i++) {
+                int index = getVarint(message);
+                int mask = message.get();
+                if ((mask & X) != 0) x[index] += getZigzag(message);
+                if ((mask & Y) != 0) y[index] += getZigzag(message);
+                if ((mask & HEALTH) != 0) health[index] = message.get();
+                if ((mask & STATE) != 0) state[index] = message.get();
+            }
+            eventCount = message.get() & 0xFF;
+            for (int i = 0; i < eventCount; i++) {
+                eventTypes[i] = message.get();
+                eventX[i] = getZigzag(message);
+                eventY[i] = getZigzag(message);
+                eventValues[i] = getZigzag(message);
+            }
+            messages++;
+            return true;
+        }
+
+        private void clear(int from, int to) {
+            for (int i = from; i < to; i++) {
+                x[i] = 0;
+                y[i] = 0;
+                health[i] = 0;
+                state[i] = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,380 @@
+package com.lalala.lwjgl3;
+
+import com.badlogic.gdx.utils.Disposable;
+import com.lalala.RenderState;
+import com.lalala.StateObserver;
+import com.lalala.events.EventBus;
+import com.lalala.events.GameEvent;
+import com.lalala.log.Log;
+import com.lalala.log.LogCategory;
+import com.lalala.log.LogLevel;
+import com.lalala.log.LogRecord;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+
+import static com.lalala.lwjgl3.SpectatorProtocol.*;
+
+/**
+ * Broadcasts the fight to any number of spectators on local TCP connections, in the format of
+ * {@link SpectatorProtocol}. Each tick is encoded once on the GL thread and appended to a ring of direct memory;
+ * a selector thread hands the same bytes to every connection through a read-only view of the ring, so the frame
+ * pays for one encoding however many are watching, and the copies into the sockets happen off it.
+ * <p>
+ * A spectator joins at the latest keyframe, which comes once a second. One that falls so far behind that the ring
+ * is about to overwrite what it hasn't read yet is disconnected rather than waited for.
+ */
+public class SpectatorServer implements StateObserver, Disposable {
+    private static final int RING_BYTES = 4 << 20;
+    private static final int KEYFRAME_INTERVAL = 60;
+    // how far a spectator may trail the stream; the rest of the ring is the margin the GL thread writes into meanwhile
+    private static final int MAX_LAG = RING_BYTES / 2;
+    private static final long SELECT_TIMEOUT_MS = 100L;
+
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    // written only by the GL thread; read through views by the selector thread, up to head
+    private final ByteBuffer ring = ByteBuffer.allocateDirect(RING_BYTES);
+    private final ByteBuffer scratch = ByteBuffer.allocateDirect(MAX_MESSAGE);
+    // stream offsets, growing forever; the ring position is the offset modulo its size
+    private volatile long head;
+    private volatile long keyframe = -1L;
+    private volatile int spectatorCount;
+    private volatile int disconnected;
+
+    // GL thread: what the stream has said so far, so the next message only carries the difference
+    private EventBus events;
+    private EventBus.Subscription subscription;
+    private int lastTick = -1;
+    private int ticksToKeyframe;
+    private int sentCount;
+    private final int[] sentX = new int[MAX_ENTITIES], sentY = new int[MAX_ENTITIES];
+    private final byte[] sentHealth = new byte[MAX_ENTITIES], sentState = new byte[MAX_ENTITIES];
+    private int eventCount, droppedEvents;
+    private final byte[] eventTypes = new byte[MAX_EVENTS];
+    private final int[] eventX = new int[MAX_EVENTS], eventY = new int[MAX_EVENTS], eventValues = new int[MAX_EVENTS];
+
+    // selector thread only
+    private final ArrayList<Spectator> spectators = new ArrayList<>();
+    private final ByteBuffer discard = ByteBuffer.allocateDirect(256);
+
+    /** Listens on {@code port} of the loopback address; 0 picks a free port. */
+    public SpectatorServer(int port) {
+        try {
+            server = ServerSocketChannel.open();
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 64);
+            server.configureBlocking(false);
+            selector = Selector.open();
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            throw new UncheckedIOException("can't listen for spectators on port " + port, e);
+        }
+        thread = new Thread(this::run, "spectators");
+        thread.setDaemon(true);
+        thread.start();
+        LogRecord record = Log.begin(LogCategory.NETWORK, LogLevel.INFO);
+        if (record != null) record.append("spectators can connect to port ").append(getPort()).commit();
+    }
+
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    public int getSpectatorCount() {
+        return spectatorCount;
+    }
+
+    /** Spectators dropped for falling behind, since the start. */
+    public int getDisconnected() {
+        return disconnected;
+    }
+
+    /** Bytes broadcast since the start. */
+    public long getBytesWritten() {
+        return head;
+    }
+
+    @Override
+    public void fightStarted(EventBus events) {
+        this.events = events;
+        subscription = events.subscribe(this::onEvent);
+        lastTick = -1;
+        ticksToKeyframe = 0;
+        sentCount = 0;
+    }
+
+    @Override
+    public void fightEnded() {
+        if (subscription != null) {
+            events.unsubscribe(subscription);
+            subscription = null;
+            events = null;
+        }
+    }
+
+    @Override
+    public void observe(RenderState state) {
+        if (subscription == null || state.tick == lastTick) return;
+        lastTick = state.tick;
+        eventCount = 0;
+        subscription.poll();
+        boolean isKeyframe = ticksToKeyframe == 0;
+        ticksToKeyframe = isKeyframe ? KEYFRAME_INTERVAL - 1 : ticksToKeyframe - 1;
+        encode(state, isKeyframe);
+        append(isKeyframe);
+        if (spectatorCount > 0) selector.wakeup();
+    }
+
+    private void onEvent(GameEvent event) {
+        // state changes already travel with the bosses
+        if (event.type == GameEvent.Type.BOSS_STATE) return;
+        if (eventCount == MAX_EVENTS) {
+            droppedEvents++;
+            return;
+        }
+        eventTypes[eventCount] = (byte) event.type.ordinal();
+        eventX[eventCount] = Math.round(event.x * UNITS);
+        eventY[eventCount] = Math.round(event.y * UNITS);
+        eventValues[eventCount] = event.value;
+        eventCount++;
+    }
+
+    private void encode(RenderState state, boolean isKeyframe) {
+        int count = Math.min(1 + state.bossCount, MAX_ENTITIES);
+        for (int i = isKeyframe ? 0 : sentCount; i < count; i++) {
+            sentX[i] = 0;
+            sentY[i] = 0;
+        }
+        scratch.clear();
+        scratch.putInt(0);
+        scratch.put(isKeyframe ? KEYFRAME : DELTA);
+        scratch.putInt(state.tick);
+        scratch.putFloat(state.elapsedTime);
+        putVarint(scratch, count);
+        int changedAt = scratch.position();
+        scratch.putShort((short) 0);
+        int changed = 0;
+        for (int i = 0; i < count; i++) {
+            float x, y, healthRatio;
+            int stateCode = 0;
+            if (i == 0) {
+                x = state.player.x;
+                y = state.player.y;
+                healthRatio = state.player.healthRatio;
+            } else {
+                RenderState.BossView boss = state.bosses.get(i - 1);
+                x = boss.x;
+                y = boss.y;
+                healthRatio = boss.healthRatio;
+                stateCode = boss.state == null ? 0 : boss.state.ordinal() + 1;
+            }
+            int qx = Math.round(x * UNITS), qy = Math.round(y * UNITS);
+            byte health = (byte) Math.round(Math.max(0f, healthRatio) * 100f);
+            int mask = isKeyframe || i >= sentCount ? ALL
+                : (qx != sentX[i] ? X : 0) | (qy != sentY[i] ? Y : 0)
+                | (health != sentHealth[i] ? HEALTH : 0) | (stateCode != sentState[i] ? STATE : 0);
+            if (mask == 0) continue;
+            putVarint(scratch, i);
+            scratch.put((byte) mask);
+            if ((mask & X) != 0) putZigzag(scratch, qx - sentX[i]);
+            if ((mask & Y) != 0) putZigzag(scratch, qy - sentY[i]);
+            if ((mask & HEALTH) != 0) scratch.put(health);
+            if ((mask & STATE) != 0) scratch.put((byte) stateCode);
+            sentX[i] = qx;
+            sentY[i] = qy;
+            sentHealth[i] = health;
+            sentState[i] = (byte) stateCode;
+            changed++;
+        }
+        sentCount = count;
+        scratch.putShort(changedAt, (short) changed);
+        scratch.put((byte) eventCount);
+        for (int i = 0; i < eventCount; i++) {
+            scratch.put(eventTypes[i]);
+            putZigzag(scratch, eventX[i]);
+            putZigzag(scratch, eventY[i]);
+            putZigzag(scratch, eventValues[i]);
+        }
+        scratch.putInt(0, scratch.position() - HEADER_BYTES);
+        scratch.flip();
+    }
+
+    /** Copies the encoded message into the ring, wrapping at its end, then makes it visible to the selector thread. */
+    private void append(boolean isKeyframe) {
+        long at = head;
+        int length = scratch.remaining();
+        int offset = (int) (at % RING_BYTES);
+        int first = Math.min(length, RING_BYTES - offset);
+        ring.clear();
+        ring.position(offset);
+        scratch.limit(first);
+        ring.put(scratch);
+        if (first < length) {
+            ring.clear();
+            scratch.limit(length);
+            ring.put(scratch);
+        }
+        if (isKeyframe) keyframe = at;
+        head = at + length;
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                selector.select(this::onReady, SELECT_TIMEOUT_MS);
+                long written = head, start = keyframe;
+                for (int i = spectators.size() - 1; i >= 0; i--) {
+                    pump(spectators.get(i), written, start);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            if (running) Log.error(LogCategory.NETWORK, "spectator broadcast stopped", e);
+        } finally {
+            for (int i = spectators.size() - 1; i >= 0; i--) {
+                close(spectators.get(i));
+            }
+            try {
+                selector.close();
+                server.close();
+            } catch (IOException ignored) {
+                // shutting down anyway
+            }
+        }
+    }
+
+    private void onReady(SelectionKey key) {
+        if (key.isAcceptable()) {
+            accept();
+            return;
+        }
+        Spectator spectator = (Spectator) key.attachment();
+        if (key.isReadable()) {
+            // spectators have nothing to say; reading only tells when they leave
+            try {
+                discard.clear();
+                if (spectator.channel.read(discard) < 0) {
+                    close(spectator);
+                    return;
+                }
+            } catch (IOException e) {
+                close(spectator);
+                return;
+            }
+        }
+        if (key.isValid() && key.isWritable()) {
+            key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    private void accept() {
+        try {
+            SocketChannel channel;
+            while ((channel = server.accept()) != null) {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                Spectator spectator = new Spectator(channel, ring.asReadOnlyBuffer());
+                spectator.key = channel.register(selector, SelectionKey.OP_READ, spectator);
+                spectators.add(spectator);
+                spectatorCount = spectators.size();
+                LogRecord record = Log.begin(LogCategory.NETWORK, LogLevel.DEBUG);
+                if (record != null) {
+                    record.append("spectator ").append(channel.socket().getPort()).append(" joined").commit();
+                }
+            }
+        } catch (IOException e) {
+            Log.error(LogCategory.NETWORK, "can't accept a spectator", e);
+        }
+    }
+
+    /** Writes as much of what the spectator hasn't had yet as its socket takes without blocking. */
+    private void pump(Spectator spectator, long written, long start) {
+        if (spectator.cursor < 0L) {
+            // the first keyframe may not be written yet, or may already be overwritten
+            if (start < 0L || written - start > MAX_LAG) return;
+            spectator.cursor = start;
+        }
+        if (written - spectator.cursor > MAX_LAG) {
+            disconnected++;
+            logDropped(spectator, written);
+            close(spectator);
+            return;
+        }
+        try {
+            while (spectator.cursor < written) {
+                int offset = (int) (spectator.cursor % RING_BYTES);
+                int length = (int) Math.min(written - spectator.cursor, RING_BYTES - offset);
+                spectator.view.limit(offset + length).position(offset);
+                int sent = spectator.channel.write(spectator.view);
+                spectator.cursor += sent;
+                if (sent < length) {
+                    // the socket is full; carry on when it drains
+                    spectator.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            close(spectator);
+        }
+    }
+
+    private void logDropped(Spectator spectator, long written) {
+        LogRecord record = Log.begin(LogCategory.NETWORK, LogLevel.WARN);
+        if (record == null) return;
+        record.append("spectator ").append(spectator.channel.socket().getPort()).append(" fell ")
+            .append((written - spectator.cursor) >> 10).append(" KiB behind and was disconnected");
+        record.commit();
+    }
+
+    private void close(Spectator spectator) {
+        spectator.key.cancel();
+        try {
+            spectator.channel.close();
+        } catch (IOException ignored) {
+            // already gone
+        }
+        spectators.remove(spectator);
+        spectatorCount = spectators.size();
+    }
+
+    @Override
+    public void dispose() {
+        fightEnded();
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join(1000L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        LogRecord record = droppedEvents > 0 ? Log.begin(LogCategory.NETWORK, LogLevel.WARN) : null;
+        if (record != null) {
+            record.append("spectator stream left out ").append(droppedEvents).append(" events over ")
+                .append(MAX_EVENTS).append(" in a tick").commit();
+        }
+    }
+
+    private static final class Spectator {
+        final SocketChannel channel;
+        // its own limit and position over the shared ring; the bytes themselves are never copied
+        final ByteBuffer view;
+        SelectionKey key;
+        long cursor = -1L;
+
+        Spectator(SocketChannel channel, ByteBuffer view) {
+            this.channel = channel;
+            this.view = view;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.lalala.lwjgl3;
+
+import com.lalala.events.GameEvent;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Locale;
+
+import static com.lalala.lwjgl3.SpectatorProtocol.*;
+
+/**
+ * A spectator without a window: connects to a {@link SpectatorServer}, rebuilds the fight from the stream and
+ * prints a line about it once a second. Takes {@code HOST:PORT}, or just a port on this machine.
+ */
+public class SpectatorViewer {
+    public static void main(String[] args) throws IOException {
+        String address = args.length > 0 ? args[0] : "7878";
+        int colon = address.lastIndexOf(':');
+        InetSocketAddress server = colon < 0 ? new InetSocketAddress("127.0.0.1", Integer.parseInt(address))
+            : new InetSocketAddress(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+        View view = new View();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(2 * MAX_MESSAGE);
+        long bytes = 0L, reportBytes = 0L;
+        int playerHits = 0, bossHits = 0, deaths = 0;
+        long nextReport = System.nanoTime() + 1_000_000_000L;
+        try (SocketChannel channel = SocketChannel.open(server)) {
+            System.out.println("watching " + server);
+            while (true) {
+                int read = channel.read(buffer);
+                if (read < 0) break;
+                bytes += read;
+                buffer.flip();
+                while (buffer.remaining() >= HEADER_BYTES && buffer.remaining() >= HEADER_BYTES + buffer.getInt(buffer.position())) {
+                    int end = buffer.position() + HEADER_BYTES + buffer.getInt(buffer.position());
+                    int limit = buffer.limit();
+                    buffer.position(buffer.position() + HEADER_BYTES).limit(end);
+                    if (!view.read(buffer)) throw new IOException("not a spectator stream");
+                    buffer.limit(limit).position(end);
+                    for (int i = 0; i < view.eventCount; i++) {
+                        GameEvent.Type type = eventType(view.eventTypes[i]);
+                        if (type == GameEvent.Type.PLAYER_HIT) playerHits++;
+                        else if (type == GameEvent.Type.BOSS_HIT) bossHits++;
+                        else if (type == GameEvent.Type.BOSS_DIED || type == GameEvent.Type.PLAYER_DIED) deaths++;
+                        else System.out.println("tick " + view.tick + ": " + type);
+                    }
+                }
+                buffer.compact();
+
+                long now = System.nanoTime();
+                if (now >= nextReport && view.keyframes > 0) {
+                    System.out.println(report(view, playerHits, bossHits, deaths, bytes - reportBytes));
+                    playerHits = bossHits = deaths = 0;
+                    reportBytes = bytes;
+                    nextReport = now + 1_000_000_000L;
+                }
+            }
+        }
+        System.out.println("stream ended after " + view.messages + " ticks, " + (bytes >> 10) + " KiB");
+    }
+
+    private static String report(View view, int playerHits, int bossHits, int deaths, long bytes) {
+        StringBuilder line = new StringBuilder(160);
+        line.append(String.format(Locale.ROOT, "tick %d, %.1fs: player at (%.2f, %.2f) %d%%", view.tick, view.time,
+            view.x[0] / UNITS, view.y[0] / UNITS, view.health[0]));
+        int alive = 0, nearest = -1;
+        float nearestDistance = Float.MAX_VALUE;
+        for (int i = 1; i < view.entityCount; i++) {
+            if (view.health[i] <= 0) continue;
+            alive++;
+            float dx = (view.x[i] - view.x[0]) / UNITS, dy = (view.y[i] - view.y[0]) / UNITS;
+            float distance = dx * dx + dy * dy;
+            if (distance < nearestDistance) {
+                nearestDistance = distance;
+                nearest = i;
+            }
+        }
+        line.append(", ").append(alive).append(" of ").append(view.entityCount - 1).append(" bosses up");
+        if (nearest > 0) {
+            line.append(String.format(Locale.ROOT, ", nearest %.1f away, %s %d%%", Math.sqrt(nearestDistance),
+                state(view.state[nearest]), view.health[nearest]));
+        }
+        line.append(", hits ").append(playerHits).append(" taken ").append(bossHits).append(" dealt, ")
+            .append(deaths).append(" deaths, ").append(bytes).append(" B/s");
+        return line.toString();
+    }
+}
@@ -0,0 +1,222 @@
+package com.lalala.lwjgl3;
+
+import com.badlogic.gdx.ApplicationListener;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.profiling.GLProfiler;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.TimeUtils;
+import com.lalala.FrameTimes;
+import com.lalala.GameScreen;
+import com.lalala.MainGame;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL33;
+import org.lwjgl.opengl.GLCapabilities;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Wraps the game for {@code --timedemo}. Every frame of the replayed fight gets its wall time, the CPU time of the
+ * render call, the GPU time from a timer query, the GL calls counted by {@link GLProfiler} and the garbage collections
+ * that finished during it. On exit the frames go to a CSV file, and their percentiles to the log and to a summary CSV
+ * next to it. The loading screen and the first fight frame, which still carries the switch from it, are left out.
+ */
+public class Timedemo implements ApplicationListener {
+    // timer queries in flight; a result is read back this many frames after it was issued, when the GPU is long done
+    private static final int QUERY_RING = 4;
+
+    private final MainGame game;
+    private final Path csvFile;
+    private GLProfiler glProfiler;
+    private List<GarbageCollectorMXBean> collectors;
+    private boolean timerQueries;
+    private final int[] queries = new int[QUERY_RING];
+    private final int[] queryFrames = new int[QUERY_RING];
+
+    private final FrameTimes frameTimes = new FrameTimes();
+    private final FrameTimes cpuTimes = new FrameTimes();
+    // seconds per frame, filled in as the queries come back; -1 where the driver has no timer queries
+    private final FloatArray gpuTimes = new FloatArray();
+    private final IntArray drawCalls = new IntArray();
+    private final IntArray textureBindings = new IntArray();
+    private final IntArray shaderSwitches = new IntArray();
+    private final IntArray gcCounts = new IntArray();
+    private final IntArray gcMillis = new IntArray();
+    private long lastFrameStart = -1L;
+    private long gcCountTotal, gcMillisTotal;
+
+    public Timedemo(MainGame game, String csvFile) {
+        this.game = game;
+        this.csvFile = Paths.get(csvFile);
+    }
+
+    @Override
+    public void create() {
+        Gdx.app.log("Timedemo", "renderer " + Gdx.gl.glGetString(GL20.GL_RENDERER) + ", "
+            + Gdx.gl.glGetString(GL20.GL_VERSION));
+        GLCapabilities capabilities = GL.getCapabilities();
+        timerQueries = capabilities.OpenGL33 || capabilities.GL_ARB_timer_query;
+        if (timerQueries) {
+            for (int i = 0; i < QUERY_RING; i++) {
+                queries[i] = GL15.glGenQueries();
+            }
+        } else {
+            Gdx.app.log("Timedemo", "no timer queries on this driver, GPU times are not recorded");
+        }
+        collectors = ManagementFactory.getGarbageCollectorMXBeans();
+        glProfiler = new GLProfiler(Gdx.graphics);
+        glProfiler.enable();
+        game.create();
+    }
+
+    @Override
+    public void render() {
+        long frameStart = TimeUtils.nanoTime();
+        if (!(game.getScreen() instanceof GameScreen) || lastFrameStart < 0L) {
+            game.render();
+            if (game.getScreen() instanceof GameScreen) {
+                lastFrameStart = frameStart;
+                updateGc();
+            }
+            glProfiler.reset();
+            return;
+        }
+
+        int frame = cpuTimes.size();
+        int slot = frame % QUERY_RING;
+        if (timerQueries) {
+            if (frame >= QUERY_RING) {
+                collectQuery(slot);
+            }
+            GL15.glBeginQuery(GL33.GL_TIME_ELAPSED, queries[slot]);
+        }
+        game.render();
+        if (timerQueries) {
+            GL15.glEndQuery(GL33.GL_TIME_ELAPSED);
+            queryFrames[slot] = frame;
+        }
+        long cpuNanos = TimeUtils.nanoTime() - frameStart;
+
+        frameTimes.add((frameStart - lastFrameStart) / 1e9f);
+        cpuTimes.add(cpuNanos / 1e9f);
+        gpuTimes.add(-1f);
+        drawCalls.add(glProfiler.getDrawCalls());
+        textureBindings.add(glProfiler.getTextureBindings());
+        shaderSwitches.add(glProfiler.getShaderSwitches());
+        glProfiler.reset();
+        long count = gcCountTotal, millis = gcMillisTotal;
+        updateGc();
+        gcCounts.add((int) (gcCountTotal - count));
+        gcMillis.add((int) (gcMillisTotal - millis));
+        lastFrameStart = frameStart;
+    }
+
+    /** Reads back the GPU time of the frame that last used {@code slot}. Waits if the GPU hasn't got there yet. */
+    private void collectQuery(int slot) {
+        long nanos = GL33.glGetQueryObjecti64(queries[slot], GL15.GL_QUERY_RESULT);
+        gpuTimes.set(queryFrames[slot], nanos / 1e9f);
+    }
+
+    private void updateGc() {
+        long count = 0L, millis = 0L;
+        for (int i = 0; i < collectors.size(); i++) {
+            GarbageCollectorMXBean collector = collectors.get(i);
+            count += Math.max(0L, collector.getCollectionCount());
+            millis += Math.max(0L, collector.getCollectionTime());
+        }
+        gcCountTotal = count;
+        gcMillisTotal = millis;
+    }
+
+    @Override
+    public void resize(int width, int height) {
+        game.resize(width, height);
+    }
+
+    @Override
+    public void pause() {
+        game.pause();
+    }
+
+    @Override
+    public void resume() {
+        game.resume();
+    }
+
+    @Override
+    public void dispose() {
+        if (timerQueries) {
+            int frames = cpuTimes.size();
+            for (int frame = Math.max(0, frames - QUERY_RING); frame < frames; frame++) {
+                collectQuery(frame % QUERY_RING);
+            }
+            for (int i = 0; i < QUERY_RING; i++) {
+                GL15.glDeleteQueries(queries[i]);
+            }
+        }
+        glProfiler.disable();
+        report();
+        game.dispose();
+    }
+
+    private void report() {
+        FrameTimes gpu = new FrameTimes();
+        for (int i = 0; i < gpuTimes.size; i++) {
+            if (gpuTimes.get(i) >= 0f) gpu.add(gpuTimes.get(i));
+        }
+        int gcFrames = 0, gcWorst = 0;
+        long drawCallTotal = 0L;
+        for (int i = 0; i < gcCounts.size; i++) {
+            if (gcCounts.get(i) > 0) gcFrames++;
+            gcWorst = Math.max(gcWorst, gcMillis.get(i));
+            drawCallTotal += drawCalls.get(i);
+        }
+        Gdx.app.log("Timedemo", "frame " + frameTimes.summary());
+        Gdx.app.log("Timedemo", "cpu   " + cpuTimes.summary());
+        Gdx.app.log("Timedemo", "gpu   " + (timerQueries ? gpu.summary() : "n/a"));
+        Gdx.app.log("Timedemo", String.format(Locale.ROOT, "drawCalls avg=%.1f, gc in %d frames, worst %d ms",
+            cpuTimes.size() == 0 ? 0f : drawCallTotal / (float) cpuTimes.size(), gcFrames, gcWorst));
+
+        List<String> lines = new ArrayList<>(cpuTimes.size() + 1);
+        lines.add("frame,frame_ms,cpu_ms,gpu_ms,draw_calls,texture_bindings,shader_switches,gc_count,gc_ms");
+        for (int i = 0; i < cpuTimes.size(); i++) {
+            float gpuTime = gpuTimes.get(i);
+            lines.add(String.format(Locale.ROOT, "%d,%.3f,%.3f,%s,%d,%d,%d,%d,%d", i, frameTimes.get(i) * 1000f,
+                cpuTimes.get(i) * 1000f, gpuTime < 0f ? "" : String.format(Locale.ROOT, "%.3f", gpuTime * 1000f),
+                drawCalls.get(i), textureBindings.get(i), shaderSwitches.get(i), gcCounts.get(i), gcMillis.get(i)));
+        }
+        List<String> summary = new ArrayList<>();
+        summary.add("metric,frames,avg_ms,p50_ms,p95_ms,p99_ms,max_ms");
+        summary.add(summaryRow("frame", frameTimes));
+        summary.add(summaryRow("cpu", cpuTimes));
+        if (timerQueries) summary.add(summaryRow("gpu", gpu));
+
+        String name = csvFile.getFileName().toString();
+        Path summaryFile = csvFile.resolveSibling(name.endsWith(".csv")
+            ? name.substring(0, name.length() - 4) + "-summary.csv" : name + "-summary");
+        try {
+            Files.write(csvFile, lines, StandardCharsets.UTF_8);
+            Files.write(summaryFile, summary, StandardCharsets.UTF_8);
+            Gdx.app.log("Timedemo", "wrote " + csvFile.toAbsolutePath() + " and " + summaryFile.getFileName());
+        } catch (IOException e) {
+            Gdx.app.error("Timedemo", "can't write " + csvFile, e);
+        }
+    }
+
+    private static String summaryRow(String metric, FrameTimes times) {
+        return String.format(Locale.ROOT, "%s,%d,%.3f,%.3f,%.3f,%.3f,%.3f", metric, times.size(),
+            times.average() * 1000f, times.percentile(50f) * 1000f, times.percentile(95f) * 1000f,
+            times.percentile(99f) * 1000f, times.max() * 1000f);
+    }
+}
@@ -0,0 +1,122 @@
+package com.lalala.tools;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas.TextureAtlasData;
+import com.badlogic.gdx.tools.texturepacker.TexturePacker;
+import com.badlogic.gdx.utils.JsonReader;
+import com.badlogic.gdx.utils.JsonValue;
+import com.lalala.AnimationLibrary;
+
+import javax.imageio.ImageIO;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Packs the frames of every clip in animations.json into its own atlas, {@code atlas/<clip name>.atlas}, so
+ * AnimationLibrary can load and unload clips one at a time. Transparent borders are stripped (the atlas keeps each
+ * frame's original size and offset), alpha is premultiplied and regions are named by their file path without the
+ * extension, which is how AnimationLibrary looks them up.
+ * <p>
+ * The same clips are also packed untrimmed into a scratch folder, and the two are compared: texture memory of the
+ * pages, and pixels covered per drawn frame (what the GPU fills, transparent or not), per top-level folder.
+ */
+public class AnimationPacker {
+    public static void main(String[] args) throws IOException {
+        File descriptor = new File(args.length > 0 ? args[0] : "animations.json").getAbsoluteFile();
+        File assets = descriptor.getParentFile();
+        File outputDir = new File(assets, AnimationLibrary.PACKED_DIR);
+        File untrimmedDir = Files.createTempDirectory("untrimmed-atlas").toFile();
+        deleteRecursively(outputDir);
+
+        long trimmedBytes = 0, untrimmedBytes = 0;
+        int clips = 0, frames = 0;
+        // per folder: pixels drawn before trimming, pixels drawn after
+        Map<String, long[]> fill = new TreeMap<>();
+        JsonValue root = new JsonReader().parse(new FileHandle(descriptor));
+        for (JsonValue clip = root.child; clip != null; clip = clip.next) {
+            Set<String> files = new LinkedHashSet<>();
+            for (String file : AnimationLibrary.frameFiles(clip)) {
+                files.add(file);
+            }
+            TextureAtlasData trimmed = pack(files, assets, outputDir, clip.name, true);
+            TextureAtlasData untrimmed = pack(files, assets, untrimmedDir, clip.name, false);
+            trimmedBytes += pageBytes(trimmed);
+            untrimmedBytes += pageBytes(untrimmed);
+            clips++;
+            frames += files.size();
+
+            for (TextureAtlasData.Region region : trimmed.getRegions()) {
+                String folder = region.name.contains("/") ? region.name.substring(0, region.name.indexOf('/')) : region.name;
+                long[] pixels = fill.computeIfAbsent(folder, key -> new long[2]);
+                pixels[0] += (long) region.originalWidth * region.originalHeight;
+                pixels[1] += (long) region.width * region.height;
+            }
+        }
+        deleteRecursively(untrimmedDir);
+
+        System.out.printf("%d frames of %d clips packed into %s%n", frames, clips, outputDir);
+        System.out.printf("texture memory: %d KiB with every clip loaded, was %d KiB untrimmed%n",
+            trimmedBytes >> 10, untrimmedBytes >> 10);
+        long before = 0, after = 0;
+        for (Map.Entry<String, long[]> entry : fill.entrySet()) {
+            long[] pixels = entry.getValue();
+            before += pixels[0];
+            after += pixels[1];
+            System.out.printf("  %-12s fill %5.1f%% of the untrimmed frames%n", entry.getKey(), 100.0 * pixels[1] / pixels[0]);
+        }
+        System.out.printf("overdraw saved: %.1f%% of the pixels per frame drawn once each%n", 100.0 - 100.0 * after / before);
+    }
+
+    private static TextureAtlasData pack(Set<String> files, File assets, File outputDir, String clipName, boolean trim)
+        throws IOException {
+        TexturePacker.Settings settings = new TexturePacker.Settings();
+        settings.maxWidth = 2048;
+        settings.maxHeight = 2048;
+        settings.paddingX = 2;
+        settings.paddingY = 2;
+        settings.stripWhitespaceX = trim;
+        settings.stripWhitespaceY = trim;
+        settings.premultiplyAlpha = true;
+        // frames are drawn unrotated and looked up by their full name
+        settings.rotation = false;
+        settings.useIndexes = false;
+        settings.filterMin = Texture.TextureFilter.Nearest;
+        settings.filterMag = Texture.TextureFilter.Nearest;
+        settings.silent = true;
+
+        TexturePacker packer = new TexturePacker(settings);
+        for (String file : files) {
+            packer.addImage(ImageIO.read(new File(assets, file)), AnimationLibrary.regionName(file));
+        }
+        // "boss/dashLeft" becomes boss/dashLeft.atlas and its pages next to it
+        File atlas = new File(outputDir, clipName + ".atlas");
+        atlas.getParentFile().mkdirs();
+        packer.pack(atlas.getParentFile(), new File(clipName).getName());
+        return new TextureAtlasData(new FileHandle(atlas), new FileHandle(atlas.getParentFile()), false);
+    }
+
+    private static long pageBytes(TextureAtlasData atlas) {
+        long bytes = 0;
+        for (TextureAtlasData.Page page : atlas.getPages()) {
+            // RGBA8888, no mipmaps
+            bytes += (long) page.width * (long) page.height * 4L;
+        }
+        return bytes;
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}